@@ -0,0 +1,36 @@
+package com.isharpever.tool.cache;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * CacheService/CacheManager异步方法的执行线程池
+ * <li>每个异步调用在池中线程上执行对应的同步方法,异常处理与同步方法一致(记录日志并返回null/false等),返回的future不会异常完成
+ * <li>多个异步调用的网络往返可以重叠,需连接池(或lettuce共享连接)支持并发
+ * <li>线程池有界队列满时由调用线程执行(退化为同步调用),从异步回调中再发起异步调用不会死锁
+ * <li>MDC随任务传递到执行线程
+ * <br>可通过系统属性isharpever.cache.async.threads配置线程数,默认32
+ */
+final class CacheAsyncExecutor {
+
+    private CacheAsyncExecutor() {
+    }
+
+    static <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, ExecutorHolder.EXECUTOR);
+    }
+
+    static CompletableFuture<Void> run(Runnable runnable) {
+        return CompletableFuture.runAsync(runnable, ExecutorHolder.EXECUTOR);
+    }
+
+    /**
+     * 首次使用时才创建线程池
+     */
+    private static class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = ExecutorServiceUtil.buildExecutorService(
+                Integer.getInteger("isharpever.cache.async.threads", 32), "CacheAsync-");
+    }
+}
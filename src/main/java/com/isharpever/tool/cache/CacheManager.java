@@ -1,9 +1,18 @@
 package com.isharpever.tool.cache;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.redis.RedisKeyBuilder;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import javax.annotation.Resource;
 
 /**
@@ -14,32 +23,203 @@ import javax.annotation.Resource;
  */
 public class CacheManager {
 
+    /**
+     * getOrLoad的监控数据的measurement
+     */
+    private static final String LOAD_MEASUREMENT = "isharpever.cache.load";
+
     /**
      * key前缀默认值,使用者应调用setKeyPrefix设置有独特业务含义的值
      */
     private String keyPrefix = "default";
 
+    /**
+     * 按key前缀生成key,前缀变化时替换
+     */
+    private volatile RedisKeyBuilder keyBuilder = new RedisKeyBuilder(keyPrefix, '_');
+
     @Resource
     private CacheService cacheService;
 
+    /**
+     * 本地缓存(L1),可选,见{@link #setNearCache}
+     */
+    private NearCache nearCache;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
     public String buildRedisKey(String key) {
-        return String.format("%s_%s", this.getKeyPrefix(), key);
+        return this.getKeyBuilder().build(key);
+    }
+
+    /**
+     * 生成key并编码为UTF-8字节,见{@link RedisKeyBuilder#buildBytes}
+     */
+    public byte[] buildRedisKeyBytes(String key) {
+        return this.getKeyBuilder().buildBytes(key);
     }
 
     public List<String> batchBuildRedisKey(List<String> keys) {
-        List<String> results = Lists.newArrayListWithCapacity(keys.size());
-        for (String key : keys) {
-            results.add(buildRedisKey(key));
+        return this.getKeyBuilder().build(keys);
+    }
+
+    /**
+     * 返回当前key前缀的RedisKeyBuilder,子类重写getKeyPrefix时同样生效
+     */
+    private RedisKeyBuilder getKeyBuilder() {
+        String prefix = String.valueOf(this.getKeyPrefix());
+        RedisKeyBuilder builder = this.keyBuilder;
+        if (prefix != builder.getPrefix() && !prefix.equals(builder.getPrefix())) {
+            builder = new RedisKeyBuilder(prefix, '_');
+            this.keyBuilder = builder;
         }
-        return results;
+        return builder;
     }
 
+    /**
+     * 读取缓存;通过{@link #getOrLoad(String, Supplier, int, boolean)}提前刷新写入的值返回其中的原值
+     */
     public Object get(String key) {
-        return cacheService.getCache(this.buildRedisKey(key));
+        return unwrap(this.getRaw(key));
+    }
+
+    private Object getRaw(String key) {
+        String redisKey = this.buildRedisKey(key);
+        NearCache nearCache = this.nearCache;
+        if (nearCache == null) {
+            return cacheService.getCache(redisKey);
+        }
+        Object value = nearCache.get(this.getKeyPrefix(), redisKey);
+        if (value == null) {
+            value = this.loadIntoNearCache(nearCache, redisKey);
+        }
+        return value;
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof EarlyRefreshValue ? ((EarlyRefreshValue) value).getValue() : value;
+    }
+
+    private static Map<String, Object> unwrapValues(Map<String, Object> values) {
+        values.replaceAll((key, value) -> unwrap(value));
+        return values;
+    }
+
+    /**
+     * 本地缓存未命中,读redis并写入本地副本
+     */
+    private Object loadIntoNearCache(NearCache nearCache, String redisKey) {
+        long stamp = nearCache.stamp(redisKey);
+        // 不经过热点key的本地副本,避免本地缓存失效后重新读到另一层本地副本中的旧值
+        Object value = cacheService.getCacheFromRedis(redisKey);
+        nearCache.put(redisKey, value, stamp);
+        return value;
+    }
+
+    /**
+     * 读取缓存,未命中时调用loader加载并写入缓存
+     * <br>本JVM内同一key的并发未命中只调用一次loader,其他线程等待其结果(等待超时后自行加载,见{@link SingleFlight});
+     * loader返回null时不写入缓存
+     * <br>每次加载输出监控数据(measurement为isharpever.cache.load): 加载耗时cost(毫秒)、等待该次加载结果的线程数waiters、
+     * 等待超时数waitTimeout
+     *
+     * @param timeout 过期时间(秒)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, Supplier<T> loader, int timeout) {
+        Object value = this.get(key);
+        if (value != null) {
+            return (T) value;
+        }
+        String redisKey = this.buildRedisKey(key);
+        return singleFlight.execute(redisKey, () -> {
+            // 等待期间其他线程可能已加载完成
+            Object cached = unwrap(cacheService.getCache(redisKey));
+            if (cached != null) {
+                return (T) cached;
+            }
+            T loaded = loader.get();
+            if (loaded != null) {
+                this.put(key, loaded, timeout);
+            }
+            return loaded;
+        }, this.loadSeries());
+    }
+
+    /**
+     * 同{@link #getOrLoad(String, Supplier, int)},earlyRefresh为true时在过期前概率性地提前刷新(XFetch):
+     * 距过期越近、加载越慢,刷新概率越大,由某一个请求在过期前刷新,其他请求继续使用旧值
+     * <br>缓存中保存的是附带过期时间及加载耗时的包装值({@link EarlyRefreshValue}),{@link #get}读取时返回其中的原值;
+     * 以普通方式写入的值照常返回,不提前刷新
+     * <br>提前刷新时loader抛出异常的,返回旧值
+     *
+     * @param timeout 过期时间(秒)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, Supplier<T> loader, int timeout, boolean earlyRefresh) {
+        if (!earlyRefresh) {
+            return this.getOrLoad(key, loader, timeout);
+        }
+        String redisKey = this.buildRedisKey(key);
+        Object value = this.getRaw(key);
+        EarlyRefreshValue cached = null;
+        if (value instanceof EarlyRefreshValue) {
+            cached = (EarlyRefreshValue) value;
+            // 未到刷新时机,或已有线程在刷新
+            if (!cached.shouldRefresh(System.currentTimeMillis()) || singleFlight.isLoading(redisKey)) {
+                return (T) cached.getValue();
+            }
+        } else if (value != null) {
+            // 以普通方式写入的值,不提前刷新
+            return (T) value;
+        }
+        MetricSeries series = this.loadSeries();
+        if (cached != null) {
+            series.record("earlyRefresh", 1);
+        }
+        EarlyRefreshValue stale = cached;
+        return singleFlight.execute(redisKey, () -> {
+            // 等待期间其他线程可能已加载或刷新完成
+            Object current = cacheService.getCache(redisKey);
+            if (current instanceof EarlyRefreshValue) {
+                EarlyRefreshValue refreshed = (EarlyRefreshValue) current;
+                if (stale == null || refreshed.getExpireAtMillis() != stale.getExpireAtMillis()) {
+                    return (T) refreshed.getValue();
+                }
+            } else if (current != null) {
+                return (T) current;
+            }
+            long startTime = System.currentTimeMillis();
+            T loaded;
+            try {
+                loaded = loader.get();
+            } catch (RuntimeException e) {
+                if (stale == null) {
+                    throw e;
+                }
+                // 提前刷新失败,旧值尚未过期,继续使用旧值
+                series.record("earlyRefreshError", 1);
+                return (T) stale.getValue();
+            }
+            if (loaded != null) {
+                long now = System.currentTimeMillis();
+                this.put(key, new EarlyRefreshValue(loaded, now + timeout * 1000L, now - startTime), timeout);
+            }
+            return loaded;
+        }, series);
+    }
+
+    private MetricSeries loadSeries() {
+        return MetricsRegistry.series(LOAD_MEASUREMENT,
+                "app", AppNameUtil.getAppName(),
+                "ip", NetUtil.getLocalHostAddress(),
+                "prefix", this.getKeyPrefix());
     }
 
     public void put(String key, Object value) {
-        cacheService.putCache(this.buildRedisKey(key), value);
+        String redisKey = this.buildRedisKey(key);
+        cacheService.putCache(redisKey, value);
+        this.invalidateNearCache(redisKey);
     }
 
 
@@ -59,24 +239,26 @@ public class CacheManager {
      * @param timeout 过期时间(秒)
      */
     public void put(String key, Object value, int timeout) {
-        cacheService.putCacheWithExpire(this.buildRedisKey(key), value, timeout);
+        String redisKey = this.buildRedisKey(key);
+        cacheService.putCacheWithExpire(redisKey, value, timeout);
+        this.invalidateNearCache(redisKey);
     }
 
     public void del(String key) {
-        cacheService.removeCache(this.buildRedisKey(key));
+        String redisKey = this.buildRedisKey(key);
+        cacheService.removeCache(redisKey);
+        this.invalidateNearCache(redisKey);
     }
 
     /**
-     * 指定key的value增加指定值,并设置过期时间
+     * 指定key的value增加指定值,并设置过期时间,一次lua调用(原子的)
      * @param key
      * @param delta
      * @param timeout 过期时间(秒)
      * @return
      */
     public Long increment(String key, long delta, int timeout) {
-        Long result = cacheService.increment(this.buildRedisKey(key), delta);
-        this.expire(key, timeout);
-        return result;
+        return cacheService.incrementWithExpire(this.buildRedisKey(key), delta, timeout);
     }
 
     /**
@@ -91,7 +273,7 @@ public class CacheManager {
     }
 
     /**
-     * 指定hash key的value增加指定值
+     * 指定hash key的value增加指定值,并设置过期时间,一次lua调用(原子的)
      * @param h
      * @param hk
      * @param delta
@@ -99,9 +281,7 @@ public class CacheManager {
      * @return
      */
     public Long increment(String h, String hk, long delta, int timeout) {
-        Long result = cacheService.increment(this.buildRedisKey(h), hk, delta);
-        this.expire(h, timeout);
-        return result;
+        return cacheService.incrementWithExpire(this.buildRedisKey(h), hk, delta, timeout);
     }
 
     public Map<String, String> getHashEntries(String h) {
@@ -115,21 +295,124 @@ public class CacheManager {
      * @return
      */
     public Boolean expire(String key, int timeout) {
-        return cacheService.expire(this.buildRedisKey(key), timeout);
+        String redisKey = this.buildRedisKey(key);
+        Boolean result = cacheService.expire(redisKey, timeout);
+        this.invalidateNearCache(redisKey);
+        return result;
     }
 
+    /**
+     * 批量读取,返回的map以redis key为key;提前刷新写入的值返回其中的原值,同{@link #get(String)}
+     */
     public Map<String, Object> batchQueryKeys(List<String> keys) {
         List<String> buildKeys = batchBuildRedisKey(keys);
-        return cacheService.batchQueryKeys(buildKeys);
+        return unwrapValues(cacheService.batchQueryKeys(buildKeys));
+    }
+
+    /**
+     * 批量读取,每批读完即回调consumer(redis key, value),见{@link CacheService#batchQueryKeys(List, BiConsumer)};
+     * 提前刷新写入的值回调其中的原值
+     */
+    public void batchQueryKeys(List<String> keys, BiConsumer<String, Object> consumer) {
+        cacheService.batchQueryKeys(batchBuildRedisKey(keys), (key, value) -> consumer.accept(key, unwrap(value)));
+    }
+
+    /**
+     * 批量写入redis,每个key一次SETEX,按批pipeline执行
+     *
+     * @param values key -> value
+     * @param timeout 过期时间(秒)
+     */
+    public void batchPut(Map<String, Object> values, int timeout) {
+        this.batchPut(values, null, timeout);
+    }
+
+    /**
+     * 批量写入redis,每个key可以有不同的过期时间,按批pipeline执行
+     *
+     * @param values key -> value
+     * @param timeouts key -> 过期时间(秒),不含的key使用defaultTimeout
+     * @param defaultTimeout 默认过期时间(秒)
+     */
+    public void batchPut(Map<String, Object> values, Map<String, Integer> timeouts, int defaultTimeout) {
+        Map<String, Object> redisValues = Maps.newHashMapWithExpectedSize(values.size());
+        Map<String, Integer> redisTimeouts = timeouts == null ? null : Maps.newHashMapWithExpectedSize(timeouts.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String redisKey = this.buildRedisKey(entry.getKey());
+            redisValues.put(redisKey, entry.getValue());
+            if (timeouts != null && timeouts.containsKey(entry.getKey())) {
+                redisTimeouts.put(redisKey, timeouts.get(entry.getKey()));
+            }
+        }
+        cacheService.batchPut(redisValues, redisTimeouts, defaultTimeout);
+        this.invalidateNearCache(redisValues.keySet());
     }
 
+    /**
+     * 指定的多个key的value分别增加指定值,并设置过期时间;每个key一次lua调用(增加与设置过期时间是原子的),按批pipeline执行
+     *
+     * @param deltas key -> 增加值
+     * @param timeout 过期时间(秒)
+     * @return key -> 增加后的值,执行失败的key不包含在内
+     */
+    public Map<String, Long> batchIncrement(Map<String, Long> deltas, int timeout) {
+        Map<String, Long> redisDeltas = Maps.newHashMapWithExpectedSize(deltas.size());
+        Map<String, String> keyOfRedisKey = Maps.newHashMapWithExpectedSize(deltas.size());
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            String redisKey = this.buildRedisKey(entry.getKey());
+            redisDeltas.put(redisKey, entry.getValue());
+            keyOfRedisKey.put(redisKey, entry.getKey());
+        }
+        Map<String, Long> redisResult = cacheService.batchIncrement(redisDeltas, timeout);
+        Map<String, Long> result = Maps.newHashMapWithExpectedSize(redisResult.size());
+        redisResult.forEach((redisKey, value) -> result.put(keyOfRedisKey.get(redisKey), value));
+        return result;
+    }
+
+    /**
+     * 多个hash的指定field的value分别增加指定值,并设置hash的过期时间;
+     * 每个hash一次lua调用(增加与设置过期时间是原子的),按批pipeline执行
+     *
+     * @param deltas hash key -> (field -> 增加值)
+     * @param timeout 过期时间(秒)
+     */
+    public void batchIncrementHash(Map<String, Map<String, Long>> deltas, int timeout) {
+        Map<String, Map<String, Long>> redisDeltas = Maps.newHashMapWithExpectedSize(deltas.size());
+        deltas.forEach((h, fieldDeltas) -> redisDeltas.put(this.buildRedisKey(h), fieldDeltas));
+        cacheService.batchIncrementHash(redisDeltas, timeout);
+    }
+
+    /**
+     * 批量删除
+     *
+     * @return 删除的key数
+     */
+    public long batchDel(List<String> keys) {
+        List<String> buildKeys = batchBuildRedisKey(keys);
+        long count = cacheService.batchRemove(buildKeys);
+        this.invalidateNearCache(buildKeys);
+        return count;
+    }
+
+    /**
+     * 批量读取,提前刷新写入的值返回其中的原值,同{@link #get(String)}
+     */
     public List<Object> mget(List<String> keys) {
         List<String> buildKeys = batchBuildRedisKey(keys);
-        return cacheService.mget(buildKeys);
+        List<Object> values = cacheService.mget(buildKeys);
+        if (values != null) {
+            values.replaceAll(CacheManager::unwrap);
+        }
+        return values;
     }
 
     public boolean putAbsentWithExpire(String key, Object value, int expire, TimeUnit timeUnit) {
-        return cacheService.putAbsentWithExpire(buildRedisKey(key), value, expire, timeUnit);
+        String redisKey = buildRedisKey(key);
+        boolean result = cacheService.putAbsentWithExpire(redisKey, value, expire, timeUnit);
+        if (result) {
+            this.invalidateNearCache(redisKey);
+        }
+        return result;
     }
 
     public Long incrExpir(String key, long timeout, TimeUnit unit) {
@@ -151,6 +434,87 @@ public class CacheManager {
         cacheService.putStringCache(this.buildRedisKey(key), value, timeout);
     }
 
+    /**
+     * 异步的{@link #get(String)},本地缓存命中时直接返回已完成的future
+     * <br>多个读取可并发发出后组合结果,如{@code CompletableFuture.allOf(...)};异常处理与同步方法一致,future不会异常完成,
+     * 见{@link CacheService#getCacheAsync(String)}
+     */
+    public CompletableFuture<Object> getAsync(String key) {
+        String redisKey = this.buildRedisKey(key);
+        NearCache nearCache = this.nearCache;
+        if (nearCache == null) {
+            return cacheService.getCacheAsync(redisKey).thenApply(CacheManager::unwrap);
+        }
+        Object value = nearCache.get(this.getKeyPrefix(), redisKey);
+        if (value != null) {
+            return CompletableFuture.completedFuture(unwrap(value));
+        }
+        return CacheAsyncExecutor.supply(() -> unwrap(this.loadIntoNearCache(nearCache, redisKey)));
+    }
+
+    /**
+     * 异步的{@link #put(String, Object, int)}
+     *
+     * @param timeout 过期时间(秒)
+     */
+    public CompletableFuture<Void> putAsync(String key, Object value, int timeout) {
+        return CacheAsyncExecutor.run(() -> this.put(key, value, timeout));
+    }
+
+    /**
+     * 异步的{@link #del(String)}
+     */
+    public CompletableFuture<Void> delAsync(String key) {
+        return CacheAsyncExecutor.run(() -> this.del(key));
+    }
+
+    /**
+     * 异步的{@link #increment(String, long, int)}
+     *
+     * @param timeout 过期时间(秒)
+     */
+    public CompletableFuture<Long> incrementAsync(String key, long delta, int timeout) {
+        return cacheService.incrementWithExpireAsync(this.buildRedisKey(key), delta, timeout);
+    }
+
+    /**
+     * 异步的{@link #getStringValue(String)}
+     */
+    public CompletableFuture<String> getStringValueAsync(String key) {
+        return cacheService.getStringValueAsync(this.buildRedisKey(key));
+    }
+
+    /**
+     * 异步的{@link #batchQueryKeys(List)},返回的map以redis key为key
+     */
+    public CompletableFuture<Map<String, Object>> batchQueryKeysAsync(List<String> keys) {
+        return cacheService.batchQueryKeysAsync(batchBuildRedisKey(keys)).thenApply(CacheManager::unwrapValues);
+    }
+
+    /**
+     * 异步的{@link #putAbsentWithExpire(String, Object, int, TimeUnit)}
+     */
+    public CompletableFuture<Boolean> putAbsentWithExpireAsync(String key, Object value, int expire, TimeUnit timeUnit) {
+        return CacheAsyncExecutor.supply(() -> this.putAbsentWithExpire(key, value, expire, timeUnit));
+    }
+
+    /**
+     * redis写入/删除后,删除本地副本并通知其他节点
+     */
+    private void invalidateNearCache(String redisKey) {
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null) {
+            nearCache.invalidateAndPublish(redisKey);
+        }
+    }
+
+    private void invalidateNearCache(Collection<String> redisKeys) {
+        NearCache nearCache = this.nearCache;
+        if (nearCache != null) {
+            nearCache.invalidateAndPublish(redisKeys);
+        }
+    }
+
     protected String getKeyPrefix() {
         return keyPrefix;
     }
@@ -158,4 +522,13 @@ public class CacheManager {
     public void setKeyPrefix(String keyPrefix) {
         this.keyPrefix = keyPrefix;
     }
+
+    /**
+     * 启用本地缓存: get先查本地副本,未命中再查redis并写入本地副本;
+     * put/del/expire/putAbsentWithExpire写入redis后删除本地副本并广播失效消息
+     * <br>只有经由本类的get/写入方法才会使用本地缓存,直接通过CacheService读写的不受影响
+     */
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
 }
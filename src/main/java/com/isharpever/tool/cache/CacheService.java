@@ -3,23 +3,28 @@ package com.isharpever.tool.cache;
 import com.alibaba.fastjson.JSON;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import javax.annotation.Resource;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.dao.DataAccessException;
-import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 /**
  * @author lijf
@@ -27,6 +32,8 @@ import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer
 public class CacheService {
 
     private static final Logger LOG = LoggerFactory.getLogger(CacheService.class);
+    /** 实例序号,用于区分各实例的热点key探测器 */
+    private static final AtomicInteger INSTANCE_SEQ = new AtomicInteger();
 
     private final static DefaultRedisScript<Long> SCRIPT_INCR_EXPIR = new DefaultRedisScript<>();
     static {
@@ -35,12 +42,33 @@ public class CacheService {
         SCRIPT_INCR_EXPIR.setScriptText(SCRIPT_INCR_EXPIR.getScriptAsString());
     }
 
+    /**
+     * INCRBY并设置过期时间(秒): KEYS[1]=key, ARGV[1]=增加值, ARGV[2]=过期时间
+     */
+    private static final DefaultRedisScript<Long> SCRIPT_INCR_BY_EXPIRE = new DefaultRedisScript<>(
+            "local v = redis.call('INCRBY', KEYS[1], ARGV[1]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) return v", Long.class);
+
+    /**
+     * HINCRBY多个field并设置过期时间(秒),返回最后一个field增加后的值:
+     * KEYS[1]=hash key, ARGV[1]=过期时间, ARGV[2..]=field, 增加值...
+     */
+    private static final DefaultRedisScript<Long> SCRIPT_HINCR_BY_EXPIRE = new DefaultRedisScript<>(
+            "local v for i = 2, #ARGV, 2 do "
+                    + "v = redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) return v", Long.class);
+
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 热点key探测,可选,默认按系统属性创建(isharpever.cache.hotkey.enabled为true时),见{@link HotKeyDetector}
+     */
+    private volatile HotKeyDetector hotKeyDetector = HotKeyDetector.fromSystemProperties(
+            "cacheService-" + INSTANCE_SEQ.incrementAndGet());
 
     public Long opsForSetAddReturnSize(String key, long riderId) {
         try {
@@ -68,6 +96,7 @@ public class CacheService {
     public void putCacheWithExpire(String key, Object value, int expire) {
         try {
             redisTemplate.opsForValue().set(key, value, expire, TimeUnit.SECONDS);
+            this.invalidateHotKey(key);
         } catch (Exception e) {
             LOG.error("PUT cache exception [key=" + key + ", value=" + value + ", expire=" + expire + "].", e);
         }
@@ -76,12 +105,32 @@ public class CacheService {
     public void putCache(String key, Object value) {
         try {
             redisTemplate.opsForValue().set(key, value);
+            this.invalidateHotKey(key);
         } catch (Exception e) {
             LOG.error("PUT cache exception [key=" + key + ", value=" + value + "].", e);
         }
     }
 
+    /**
+     * 读取缓存,启用了热点key探测时,热点key读取本地副本,见{@link #getCacheFromRedis}
+     */
     public Object getCache(String key) {
+        try {
+            HotKeyDetector detector = this.hotKeyDetector;
+            if (detector != null) {
+                return detector.get(key, redisTemplate.opsForValue()::get);
+            }
+            return redisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            LOG.error("GET cache exception [key=" + key + "].", e);
+        }
+        return null;
+    }
+
+    /**
+     * 读取缓存,不使用热点key的本地副本,如本身就是本地缓存的加载路径
+     */
+    public Object getCacheFromRedis(String key) {
         try {
             return redisTemplate.opsForValue().get(key);
         } catch (Exception e) {
@@ -102,6 +151,7 @@ public class CacheService {
     public void removeCache(String key) {
         try {
             redisTemplate.delete(key);
+            this.invalidateHotKey(key);
         } catch (Exception e) {
             LOG.error("Remove cache exception [key=" + key + "].", e);
         }
@@ -125,6 +175,36 @@ public class CacheService {
         return null;
     }
 
+    /**
+     * 增加指定值并设置过期时间,一次lua调用(原子的,一次往返)
+     *
+     * @param timeout 过期时间(秒)
+     */
+    public Long incrementWithExpire(String key, long delta, int timeout) {
+        try {
+            return stringRedisTemplate.execute(SCRIPT_INCR_BY_EXPIRE, Collections.singletonList(key),
+                    String.valueOf(delta), String.valueOf(timeout));
+        } catch (Exception e) {
+            LOG.error("incrementWithExpire exception key={} delta={} timeout={}", key, delta, timeout, e);
+        }
+        return null;
+    }
+
+    /**
+     * hash中指定field增加指定值并设置hash的过期时间,一次lua调用(原子的,一次往返)
+     *
+     * @param timeout 过期时间(秒)
+     */
+    public Long incrementWithExpire(String h, String hk, long delta, int timeout) {
+        try {
+            return stringRedisTemplate.execute(SCRIPT_HINCR_BY_EXPIRE, Collections.singletonList(h),
+                    String.valueOf(timeout), hk, String.valueOf(delta));
+        } catch (Exception e) {
+            LOG.error("incrementWithExpire exception h={} hk={} delta={} timeout={}", h, hk, delta, timeout, e);
+        }
+        return null;
+    }
+
     public Map<String, String> getHashEntries(String h) {
         try {
             HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
@@ -143,7 +223,10 @@ public class CacheService {
      */
     public Boolean expire(String key, long timeout) {
         try {
-            return stringRedisTemplate.expire(key, timeout, TimeUnit.SECONDS);
+            Boolean result = stringRedisTemplate.expire(key, timeout, TimeUnit.SECONDS);
+            // 本地副本可能比新的过期时间存活更久
+            this.invalidateHotKey(key);
+            return result;
         } catch (Exception e) {
             LOG.error("expire cache exception [key=" + key + "].", e);
         }
@@ -152,35 +235,25 @@ public class CacheService {
 
 
     public Map<String, Object> batchQueryKeys(List<String> keys) {
-        Map<String, Object> result = Maps.newHashMap();
-        try {
-            if (CollectionUtils.isEmpty(keys)) {
-                return result;
-            }
-            List<Object> values = this.redisTemplate.executePipelined(new RedisCallback<Object>() {
-                @Override
-                public Object doInRedis(RedisConnection connection) throws DataAccessException {
-                    for(String key:keys) {
-                        connection.get(key.getBytes());
-                    }
-                    return null;
-                }
-            }, new JdkSerializationRedisSerializer());
-
-            if (CollectionUtils.isEmpty(keys)) {
-                return result;
-            }
-
-            for (int i = 0, size = keys.size(); i < size; i++) {
-                result.put(keys.get(i), values.get(i));
-            }
-            return result;
-        } catch (Exception e) {
-            LOG.error("--- redis executePipelined exception keys{} cause:{}", JSON.toJSONString(keys), e);
+        if (CollectionUtils.isEmpty(keys)) {
+            return Maps.newHashMap();
         }
+        Map<String, Object> result = Maps.newHashMapWithExpectedSize(keys.size());
+        this.batchQueryKeys(keys, result::put);
         return result;
     }
 
+    /**
+     * 批量读取,分批pipeline并发执行,每批读完即回调consumer(key, value),key不存在时value为null,
+     * 无需把全部结果放在一个集合中;见{@link PipelinedBatchReader}
+     */
+    public void batchQueryKeys(List<String> keys, BiConsumer<String, Object> consumer) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return;
+        }
+        PipelinedBatchReader.read(this.redisTemplate, keys, consumer);
+    }
+
     public List<Object> mget(List<String> keys) {
         try {
             return  this.redisTemplate.opsForValue().multiGet(keys);
@@ -190,13 +263,16 @@ public class CacheService {
         }
     }
 
+    /**
+     * key不存在时写入并设置过期时间,一条SET NX PX命令,不会出现写入成功但未设置过期时间的key
+     */
     public boolean putAbsentWithExpire(String key, Object value, int expire, TimeUnit timeUnit) {
         try {
-            if(redisTemplate.opsForValue().setIfAbsent(key, value)) {
-                redisTemplate.expire(key, expire, timeUnit);
-                return true;
+            boolean success = Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, expire, timeUnit));
+            if (success) {
+                this.invalidateHotKey(key);
             }
-            return false;
+            return success;
         } catch (Exception e) {
             LOG.error("--- putAbsentWithExpire exception [key=" + key + ", value=" + value + ", expire=" + expire + "].", e);
             return false;
@@ -216,6 +292,7 @@ public class CacheService {
     public void putStringCache(String key, String value, int expire) {
         try {
             stringRedisTemplate.opsForValue().set(key, value, (long)expire, TimeUnit.SECONDS);
+            this.invalidateHotKey(key);
         } catch (Exception var5) {
             LOG.error("PUT String cache exception [key=" + key + ", value=" + value + ", expire=" + expire + "].", var5);
         }
@@ -231,7 +308,281 @@ public class CacheService {
         }
     }
 
+    /**
+     * 批量写入并设置过期时间,按批pipeline执行SETEX,每个key的写入与过期时间是原子的
+     *
+     * @param values key -> value
+     * @param timeouts key -> 过期时间(秒),不含的key使用defaultTimeout
+     * @param defaultTimeout 默认过期时间(秒)
+     */
+    @SuppressWarnings("unchecked")
+    public void batchPut(Map<String, Object> values, Map<String, Integer> timeouts, int defaultTimeout) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        for (List<Map.Entry<String, Object>> chunk : Lists.partition(new ArrayList<>(values.entrySet()),
+                PipelinedBatchReader.CHUNK_SIZE)) {
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map.Entry<String, Object> entry : chunk) {
+                        Integer timeout = timeouts == null ? null : timeouts.get(entry.getKey());
+                        connection.setEx(keySerializer.serialize(entry.getKey()),
+                                timeout == null ? defaultTimeout : timeout,
+                                valueSerializer.serialize(entry.getValue()));
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                LOG.error("--- batchPut exception keys数={} 首个key={}", chunk.size(), chunk.get(0).getKey(), e);
+            }
+        }
+        HotKeyDetector detector = this.hotKeyDetector;
+        if (detector != null) {
+            detector.invalidate(values.keySet());
+        }
+    }
+
+    /**
+     * 批量增加指定值并设置过期时间,按批pipeline执行,每个key的增加与过期时间是原子的(lua)
+     *
+     * @param deltas key -> 增加值
+     * @param timeout 过期时间(秒)
+     * @return key -> 增加后的值,执行失败的key不包含在内
+     */
+    public Map<String, Long> batchIncrement(Map<String, Long> deltas, int timeout) {
+        Map<String, Long> result = Maps.newHashMapWithExpectedSize(deltas.size());
+        byte[] rawTimeout = String.valueOf(timeout).getBytes(StandardCharsets.UTF_8);
+        for (List<Map.Entry<String, Long>> chunk : Lists.partition(new ArrayList<>(deltas.entrySet()),
+                PipelinedBatchReader.CHUNK_SIZE)) {
+            try {
+                List<byte[][]> keysAndArgs = new ArrayList<>(chunk.size());
+                for (Map.Entry<String, Long> entry : chunk) {
+                    keysAndArgs.add(new byte[][] {entry.getKey().getBytes(StandardCharsets.UTF_8),
+                            String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8), rawTimeout});
+                }
+                List<Object> values = this.executeScriptPipelined(SCRIPT_INCR_BY_EXPIRE, keysAndArgs);
+                for (int i = 0, size = chunk.size(); i < size; i++) {
+                    Object value = values.get(i);
+                    if (value instanceof Long) {
+                        result.put(chunk.get(i).getKey(), (Long) value);
+                    } else {
+                        LOG.error("--- batchIncrement exception key={} result={}", chunk.get(i).getKey(), value);
+                    }
+                }
+            } catch (Exception e) {
+                LOG.error("--- batchIncrement exception keys数={} 首个key={}", chunk.size(), chunk.get(0).getKey(), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量增加hash中指定field的值并设置hash的过期时间,按批pipeline执行,每个hash的增加与过期时间是原子的(lua)
+     *
+     * @param deltas hash key -> (field -> 增加值)
+     * @param timeout 过期时间(秒)
+     */
+    public void batchIncrementHash(Map<String, Map<String, Long>> deltas, int timeout) {
+        byte[] rawTimeout = String.valueOf(timeout).getBytes(StandardCharsets.UTF_8);
+        for (List<Map.Entry<String, Map<String, Long>>> chunk : Lists.partition(new ArrayList<>(deltas.entrySet()),
+                PipelinedBatchReader.CHUNK_SIZE)) {
+            try {
+                List<byte[][]> keysAndArgs = new ArrayList<>(chunk.size());
+                for (Map.Entry<String, Map<String, Long>> entry : chunk) {
+                    if (entry.getValue().isEmpty()) {
+                        continue;
+                    }
+                    // KEYS[1]=hash key, ARGV[1]=过期时间, ARGV[2..]=field, 增加值...
+                    byte[][] item = new byte[2 + entry.getValue().size() * 2][];
+                    item[0] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    item[1] = rawTimeout;
+                    int i = 2;
+                    for (Map.Entry<String, Long> field : entry.getValue().entrySet()) {
+                        item[i++] = field.getKey().getBytes(StandardCharsets.UTF_8);
+                        item[i++] = String.valueOf(field.getValue()).getBytes(StandardCharsets.UTF_8);
+                    }
+                    keysAndArgs.add(item);
+                }
+                if (!keysAndArgs.isEmpty()) {
+                    this.executeScriptPipelined(SCRIPT_HINCR_BY_EXPIRE, keysAndArgs);
+                }
+            } catch (Exception e) {
+                LOG.error("--- batchIncrementHash exception keys数={} 首个key={}", chunk.size(), chunk.get(0).getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * pipeline执行一批只有一个key的lua脚本: 按sha执行(EVALSHA),只发送脚本的sha而不是整个脚本;
+     * redis未缓存该脚本(NOSCRIPT,如重启后)的命令再以EVAL执行一次,同时使redis缓存该脚本
+     *
+     * @param keysAndArgs 每条命令的key及参数,key在首位
+     * @return 各条命令的结果,执行失败的为异常对象
+     */
+    private List<Object> executeScriptPipelined(DefaultRedisScript<Long> script, List<byte[][]> keysAndArgs) {
+        String sha = script.getSha1();
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] item : keysAndArgs) {
+                    connection.evalSha(sha, ReturnType.INTEGER, 1, item);
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            results = new ArrayList<>(e.getPipelineResult());
+        }
+        List<Integer> noScript = new ArrayList<>();
+        for (int i = 0, size = results.size(); i < size; i++) {
+            if (isNoScriptError(results.get(i))) {
+                noScript.add(i);
+            }
+        }
+        if (noScript.isEmpty()) {
+            return results;
+        }
+        byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        List<Object> retried;
+        try {
+            retried = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Integer index : noScript) {
+                    connection.eval(body, ReturnType.INTEGER, 1, keysAndArgs.get(index));
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            retried = e.getPipelineResult();
+        }
+        for (int i = 0, size = noScript.size(); i < size; i++) {
+            results.set(noScript.get(i), retried.get(i));
+        }
+        return results;
+    }
+
+    private static boolean isNoScriptError(Object result) {
+        Throwable e = result instanceof Throwable ? (Throwable) result : null;
+        while (e != null) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 批量删除,按批执行DEL
+     *
+     * @return 删除的key数
+     */
+    public long batchRemove(List<String> keys) {
+        long count = 0;
+        for (List<String> chunk : Lists.partition(keys, PipelinedBatchReader.CHUNK_SIZE)) {
+            try {
+                Long deleted = redisTemplate.delete(chunk);
+                count += deleted == null ? 0 : deleted;
+                HotKeyDetector detector = this.hotKeyDetector;
+                if (detector != null) {
+                    detector.invalidate(chunk);
+                }
+            } catch (Exception e) {
+                LOG.error("--- batchRemove exception keys数={} 首个key={}", chunk.size(), chunk.get(0), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 异步的{@link #getCache(String)},多个读取可并发发出后组合结果,见{@link CacheAsyncExecutor}
+     */
+    public CompletableFuture<Object> getCacheAsync(String key) {
+        return CacheAsyncExecutor.supply(() -> this.getCache(key));
+    }
+
+    /**
+     * 异步的{@link #getCache(List)}
+     */
+    public CompletableFuture<List<Object>> getCacheAsync(List<String> keys) {
+        return CacheAsyncExecutor.supply(() -> this.getCache(keys));
+    }
+
+    /**
+     * 异步的{@link #getStringValue(String)}
+     */
+    public CompletableFuture<String> getStringValueAsync(String key) {
+        return CacheAsyncExecutor.supply(() -> this.getStringValue(key));
+    }
+
+    /**
+     * 异步的{@link #batchQueryKeys(List)}
+     */
+    public CompletableFuture<Map<String, Object>> batchQueryKeysAsync(List<String> keys) {
+        return CacheAsyncExecutor.supply(() -> this.batchQueryKeys(keys));
+    }
+
+    /**
+     * 异步的{@link #putCacheWithExpire(String, Object, int)}
+     */
+    public CompletableFuture<Void> putCacheWithExpireAsync(String key, Object value, int expire) {
+        return CacheAsyncExecutor.run(() -> this.putCacheWithExpire(key, value, expire));
+    }
+
+    /**
+     * 异步的{@link #removeCache(String)}
+     */
+    public CompletableFuture<Void> removeCacheAsync(String key) {
+        return CacheAsyncExecutor.run(() -> this.removeCache(key));
+    }
+
+    /**
+     * 异步的{@link #incrementWithExpire(String, long, int)}
+     */
+    public CompletableFuture<Long> incrementWithExpireAsync(String key, long delta, int timeout) {
+        return CacheAsyncExecutor.supply(() -> this.incrementWithExpire(key, delta, timeout));
+    }
+
+    /**
+     * 异步的{@link #putAbsentWithExpire(String, Object, int, TimeUnit)}
+     */
+    public CompletableFuture<Boolean> putAbsentWithExpireAsync(String key, Object value, int expire, TimeUnit timeUnit) {
+        return CacheAsyncExecutor.supply(() -> this.putAbsentWithExpire(key, value, expire, timeUnit));
+    }
+
+    /**
+     * 异步的{@link #expire(String, long)}
+     */
+    public CompletableFuture<Boolean> expireAsync(String key, long timeout) {
+        return CacheAsyncExecutor.supply(() -> this.expire(key, timeout));
+    }
+
     public RedisTemplate<String, Object> getRedisTemplate() {
         return redisTemplate;
     }
+
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * 设置热点key探测,null表示不探测
+     */
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        HotKeyDetector previous = this.hotKeyDetector;
+        this.hotKeyDetector = hotKeyDetector;
+        if (previous != null && previous != hotKeyDetector) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 本进程修改了key,删除热点key的本地副本
+     */
+    private void invalidateHotKey(String key) {
+        HotKeyDetector detector = this.hotKeyDetector;
+        if (detector != null) {
+            detector.invalidate(key);
+        }
+    }
 }
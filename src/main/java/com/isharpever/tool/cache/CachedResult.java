@@ -0,0 +1,61 @@
+package com.isharpever.tool.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标在方法上面,方法的返回值按参数缓存在redis中(cache-aside),由{@link CachedResultAspect}实现
+ * <li>缓存key为 CacheManager前缀_prefix:参数部分,参数部分由{@link #key()}指定,表达式在方法首次调用时解析,调用时不再解析
+ * <li>返回null时按{@link #negativeTtl()}缓存null,避免不存在的数据反复穿透到数据库
+ * <li>过期时间附加随机的抖动({@link #jitter()}),避免同时写入的大量key同时过期
+ * <li>本JVM内同一key的并发未命中只调用一次方法,其他线程等待其结果;方法抛出的异常不缓存
+ * <br>返回值需能被redis的value序列化器序列化;缓存的对象会被多个调用方共享(启用本地缓存时),调用方不应修改
+ * <pre>
+ * &#64;CachedResult(prefix = "user", key = "#0", ttl = 300)
+ * public User getUser(long userId)
+ *
+ * &#64;CachedResult(prefix = "order", key = {"#query.userId", "#query.status"}, ttl = 60)
+ * public List&lt;Order&gt; listOrders(OrderQuery query)
+ * </pre>
+ *
+ * @see EnableCachedResult
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface CachedResult {
+
+    /**
+     * key前缀,默认为 类名.方法名
+     */
+    String prefix() default "";
+
+    /**
+     * 组成key的参数表达式,多个以:连接,默认为全部参数
+     * <li>#0、#1 第几个参数
+     * <li>#userId 参数名(需编译时保留参数名,如-parameters)
+     * <li>#query.userId 参数的属性(按参数声明类型的getter读取),可多级
+     */
+    String[] key() default {};
+
+    /**
+     * 过期时间(秒)
+     */
+    int ttl();
+
+    /**
+     * 返回null时的缓存时间(秒),0表示不缓存null
+     */
+    int negativeTtl() default 10;
+
+    /**
+     * 过期时间随机增加的最大百分比,0表示不增加
+     */
+    int jitter() default 10;
+
+    /**
+     * 使用的CacheManager的bean名称,默认为唯一的CacheManager
+     */
+    String cacheManager() default "";
+}
@@ -0,0 +1,168 @@
+package com.isharpever.tool.cache;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link CachedResult}的实现
+ * <br>每个方法输出监控数据(measurement为isharpever.cache.method,每秒聚合): 命中hit、未命中miss、
+ * 命中缓存的null negativeHit、加载耗时cost(毫秒)、等待该次加载结果的线程数waiters、等待超时数waitTimeout
+ * <br>读写redis失败时(CacheManager记录日志)直接调用方法,不影响业务
+ */
+@Component
+@Aspect
+public class CachedResultAspect {
+    private static final Logger logger = LoggerFactory.getLogger(CachedResultAspect.class);
+
+    private static final String MEASUREMENT = "isharpever.cache.method";
+
+    /**
+     * 方法返回null时缓存的值,字符串在各种value序列化器下都能还原
+     */
+    static final String NULL_VALUE = "\u0000isharpever:null";
+
+    @Resource
+    private ApplicationContext applicationContext;
+
+    private final Map<Method, MethodCache> methodCaches = new ConcurrentHashMap<>(64);
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    public CachedResultAspect() {
+        // 重新获取各方法的监控序列(长期无数据的序列会被MetricsRegistry淘汰)
+        ExecutorServiceUtil.scheduleStatTask(() -> methodCaches.values().forEach(MethodCache::refresh));
+    }
+
+    @Pointcut("@annotation(CachedResult)")
+    public void pointcut() {}
+
+    @Around("pointcut() && @annotation(cachedResult)")
+    public Object around(ProceedingJoinPoint joinPoint, CachedResult cachedResult) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodCache methodCache = methodCaches.get(method);
+        if (methodCache == null) {
+            methodCache = methodCaches.computeIfAbsent(method, m -> new MethodCache(m, cachedResult));
+        }
+
+        String key;
+        try {
+            key = methodCache.buildKey(joinPoint.getArgs());
+        } catch (Exception e) {
+            logger.warn("--- 生成缓存key失败,不使用缓存 method={}", method, e);
+            return joinPoint.proceed();
+        }
+        CacheManager cacheManager = methodCache.cacheManager;
+        Object cached = cacheManager.get(key);
+        if (cached != null) {
+            methodCache.series.record(NULL_VALUE.equals(cached) ? "negativeHit" : "hit", 1);
+            return unwrap(cached);
+        }
+        methodCache.series.record("miss", 1);
+
+        MethodCache current = methodCache;
+        try {
+            return unwrap(singleFlight.execute(cacheManager.buildRedisKey(key), () -> {
+                // 等待期间其他线程可能已加载完成
+                Object value = cacheManager.get(key);
+                if (value != null) {
+                    return value;
+                }
+                Object result;
+                try {
+                    result = joinPoint.proceed();
+                } catch (Throwable e) {
+                    throw new ProceedException(e);
+                }
+                if (result == null) {
+                    if (cachedResult.negativeTtl() > 0) {
+                        cacheManager.put(key, NULL_VALUE, cachedResult.negativeTtl());
+                    }
+                    return NULL_VALUE;
+                }
+                cacheManager.put(key, result, current.ttlWithJitter());
+                return result;
+            }, methodCache.series));
+        } catch (ProceedException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object unwrap(Object value) {
+        return NULL_VALUE.equals(value) ? null : value;
+    }
+
+    private CacheManager getCacheManager(String name) {
+        return StringUtils.isEmpty(name) ? applicationContext.getBean(CacheManager.class)
+                : applicationContext.getBean(name, CacheManager.class);
+    }
+
+    /**
+     * 方法首次调用时准备好的缓存配置
+     */
+    private final class MethodCache {
+        private final String prefix;
+        private final CachedResultKeyGenerator keyGenerator;
+        private final CacheManager cacheManager;
+        private final String[] tags;
+        private volatile MetricSeries series;
+        private final int ttl;
+        private final int maxJitter;
+
+        private MethodCache(Method method, CachedResult cachedResult) {
+            if (cachedResult.ttl() <= 0) {
+                throw new IllegalArgumentException("ttl应大于0 " + method);
+            }
+            this.prefix = StringUtils.isEmpty(cachedResult.prefix())
+                    ? method.getDeclaringClass().getSimpleName() + "." + method.getName() : cachedResult.prefix();
+            this.keyGenerator = CachedResultKeyGenerator.compile(method, cachedResult.key());
+            this.cacheManager = getCacheManager(cachedResult.cacheManager());
+            this.tags = new String[] {"app", AppNameUtil.getAppName(),
+                    "ip", NetUtil.getLocalHostAddress(),
+                    "class", method.getDeclaringClass().getName(),
+                    "method", method.getName()};
+            this.refresh();
+            this.ttl = cachedResult.ttl();
+            this.maxJitter = cachedResult.ttl() * Math.max(0, cachedResult.jitter()) / 100;
+        }
+
+        private void refresh() {
+            this.series = MetricsRegistry.series(MEASUREMENT, tags);
+        }
+
+        private String buildKey(Object[] args) {
+            String argsKey = keyGenerator.generate(args);
+            return argsKey.isEmpty() ? prefix : prefix + ":" + argsKey;
+        }
+
+        private int ttlWithJitter() {
+            return maxJitter > 0 ? ttl + ThreadLocalRandom.current().nextInt(maxJitter + 1) : ttl;
+        }
+    }
+
+    /**
+     * 在加载过程中传递目标方法抛出的异常
+     */
+    private static class ProceedException extends RuntimeException {
+        private ProceedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
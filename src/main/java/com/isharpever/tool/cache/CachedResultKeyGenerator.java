@@ -0,0 +1,157 @@
+package com.isharpever.tool.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+
+/**
+ * 由{@link CachedResult#key()}的表达式编译而成的key生成器: 表达式在编译时解析为参数下标及getter,生成key时只做反射调用
+ */
+final class CachedResultKeyGenerator {
+
+    private static final char SEPARATOR = ':';
+
+    /** 依次为各表达式对应的参数及属性,为null表示使用全部参数 */
+    private final Accessor[] accessors;
+
+    private CachedResultKeyGenerator(Accessor[] accessors) {
+        this.accessors = accessors;
+    }
+
+    /**
+     * 编译key表达式
+     *
+     * @throws IllegalArgumentException 表达式不合法,或参数/属性不存在
+     */
+    static CachedResultKeyGenerator compile(Method method, String[] expressions) {
+        if (expressions.length == 0) {
+            return new CachedResultKeyGenerator(null);
+        }
+        String[] parameterNames = null;
+        Accessor[] accessors = new Accessor[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            String expression = expressions[i];
+            if (expression.length() < 2 || expression.charAt(0) != '#') {
+                throw new IllegalArgumentException("key表达式应以#开头 " + method + " " + expression);
+            }
+            String[] segments = expression.substring(1).split("\\.");
+            int index;
+            if (Character.isDigit(segments[0].charAt(0))) {
+                index = Integer.parseInt(segments[0]);
+            } else {
+                if (parameterNames == null) {
+                    parameterNames = new DefaultParameterNameDiscoverer().getParameterNames(method);
+                    if (parameterNames == null) {
+                        throw new IllegalArgumentException("无法获取参数名,请使用#0形式或以-parameters编译 " + method);
+                    }
+                }
+                index = indexOf(parameterNames, segments[0]);
+            }
+            if (index < 0 || index >= method.getParameterCount()) {
+                throw new IllegalArgumentException("参数不存在 " + method + " " + expression);
+            }
+            Method[] getters = new Method[segments.length - 1];
+            Class<?> type = method.getParameterTypes()[index];
+            for (int j = 1; j < segments.length; j++) {
+                getters[j - 1] = findGetter(type, segments[j]);
+                if (getters[j - 1] == null) {
+                    throw new IllegalArgumentException("属性不存在 " + method + " " + expression);
+                }
+                type = getters[j - 1].getReturnType();
+            }
+            accessors[i] = new Accessor(index, getters);
+        }
+        return new CachedResultKeyGenerator(accessors);
+    }
+
+    String generate(Object[] args) {
+        StringBuilder key = new StringBuilder(32);
+        if (accessors == null) {
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    key.append(SEPARATOR);
+                }
+                appendValue(key, args[i]);
+            }
+            return key.toString();
+        }
+        for (int i = 0; i < accessors.length; i++) {
+            if (i > 0) {
+                key.append(SEPARATOR);
+            }
+            appendValue(key, accessors[i].get(args));
+        }
+        return key.toString();
+    }
+
+    private static void appendValue(StringBuilder key, Object value) {
+        if (value == null) {
+            key.append("null");
+        } else if (value.getClass().isArray()) {
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                key.append(Array.get(value, i));
+            }
+        } else if (value instanceof Collection) {
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    key.append(',');
+                }
+                key.append(element);
+                first = false;
+            }
+        } else {
+            key.append(value);
+        }
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Method findGetter(Class<?> type, String property) {
+        String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (String name : new String[]{"get" + suffix, "is" + suffix}) {
+            try {
+                Method getter = type.getMethod(name);
+                getter.setAccessible(true);
+                return getter;
+            } catch (NoSuchMethodException e) {
+                // 尝试下一个
+            }
+        }
+        return null;
+    }
+
+    private static class Accessor {
+        private final int index;
+        private final Method[] getters;
+
+        private Accessor(int index, Method[] getters) {
+            this.index = index;
+            this.getters = getters;
+        }
+
+        private Object get(Object[] args) {
+            Object value = args[index];
+            try {
+                for (int i = 0; i < getters.length && value != null; i++) {
+                    value = getters[i].invoke(value);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("读取key属性失败 " + getters[0].getDeclaringClass().getName(), e);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.isharpever.tool.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 支持提前刷新的缓存值: 除值本身外,记录过期时间及加载耗时,用于XFetch式的概率提前刷新
+ * <br>距过期越近、加载越慢,提前刷新的概率越大,使热点key在过期前由某一个请求刷新,而不是过期后同时失效
+ * <br>按bean的形式提供getter/setter,以便各编解码器(JDK序列化、fastjson等)都能读写
+ *
+ * @see CacheManager#getOrLoad(String, java.util.function.Supplier, int, boolean)
+ */
+public class EarlyRefreshValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 提前刷新的倾向,大于1时更早刷新 */
+    private static final double BETA = 1.0;
+
+    private Object value;
+    /** 过期时间(毫秒时间戳) */
+    private long expireAtMillis;
+    /** 加载耗时(毫秒) */
+    private long loadMillis;
+
+    /**
+     * 供反序列化(如fastjson)使用
+     */
+    public EarlyRefreshValue() {
+    }
+
+    public EarlyRefreshValue(Object value, long expireAtMillis, long loadMillis) {
+        this.value = value;
+        this.expireAtMillis = expireAtMillis;
+        this.loadMillis = loadMillis;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getExpireAtMillis() {
+        return expireAtMillis;
+    }
+
+    public void setExpireAtMillis(long expireAtMillis) {
+        this.expireAtMillis = expireAtMillis;
+    }
+
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    public void setLoadMillis(long loadMillis) {
+        this.loadMillis = loadMillis;
+    }
+
+    /**
+     * XFetch: now - loadMillis * BETA * ln(random) >= expireAtMillis 时刷新
+     */
+    boolean shouldRefresh(long now) {
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return now - Math.max(1, loadMillis) * BETA * Math.log(random) >= expireAtMillis;
+    }
+}
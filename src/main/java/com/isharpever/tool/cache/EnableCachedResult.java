@@ -0,0 +1,18 @@
+package com.isharpever.tool.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 配置切面,开启@CachedResult缓存功能
+ *
+ * @see CachedResult
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Import(CachedResultAspect.class)
+public @interface EnableCachedResult {
+}
@@ -0,0 +1,18 @@
+package com.isharpever.tool.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 开启热点key查看接口
+ *
+ * @see HotKeyController
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Import(HotKeyController.class)
+public @interface EnableHotKeyEndpoint {
+}
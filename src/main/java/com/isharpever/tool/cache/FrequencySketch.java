@@ -0,0 +1,62 @@
+package com.isharpever.tool.cache;
+
+/**
+ * 访问频率估计(count-min sketch),用于本地缓存的TinyLFU准入判断
+ * <li>4行计数器,每行的宽度为容量的4倍(减少冲突导致的高估),每个计数器最大15,频率取4行中的最小值
+ * <li>累计计数达到容量的10倍时所有计数器减半(衰减),使频率反映近期的访问
+ * <br>计数器的更新不加锁,并发时可能丢失少量计数,对准入判断的影响可以忽略
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xCBF29CE4};
+
+    /** DEPTH行计数器依次排列 */
+    private final byte[] table;
+    private final int width;
+    private final int sampleSize;
+    private int size;
+
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(16, maximumSize);
+        this.width = Integer.highestOneBit(capacity - 1) << 3;
+        this.table = new byte[width * DEPTH];
+        this.sampleSize = 10 * capacity;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return row * width + (h & (width - 1));
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        size = size >>> 1;
+    }
+}
@@ -0,0 +1,27 @@
+package com.isharpever.tool.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 热点key查看
+ *
+ * @see EnableHotKeyEndpoint
+ */
+@RestController
+@RequestMapping("/isharpever/cache")
+public class HotKeyController {
+
+    /**
+     * 各探测器上一秒的热点key(探测器名称 -> 热点key),按估计qps降序
+     */
+    @RequestMapping("/hotkeys")
+    public Map<String, List<HotKeyDetector.HotKey>> hotKeys() {
+        Map<String, List<HotKeyDetector.HotKey>> result = new LinkedHashMap<>();
+        HotKeyDetector.getDetectors().forEach((name, detector) -> result.put(name, detector.getHotKeys()));
+        return result;
+    }
+}
@@ -0,0 +1,345 @@
+package com.isharpever.tool.cache;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 热点key探测及本地副本,用于少数key承担大部分读流量(如秒杀)时保护redis分片
+ * <li>按采样率对读取的key采样,采样到的key计入count-min sketch(估计窗口内的访问次数),估计次数接近热点阈值的key记为候选
+ * <li>采样路径不加锁: sketch的计数为原子变量,候选key保存在并发map中,最多topK×4个
+ * <li>每秒结束一个窗口: 候选key中估计次数最多的topK个,估计qps(采样次数 × 采样率 / 窗口时长)不低于阈值的成为热点key,然后清零重新计数
+ * <li>热点key的值在本地保存一个短过期时间的副本,过期前的读取不访问redis;key不再是热点时删除其副本
+ * <br>本进程通过CacheService写入/删除时立即删除本地副本;其他节点的修改最长在副本过期后可见,副本过期时间即可容忍的最大不一致时间
+ * <br>只保存非null的值,缓存的对象会被多个调用方共享,调用方不应修改
+ * <br>每秒输出监控数据:
+ * <li>isharpever.cache.hotkey 每个热点key的估计qps
+ * <li>isharpever.cache.hotkey.summary 热点key数hotKeyCount、采样数sampledCount、本地副本命中数localHitCount
+ * <br>可通过{@link HotKeyController}查看当前的热点key
+ *
+ * @see CacheService#setHotKeyDetector
+ */
+public class HotKeyDetector {
+
+    private static final String MEASUREMENT = "isharpever.cache.hotkey";
+    private static final String SUMMARY_MEASUREMENT = "isharpever.cache.hotkey.summary";
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xCBF29CE4};
+    /** 副本失效计数的分段数 */
+    private static final int STAMP_STRIPES = 64;
+
+    private static final Map<String, HotKeyDetector> REGISTRY = new ConcurrentHashMap<>(4);
+
+    static {
+        ExecutorServiceUtil.scheduleStatTask(() -> REGISTRY.values().forEach(HotKeyDetector::rollWindow));
+    }
+
+    private final String name;
+    private final int sampleRate;
+    private final int topK;
+    private final long thresholdQps;
+    private final long localTtlNanos;
+
+    /** 当前窗口的计数,DEPTH行依次排列 */
+    private final AtomicIntegerArray table;
+    private final int width;
+    /** 估计次数达到此值的key成为候选,为1秒窗口内达到阈值所需采样次数的一半 */
+    private final long candidateCount;
+    /** 当前窗口的候选key,窗口结束时从中选出热点key */
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>(16);
+    private final int maxCandidates;
+    /** 只在执行rollWindow的线程上访问 */
+    private long windowStartNanos = System.nanoTime();
+    private final LongAdder sampledCount = new LongAdder();
+
+    /** 上一个窗口的热点key -> 估计qps */
+    private volatile Map<String, Long> hotKeys = Collections.emptyMap();
+    private final Map<String, LocalCopy> localCopies = new ConcurrentHashMap<>(16);
+    /** 按key分段的修改计数,读redis期间key被修改时不保存读到的值 */
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private final LongAdder localHitCount = new LongAdder();
+    private long previousLocalHitCount;
+
+    /**
+     * @param name 名称,用于监控
+     * @param sampleRate 采样率,每sampleRate次读取采样1次,1表示全部计数
+     * @param topK 每个窗口最多保留的候选key数,即热点key数的上限
+     * @param thresholdQps 估计qps不低于此值的key为热点key
+     * @param localTtl 本地副本的过期时间
+     */
+    public HotKeyDetector(String name, int sampleRate, int topK, long thresholdQps, long localTtl, TimeUnit unit) {
+        this(name, sampleRate, topK, thresholdQps, localTtl, unit, true);
+    }
+
+    /**
+     * @param scheduled 为false时不在监控调度线程上每秒结束窗口,由调用方调用{@link #rollWindow()}(用于测试)
+     */
+    HotKeyDetector(String name, int sampleRate, int topK, long thresholdQps, long localTtl, TimeUnit unit,
+            boolean scheduled) {
+        if (sampleRate <= 0 || topK <= 0 || thresholdQps <= 0 || localTtl <= 0) {
+            throw new IllegalArgumentException("sampleRate=" + sampleRate + " topK=" + topK
+                    + " thresholdQps=" + thresholdQps + " localTtl=" + localTtl);
+        }
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+        this.thresholdQps = thresholdQps;
+        this.localTtlNanos = unit.toNanos(localTtl);
+        // 宽度远大于topK,热点key的估计值不会因冲突被明显高估
+        this.width = Math.max(1024, Integer.highestOneBit(topK - 1) << 6);
+        this.table = new AtomicIntegerArray(width * DEPTH);
+        this.candidateCount = Math.max(1, thresholdQps / sampleRate / 2);
+        this.maxCandidates = topK * 4;
+        if (scheduled) {
+            REGISTRY.put(name, this);
+        }
+    }
+
+    /**
+     * 按系统属性创建,isharpever.cache.hotkey.enabled不为true时返回null
+     * <li>isharpever.cache.hotkey.sample.rate 采样率,默认10
+     * <li>isharpever.cache.hotkey.top 候选key数,默认20
+     * <li>isharpever.cache.hotkey.threshold 热点key的qps阈值,默认1000
+     * <li>isharpever.cache.hotkey.local.ttl 本地副本的过期时间(毫秒),默认1000
+     */
+    public static HotKeyDetector fromSystemProperties(String name) {
+        if (!Boolean.getBoolean("isharpever.cache.hotkey.enabled")) {
+            return null;
+        }
+        return new HotKeyDetector(name,
+                Integer.getInteger("isharpever.cache.hotkey.sample.rate", 10),
+                Integer.getInteger("isharpever.cache.hotkey.top", 20),
+                Long.getLong("isharpever.cache.hotkey.threshold", 1000L),
+                Long.getLong("isharpever.cache.hotkey.local.ttl", 1000L), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 读取key: 记录访问,是热点key且有未过期的本地副本时返回副本,否则调用loader读取
+     */
+    public Object get(String key, Function<String, Object> loader) {
+        if (ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            this.sample(key);
+        }
+        if (!hotKeys.containsKey(key)) {
+            return loader.apply(key);
+        }
+        long now = System.nanoTime();
+        LocalCopy copy = localCopies.get(key);
+        if (copy != null && now - copy.expireAtNanos < 0) {
+            localHitCount.increment();
+            return copy.value;
+        }
+        int stripe = stripeOf(key);
+        long stamp = stamps.get(stripe);
+        Object value = loader.apply(key);
+        if (value != null) {
+            localCopies.put(key, new LocalCopy(value, now + localTtlNanos));
+            // 读redis期间key被修改,读到的可能是旧值
+            if (stamps.get(stripe) != stamp) {
+                localCopies.remove(key);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * key被修改,删除本地副本
+     */
+    public void invalidate(String key) {
+        stamps.incrementAndGet(stripeOf(key));
+        localCopies.remove(key);
+    }
+
+    public void invalidate(Collection<String> keys) {
+        for (String key : keys) {
+            this.invalidate(key);
+        }
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 上一个窗口的热点key,按估计qps降序
+     */
+    public List<HotKey> getHotKeys() {
+        List<HotKey> result = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, qps) -> result.add(new HotKey(key, qps, localCopies.containsKey(key))));
+        result.sort((a, b) -> Long.compare(b.qps, a.qps));
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 所有探测器(名称 -> 探测器)
+     */
+    public static Map<String, HotKeyDetector> getDetectors() {
+        return Collections.unmodifiableMap(REGISTRY);
+    }
+
+    /**
+     * 不再统计及输出监控数据
+     */
+    public void close() {
+        REGISTRY.remove(name, this);
+        hotKeys = Collections.emptyMap();
+        localCopies.clear();
+    }
+
+    private void sample(String key) {
+        sampledCount.increment();
+        int hash = key.hashCode();
+        long count = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            count = Math.min(count, table.incrementAndGet(indexOf(hash, i)));
+        }
+        if (count < candidateCount) {
+            return;
+        }
+        Candidate candidate = candidates.get(key);
+        if (candidate == null) {
+            if (candidates.size() >= maxCandidates) {
+                return;
+            }
+            candidate = candidates.computeIfAbsent(key, Candidate::new);
+        }
+        // 并发更新时可能少记,不影响是否成为热点的判断
+        if (count > candidate.count) {
+            candidate.count = count;
+        }
+    }
+
+    /**
+     * 结束当前窗口,计算热点key并输出监控数据,在监控调度线程上每秒执行
+     */
+    void rollWindow() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - windowStartNanos) / 1e9);
+        List<Candidate> top = new ArrayList<>(candidates.values());
+        top.sort((a, b) -> Long.compare(b.count, a.count));
+        Map<String, Long> hot = new HashMap<>(8);
+        for (int i = 0, size = Math.min(topK, top.size()); i < size; i++) {
+            Candidate candidate = top.get(i);
+            long qps = (long) (candidate.count * sampleRate / seconds);
+            if (qps >= thresholdQps) {
+                hot.put(candidate.key, qps);
+            }
+        }
+        // 清零期间的采样计入下一个窗口或丢失,不影响热点判断
+        for (int i = 0, length = table.length(); i < length; i++) {
+            table.set(i, 0);
+        }
+        candidates.clear();
+        long sampled = sampledCount.sumThenReset();
+        windowStartNanos = now;
+
+        hotKeys = hot.isEmpty() ? Collections.emptyMap() : hot;
+        // 不再是热点的key删除副本
+        localCopies.keySet().removeIf(key -> !hot.containsKey(key));
+        this.writePoints(hot, sampled);
+    }
+
+    private void writePoints(Map<String, Long> hot, long sampled) {
+        hot.forEach((key, qps) -> MetricsRegistry.write(MetricPoint
+                    .monitorKey(MEASUREMENT)
+                    .addTag("app", AppNameUtil.getAppName())
+                    .addTag("ip", NetUtil.getLocalHostAddress())
+                    .addTag("name", name)
+                    .addTag("key", key)
+                    .addField("qps", qps)
+                    .build()));
+        long hits = localHitCount.sum();
+        MetricsRegistry.write(MetricPoint
+                .monitorKey(SUMMARY_MEASUREMENT)
+                .addTag("app", AppNameUtil.getAppName())
+                .addTag("ip", NetUtil.getLocalHostAddress())
+                .addTag("name", name)
+                .addField("hotKeyCount", hot.size())
+                .addField("sampledCount", sampled)
+                .addField("localHitCount", hits - previousLocalHitCount)
+                .build());
+        previousLocalHitCount = hits;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return row * width + (h & (width - 1));
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    /**
+     * 热点key
+     */
+    public static class HotKey {
+        private final String key;
+        private final long qps;
+        private final boolean localCopy;
+
+        HotKey(String key, long qps, boolean localCopy) {
+            this.key = key;
+            this.qps = qps;
+            this.localCopy = localCopy;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 上一个窗口的估计qps
+         */
+        public long getQps() {
+            return qps;
+        }
+
+        /**
+         * 当前是否有本地副本
+         */
+        public boolean isLocalCopy() {
+            return localCopy;
+        }
+    }
+
+    private static class Candidate {
+        private final String key;
+        private volatile long count;
+
+        private Candidate(String key) {
+            this.key = key;
+        }
+    }
+
+    private static class LocalCopy {
+        private final Object value;
+        private final long expireAtNanos;
+
+        private LocalCopy(Object value, long expireAtNanos) {
+            this.value = value;
+            this.expireAtNanos = expireAtNanos;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.isharpever.tool.cache;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 进程内的本地缓存(L1),置于redis之前,减少热点且很少变化的key的网络往返
+ * <li>容量及过期时间(写入后)有上限
+ * <li>W-TinyLFU式的淘汰: 新写入的key先进入窗口区(1%),被挤出窗口区时,其访问频率高于主区待淘汰的key才能进入主区,
+ * 偶发访问的key不会挤掉热点key
+ * <li>通过redis频道(isharpever:nearcache:{name})在节点间广播失效消息,收到消息的节点删除本地副本
+ * <br>失效消息可能丢失(如订阅连接断开期间),本地副本最长在过期时间后失效,过期时间即可容忍的最大不一致时间
+ * <br>缓存的对象会被多个调用方共享,调用方不应修改
+ * <br>每秒输出监控数据:
+ * <li>isharpever.nearcache 缓存大小size、淘汰数evictionCount、未准入数rejectedCount、失效数invalidationCount
+ * <li>isharpever.nearcache.prefix 每个key前缀的命中数hitCount、未命中数missCount、命中率hitRatio
+ * <pre>
+ * NearCache nearCache = new NearCache("order", 10000, 5, TimeUnit.SECONDS);
+ * nearCache.enableInvalidation(stringRedisTemplate);
+ * cacheManager.setNearCache(nearCache);
+ * </pre>
+ *
+ * @see CacheManager#setNearCache
+ */
+public class NearCache {
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+
+    private static final String MEASUREMENT = "isharpever.nearcache";
+    private static final String PREFIX_MEASUREMENT = "isharpever.nearcache.prefix";
+    private static final String CHANNEL_PREFIX = "isharpever:nearcache:";
+    private static final int SEGMENT_COUNT = 16;
+    /** 窗口区占容量的百分比 */
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final Map<String, NearCache> REGISTRY = new ConcurrentHashMap<>(4);
+
+    static {
+        ExecutorServiceUtil.scheduleStatTask(() -> REGISTRY.values().forEach(NearCache::writePoints));
+    }
+
+    private final String name;
+    private final String channel;
+    private final long expireAfterWriteNanos;
+    private final Segment[] segments;
+    private final FrequencySketch sketch;
+
+    private final Map<String, PrefixStat> prefixStats = new ConcurrentHashMap<>(8);
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+    /** 前一次输出的值,只在监控调度线程上访问 */
+    private long previousEvictionCount;
+    private long previousRejectedCount;
+    private long previousInvalidationCount;
+
+    private volatile StringRedisTemplate redisTemplate;
+    private RedisMessageListenerContainer listenerContainer;
+    private ExecutorService listenerExecutor;
+    private ExecutorService subscriptionExecutor;
+
+    /**
+     * @param name 名称,用于监控及失效消息频道,同一缓存的各节点应一致
+     * @param maximumSize 最大缓存key数
+     * @param expireAfterWrite 写入后的过期时间
+     */
+    public NearCache(String name, int maximumSize, long expireAfterWrite, TimeUnit unit) {
+        if (maximumSize <= 0 || expireAfterWrite <= 0) {
+            throw new IllegalArgumentException("maximumSize=" + maximumSize + " expireAfterWrite=" + expireAfterWrite);
+        }
+        this.name = name;
+        this.channel = CHANNEL_PREFIX + name;
+        this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+        this.sketch = new FrequencySketch(maximumSize);
+        int segmentSize = (maximumSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        REGISTRY.put(name, this);
+    }
+
+    /**
+     * 订阅失效消息,并在{@link #invalidateAndPublish}时广播失效消息
+     */
+    public synchronized void enableInvalidation(StringRedisTemplate redisTemplate) {
+        if (this.listenerContainer != null) {
+            return;
+        }
+        // 默认的SimpleAsyncTaskExecutor每条消息创建一个线程,而每次写入都会产生失效消息,改用有界线程池
+        ExecutorService listenerExecutor = ExecutorServiceUtil.buildExecutorService(2, "NearCacheListener-" + name + "-");
+        ExecutorService subscriptionExecutor = ExecutorServiceUtil.buildExecutorService(1,
+                "NearCacheSubscription-" + name + "-");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getConnectionFactory());
+        container.setTaskExecutor(listenerExecutor);
+        container.setSubscriptionExecutor(subscriptionExecutor);
+        container.addMessageListener((message, pattern) -> {
+            // 批量失效时一条消息包含多个key,以换行分隔
+            for (String key : StringUtils.split(new String(message.getBody(), StandardCharsets.UTF_8), '\n')) {
+                invalidate(key);
+            }
+        }, new ChannelTopic(channel));
+        container.afterPropertiesSet();
+        container.start();
+        this.listenerContainer = container;
+        this.listenerExecutor = listenerExecutor;
+        this.subscriptionExecutor = subscriptionExecutor;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 取本地副本
+     *
+     * @param prefix key前缀,用于按前缀统计命中率
+     * @param key 完整的redis key
+     * @return 未命中或已过期时返回null
+     */
+    public Object get(String prefix, String key) {
+        int hash = spread(key.hashCode());
+        sketch.increment(hash);
+        Object value = segmentFor(hash).get(key, System.nanoTime());
+        PrefixStat stat = prefixStats.get(prefix);
+        if (stat == null) {
+            stat = prefixStats.computeIfAbsent(prefix, k -> new PrefixStat());
+        }
+        if (value != null) {
+            stat.hitCount.increment();
+        } else {
+            stat.missCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 从redis读取前调用,取得key当前的失效版本号,读取后以此调用{@link #put(String, Object, long)}
+     */
+    public long stamp(String key) {
+        return segmentFor(spread(key.hashCode())).invalidations;
+    }
+
+    /**
+     * 写入本地副本;如果从取得stamp到现在发生过失效(其他线程/节点修改了redis中的值),不写入,避免写入旧值
+     *
+     * @param value 为null时不写入
+     */
+    public void put(String key, Object value, long stamp) {
+        if (value == null) {
+            return;
+        }
+        segmentFor(spread(key.hashCode())).put(key, value, stamp, System.nanoTime() + expireAfterWriteNanos);
+    }
+
+    /**
+     * 删除本节点的本地副本
+     */
+    public void invalidate(String key) {
+        segmentFor(spread(key.hashCode())).remove(key);
+        invalidationCount.increment();
+    }
+
+    /**
+     * 删除本节点的本地副本,并广播失效消息,应在redis写入/删除完成后调用
+     */
+    public void invalidateAndPublish(String key) {
+        invalidate(key);
+        StringRedisTemplate template = this.redisTemplate;
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(channel, key);
+        } catch (Exception e) {
+            logger.error("--- NearCache广播失效消息异常 name={} key={}", name, key, e);
+        }
+    }
+
+    /**
+     * 删除本节点的多个本地副本,并以一条消息广播失效,应在redis写入/删除完成后调用
+     */
+    public void invalidateAndPublish(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        keys.forEach(this::invalidate);
+        StringRedisTemplate template = this.redisTemplate;
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(channel, String.join("\n", keys));
+        } catch (Exception e) {
+            logger.error("--- NearCache广播失效消息异常 name={} keys数={}", name, keys.size(), e);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 停止订阅,清空本地副本,不再输出监控数据
+     */
+    public synchronized void close() {
+        REGISTRY.remove(name, this);
+        if (listenerContainer != null) {
+            try {
+                listenerContainer.stop();
+                listenerContainer.destroy();
+            } catch (Exception e) {
+                logger.warn("--- NearCache停止订阅异常 name={}", name, e);
+            }
+            listenerExecutor.shutdown();
+            subscriptionExecutor.shutdown();
+            listenerContainer = null;
+            listenerExecutor = null;
+            subscriptionExecutor = null;
+            redisTemplate = null;
+        }
+        invalidateAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 各key前缀的累计命中统计
+     */
+    public Map<String, PrefixStat> getPrefixStats() {
+        return Collections.unmodifiableMap(prefixStats);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 16) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x45D9F3B;
+    }
+
+    private void writePoints() {
+        long evictions = evictionCount.sum();
+        long rejections = rejectedCount.sum();
+        long invalidations = invalidationCount.sum();
+        MetricsRegistry.write(MetricPoint
+                .monitorKey(MEASUREMENT)
+                .addTag("app", AppNameUtil.getAppName())
+                .addTag("ip", NetUtil.getLocalHostAddress())
+                .addTag("name", name)
+                .addField("size", size())
+                .addField("evictionCount", evictions - previousEvictionCount)
+                .addField("rejectedCount", rejections - previousRejectedCount)
+                .addField("invalidationCount", invalidations - previousInvalidationCount)
+                .build());
+        previousEvictionCount = evictions;
+        previousRejectedCount = rejections;
+        previousInvalidationCount = invalidations;
+
+        prefixStats.forEach((prefix, stat) -> {
+            long hits = stat.hitCount.sum();
+            long misses = stat.missCount.sum();
+            long hitCount = hits - stat.previousHitCount;
+            long missCount = misses - stat.previousMissCount;
+            stat.previousHitCount = hits;
+            stat.previousMissCount = misses;
+            if (hitCount == 0 && missCount == 0) {
+                return;
+            }
+            MetricsRegistry.write(MetricPoint
+                    .monitorKey(PREFIX_MEASUREMENT)
+                    .addTag("app", AppNameUtil.getAppName())
+                    .addTag("ip", NetUtil.getLocalHostAddress())
+                    .addTag("name", name)
+                    .addTag("prefix", prefix)
+                    .addField("hitCount", hitCount)
+                    .addField("missCount", missCount)
+                    .addField("hitRatio", (double) hitCount / (hitCount + missCount))
+                    .build());
+        });
+    }
+
+    /**
+     * 某个key前缀的累计命中统计
+     */
+    public static class PrefixStat {
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        /** 前一次输出的值,只在监控调度线程上访问 */
+        private long previousHitCount;
+        private long previousMissCount;
+
+        public long getHitCount() {
+            return hitCount.sum();
+        }
+
+        public long getMissCount() {
+            return missCount.sum();
+        }
+
+        public double getHitRatio() {
+            long hits = hitCount.sum();
+            long total = hits + missCount.sum();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expireAtNanos;
+
+        private Entry(Object value, long expireAtNanos) {
+            this.value = value;
+            this.expireAtNanos = expireAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expireAtNanos >= 0;
+        }
+    }
+
+    /**
+     * 分段,窗口区及主区均按访问顺序(LRU)排列,访问时加锁
+     */
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+        private final int windowCapacity;
+        private final int mainCapacity;
+        /** 失效次数,作为失效版本号,加锁修改 */
+        private volatile long invalidations;
+
+        private Segment(int capacity) {
+            this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENT / 100);
+            this.mainCapacity = Math.max(1, capacity - windowCapacity);
+        }
+
+        private synchronized Object get(String key, long now) {
+            Entry entry = window.get(key);
+            if (entry == null) {
+                entry = main.get(key);
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(now)) {
+                if (window.remove(key) == null) {
+                    main.remove(key);
+                }
+                return null;
+            }
+            return entry.value;
+        }
+
+        private synchronized void put(String key, Object value, long stamp, long expireAtNanos) {
+            if (invalidations != stamp) {
+                return;
+            }
+            Entry entry = new Entry(value, expireAtNanos);
+            if (main.containsKey(key)) {
+                main.put(key, entry);
+                return;
+            }
+            window.put(key, entry);
+            if (window.size() <= windowCapacity) {
+                return;
+            }
+
+            // 被挤出窗口区的key作为候选,与主区待淘汰的key比较访问频率
+            Iterator<Map.Entry<String, Entry>> windowIterator = window.entrySet().iterator();
+            Map.Entry<String, Entry> candidate = windowIterator.next();
+            windowIterator.remove();
+            if (main.size() < mainCapacity) {
+                main.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            Iterator<Map.Entry<String, Entry>> mainIterator = main.entrySet().iterator();
+            Map.Entry<String, Entry> victim = mainIterator.next();
+            if (victim.getValue().isExpired(System.nanoTime())
+                    || sketch.frequency(spread(candidate.getKey().hashCode()))
+                    > sketch.frequency(spread(victim.getKey().hashCode()))) {
+                mainIterator.remove();
+                main.put(candidate.getKey(), candidate.getValue());
+                evictionCount.increment();
+            } else {
+                rejectedCount.increment();
+            }
+        }
+
+        private synchronized void remove(String key) {
+            invalidations++;
+            if (window.remove(key) == null) {
+                main.remove(key);
+            }
+        }
+
+        private synchronized void clear() {
+            invalidations++;
+            window.clear();
+            main.clear();
+        }
+
+        private synchronized int size() {
+            return window.size() + main.size();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.isharpever.tool.cache;
+
+import com.google.common.collect.Lists;
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 批量读取: 按chunkSize分批,每批一个pipeline,多批并发执行(每批占用一个连接,需配置连接池才能真正并发)
+ * <li>key/value使用RedisTemplate配置的序列化器
+ * <li>每批读完即交给调用方,同时在途的批数不超过concurrency,内存占用与总key数无关
+ * <li>某批读取失败时记录日志并跳过该批,其他批不受影响
+ * <br>可通过系统属性配置:
+ * <li>isharpever.cache.batch.chunk.size 每批key数,默认500,批量写入(CacheService.batchPut等)同样按此分批
+ * <li>isharpever.cache.batch.concurrency 每次调用的并发批数,默认4
+ * <li>isharpever.cache.batch.threads 执行批读取的线程数(所有调用共享),默认8
+ */
+final class PipelinedBatchReader {
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedBatchReader.class);
+
+    static final int CHUNK_SIZE = Integer.getInteger("isharpever.cache.batch.chunk.size", 500);
+    private static final int CONCURRENCY = Integer.getInteger("isharpever.cache.batch.concurrency", 4);
+
+    private PipelinedBatchReader() {
+    }
+
+    /**
+     * 读取keys,每批读完后在调用线程上按批内顺序回调consumer(key, value),key不存在时value为null
+     */
+    static void read(RedisTemplate<String, Object> template, List<String> keys, BiConsumer<String, Object> consumer) {
+        if (keys.size() <= CHUNK_SIZE) {
+            try {
+                deliver(keys, readChunk(template, keys), consumer);
+            } catch (Exception e) {
+                logger.error("--- redis批量读取异常 keys数={} 首个key={}", keys.size(), keys.get(0), e);
+            }
+            return;
+        }
+
+        List<List<String>> chunks = Lists.partition(keys, CHUNK_SIZE);
+        ExecutorCompletionService<List<Object>> completionService =
+                new ExecutorCompletionService<>(ExecutorHolder.EXECUTOR);
+        // 在途的批,读完即移除,不持有已交给调用方的结果
+        Map<Future<List<Object>>, List<String>> chunkOfFuture = new IdentityHashMap<>(CONCURRENCY * 2);
+        int submitted = 0;
+        int completed = 0;
+        try {
+            while (completed < chunks.size()) {
+                while (submitted < chunks.size() && submitted - completed < CONCURRENCY) {
+                    List<String> chunk = chunks.get(submitted++);
+                    Future<List<Object>> future = completionService.submit(() -> readChunk(template, chunk));
+                    chunkOfFuture.put(future, chunk);
+                }
+                Future<List<Object>> future = completionService.take();
+                completed++;
+                List<String> chunk = chunkOfFuture.remove(future);
+                try {
+                    deliver(chunk, future.get(), consumer);
+                } catch (ExecutionException e) {
+                    logger.error("--- redis批量读取异常 keys数={} 首个key={}", chunk.size(), chunk.get(0), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<List<Object>> future : chunkOfFuture.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> readChunk(RedisTemplate<String, Object> template, List<String> chunk) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) template.getKeySerializer();
+        // 未指定序列化器时,executePipelined使用template的value序列化器反序列化结果
+        return template.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : chunk) {
+                connection.get(keySerializer.serialize(key));
+            }
+            return null;
+        });
+    }
+
+    private static void deliver(List<String> chunk, List<Object> values, BiConsumer<String, Object> consumer) {
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            consumer.accept(chunk.get(i), values.get(i));
+        }
+    }
+
+    /**
+     * 首次使用时才创建线程池
+     */
+    private static class ExecutorHolder {
+        private static final ExecutorService EXECUTOR = ExecutorServiceUtil.buildExecutorService(
+                Integer.getInteger("isharpever.cache.batch.threads", 8), "CacheBatchRead-");
+    }
+}
@@ -0,0 +1,95 @@
+package com.isharpever.tool.cache;
+
+import com.isharpever.tool.metrics.MetricSeries;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 同一key的并发加载合并为一次: 第一个线程执行加载,其他线程等待其结果,避免缓存失效时大量请求同时打到数据库(缓存击穿)
+ * <br>只在本JVM内合并,多个节点仍可能各自加载一次
+ * <br>等待超过isharpever.cache.singleflight.wait.millis(默认3000)毫秒的线程不再等待,自行加载;
+ * 加载过程中同一线程再次加载同一key时(如loader内又读取该key)直接加载,不等待自己
+ */
+class SingleFlight {
+
+    private static final long WAIT_MILLIS = Long.getLong("isharpever.cache.singleflight.wait.millis", 3000L);
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>(16);
+    /** 当前线程正在加载的key */
+    private final ThreadLocal<Set<String>> loadingKeys = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * 执行加载,同一key已有加载在进行时等待其结果;加载抛出的异常同样抛给等待的线程
+     *
+     * @param series 记录本次加载的耗时cost(毫秒)及等待的线程数waiters,等待超时的次数waitTimeout
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Supplier<T> loader, MetricSeries series) {
+        Set<String> loading = loadingKeys.get();
+        if (loading.contains(key)) {
+            // 同一线程重入,等待自己的结果会死锁
+            return loader.get();
+        }
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            existing.waiters.incrementAndGet();
+            try {
+                return (T) existing.future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 加载过慢或已卡住,不再等待
+                series.record("waitTimeout", 1);
+                return loader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return loader.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        loading.add(key);
+        try {
+            T value = loader.get();
+            flight.future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key);
+            flights.remove(key, flight);
+            series.record("cost", System.currentTimeMillis() - startTime);
+            series.record("waiters", flight.waiters.get());
+        }
+    }
+
+    /**
+     * 同一key是否有加载在进行
+     */
+    boolean isLoading(String key) {
+        return flights.containsKey(key);
+    }
+
+    private static class Flight {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        /** 等待本次加载结果的线程数 */
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+}
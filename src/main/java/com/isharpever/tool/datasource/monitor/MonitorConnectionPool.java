@@ -1,6 +1,8 @@
 package com.isharpever.tool.datasource.monitor;
 
 import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
 import com.isharpever.tool.utils.AppNameUtil;
 import com.isharpever.tool.utils.NetUtil;
 import java.sql.Connection;
@@ -22,7 +24,7 @@ public class MonitorConnectionPool extends ConnectionPool {
     private static final ConcurrentHashMap<String, PoolStat> POOL_STAT_REGISTRY = new ConcurrentHashMap<>(2);
 
     /*
-     * 把各连接池状态输出到监控日志,并清零,每秒执行一次
+     * 把各连接池状态输出到监控日志,并清零,每秒执行一次;随后把监控数据交给MetricsReporter输出
      */
     static {
         executorService.scheduleAtFixedRate(() -> {
@@ -32,6 +34,7 @@ public class MonitorConnectionPool extends ConnectionPool {
                 }
                 poolStat.writePoint();
             });
+            MetricsRegistry.flush();
         }, 1, 1, TimeUnit.SECONDS);
     }
 
@@ -82,8 +85,6 @@ public class MonitorConnectionPool extends ConnectionPool {
     }
 
     private static class PoolStat {
-//        private static final MonitorUtil monitor = MonitorFactory.connect();
-
         private MonitorConnectionPool connectionPool;
         private String poolName;
         /** 活跃连接数 */
@@ -157,14 +158,14 @@ public class MonitorConnectionPool extends ConnectionPool {
                 return;
             }
 
-//            MonitorPoint point = MonitorPoint
-//                    .monitorKey("isharpever.datasource.pool")
-//                    .addTag("app", AppNameUtil.getAppName())
-//                    .addTag("name", this.poolName)
-//                    .addTag("ip", NetUtil.getLocalHostAddress())
-//                    .addField("active", currentActive)
-//                    .addField("idle", currentIdle).build();
-//            monitor.writePoint(point);
+            MetricPoint point = MetricPoint
+                    .monitorKey("isharpever.datasource.pool")
+                    .addTag("app", AppNameUtil.getAppName())
+                    .addTag("name", this.poolName)
+                    .addTag("ip", NetUtil.getLocalHostAddress())
+                    .addField("active", currentActive)
+                    .addField("idle", currentIdle).build();
+            MetricsRegistry.write(point);
 
             this.previousActive = currentActive;
             this.previousIdle = currentIdle;
@@ -1,6 +1,7 @@
 package com.isharpever.tool.datasource.monitor;
 
 import com.isharpever.tool.enums.CustomLogLevel;
+import com.isharpever.tool.metrics.MetricsRegistry;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
@@ -36,7 +37,6 @@ public class MonitorSlowQueryReport extends SlowQueryReport {
     private String name = "";
     protected static final Set<String> SET_METHODS = new HashSet<String>();
     protected static final String SET_NULL  = "setNull";
-//    private MonitorUtil monitor = MonitorFactory.connect();
 
     static {
         SET_METHODS.add("setString");
@@ -103,14 +103,12 @@ public class MonitorSlowQueryReport extends SlowQueryReport {
             logger.log(CustomLogLevel.DING.toLevel(), "【{}慢查】md5={}; 耗时={}; SQL={}; 参数={};",
                     this.getName(), md5, delta, beautifulSql, this.getSqlParameterString());
 
-//            MonitorPoint point = MonitorPoint
-//                    .monitorKey("isharpever.datasource.slowQuery")
-//                    .addTag("app", this.getAppCode())
-//                    .addTag("ip", this.getLocalHostAddress())
-//                    .addTag("name", this.getName())
-//                    .addField("cost", delta)
-//                    .addTag("sql", md5).build();
-//            monitor.writePoint(point);
+            MetricsRegistry.series("isharpever.datasource.slowQuery",
+                    "app", this.getAppCode(),
+                    "ip", this.getLocalHostAddress(),
+                    "name", this.getName(),
+                    "sql", md5)
+                    .record("cost", delta);
         }
 
         return sql;
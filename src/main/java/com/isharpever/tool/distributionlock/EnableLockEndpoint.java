@@ -0,0 +1,18 @@
+package com.isharpever.tool.distributionlock;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 开启分布式锁查看接口
+ *
+ * @see LockController
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Import(LockController.class)
+public @interface EnableLockEndpoint {
+}
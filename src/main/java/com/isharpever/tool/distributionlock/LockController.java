@@ -0,0 +1,23 @@
+package com.isharpever.tool.distributionlock;
+
+import java.util.List;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 分布式锁查看
+ *
+ * @see EnableLockEndpoint
+ */
+@RestController
+@RequestMapping("/isharpever/lock")
+public class LockController {
+
+    /**
+     * 抽样记录的本JVM当前持有的锁,按持有时间降序
+     */
+    @RequestMapping("/held")
+    public List<LockMonitor.HeldLock> heldLocks() {
+        return LockMonitor.getHeldLocks();
+    }
+}
@@ -0,0 +1,277 @@
+package com.isharpever.tool.distributionlock;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分布式锁监控,按key模式(key中的连续数字替换为*,如order:123:pay -> order:*:pay)聚合:
+ * <li>isharpever.lock,tag pattern: attempts(每次获得锁请求redis的次数)、wait(获得锁等待毫秒数)、
+ * hold(持有锁毫秒数)、acquired、timeout(超时未获得锁)、error(获得锁异常)、unlockFail(释放时锁已不属于自己或异常)
+ * <li>key模式数上限isharpever.lock.monitor.patterns(默认256),超出的记入pattern=other
+ * <li>本JVM当前持有的锁按1/isharpever.lock.monitor.sample.rate(默认10)抽样记录,
+ * 最多isharpever.lock.monitor.held.size(默认256,为0时不记录)个,由{@link #getHeldLocks}查看
+ * <br>加锁、释放锁路径上不分配对象(新的key模式首次出现时除外)
+ *
+ * @see LockController
+ */
+public final class LockMonitor {
+
+    static final String MEASUREMENT = "isharpever.lock";
+    private static final int MAX_PATTERNS = Integer.getInteger("isharpever.lock.monitor.patterns", 256);
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("isharpever.lock.monitor.sample.rate", 10));
+    /** 为0时不记录持有的锁 */
+    private static final int HELD_SIZE = Math.max(0, Integer.getInteger("isharpever.lock.monitor.held.size", 256));
+    /** 记录持有的锁时最多尝试的位置数,都被占用则不记录 */
+    private static final int HELD_PROBES = 8;
+
+    /** key模式的开放寻址表,容量为上限的2倍以上 */
+    private static final AtomicReferenceArray<Pattern> PATTERNS = new AtomicReferenceArray<>(
+            Integer.highestOneBit(Math.max(MAX_PATTERNS, 8) * 2 - 1) << 1);
+    private static final AtomicInteger PATTERN_COUNT = new AtomicInteger();
+    private static final Pattern OTHER = new Pattern(0L, "other");
+
+    private static final AtomicReferenceArray<SimpleRedisLock> HELD = new AtomicReferenceArray<>(HELD_SIZE);
+
+    static {
+        ExecutorServiceUtil.scheduleStatTask(LockMonitor::tick);
+    }
+
+    private LockMonitor() {
+    }
+
+    /**
+     * 返回keys对应的key模式
+     */
+    static Pattern pattern(List<String> keys) {
+        long hash = hash(keys);
+        int mask = PATTERNS.length() - 1;
+        for (int i = (int) (hash ^ (hash >>> 32)) & mask; ; i = (i + 1) & mask) {
+            Pattern pattern = PATTERNS.get(i);
+            if (pattern == null) {
+                if (PATTERN_COUNT.get() >= MAX_PATTERNS) {
+                    return OTHER;
+                }
+                pattern = new Pattern(hash, name(keys));
+                if (PATTERNS.compareAndSet(i, null, pattern)) {
+                    PATTERN_COUNT.incrementAndGet();
+                    return pattern;
+                }
+                // 被其他线程占用,重新检查该位置
+                i = (i - 1) & mask;
+                continue;
+            }
+            if (pattern.hash == hash) {
+                return pattern;
+            }
+        }
+    }
+
+    static void recordAcquire(Pattern pattern, int attempts, long waitNanos, boolean acquired) {
+        MetricSeries series = pattern.series;
+        series.record("attempts", attempts);
+        series.record("wait", waitNanos / 1000000);
+        series.record(acquired ? "acquired" : "timeout", 1);
+    }
+
+    static void recordError(Pattern pattern) {
+        pattern.series.record("error", 1);
+    }
+
+    static void recordRelease(Pattern pattern, long holdNanos, boolean released) {
+        pattern.series.record("hold", holdNanos / 1000000);
+        if (!released) {
+            pattern.series.record("unlockFail", 1);
+        }
+    }
+
+    /**
+     * 按抽样率记录持有的锁
+     *
+     * @return 记录的位置,未记录时返回-1
+     */
+    static int trackHeld(SimpleRedisLock lock) {
+        if (HELD_SIZE == 0) {
+            return -1;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (SAMPLE_RATE > 1 && random.nextInt(SAMPLE_RATE) != 0) {
+            return -1;
+        }
+        int start = random.nextInt(HELD_SIZE);
+        for (int i = 0; i < HELD_PROBES; i++) {
+            int slot = (start + i) % HELD_SIZE;
+            if (HELD.get(slot) == null && HELD.compareAndSet(slot, null, lock)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    static void untrackHeld(int slot, SimpleRedisLock lock) {
+        HELD.compareAndSet(slot, lock, null);
+    }
+
+    /**
+     * 抽样记录的本JVM当前持有的锁,按持有时间降序
+     */
+    public static List<HeldLock> getHeldLocks() {
+        long now = System.currentTimeMillis();
+        List<HeldLock> result = new ArrayList<>();
+        for (int i = 0; i < HELD_SIZE; i++) {
+            SimpleRedisLock lock = HELD.get(i);
+            if (lock != null) {
+                Thread holder = lock.holder;
+                result.add(new HeldLock(lock.lockKeys, lock.monitorPattern.name,
+                        holder == null ? null : holder.getName(), now - lock.heldSince,
+                        lock.getWatchdog() != null));
+            }
+        }
+        result.sort(Comparator.comparingLong(HeldLock::getHeldMillis).reversed());
+        return result;
+    }
+
+    /**
+     * 每秒执行: 重新获取各key模式的监控序列(长期无数据的序列会被MetricsRegistry淘汰);
+     * 清除持有线程已结束、或未续期且已超过租约的锁(未释放或释放时未经过unlock)
+     */
+    private static void tick() {
+        OTHER.refresh();
+        for (int i = 0; i < PATTERNS.length(); i++) {
+            Pattern pattern = PATTERNS.get(i);
+            if (pattern != null) {
+                pattern.refresh();
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < HELD_SIZE; i++) {
+            SimpleRedisLock lock = HELD.get(i);
+            if (lock == null) {
+                continue;
+            }
+            Thread holder = lock.holder;
+            boolean expired = lock.getWatchdog() == null
+                    && now - lock.heldSince > lock.timeUnit.toMillis(lock.leaseTime);
+            if (expired || holder == null || !holder.isAlive()) {
+                HELD.compareAndSet(i, lock, null);
+            }
+        }
+    }
+
+    private static long hash(List<String> keys) {
+        // FNV-1a,连续数字视为一个*
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, size = keys.size(); i < size; i++) {
+            if (i > 0) {
+                hash = (hash ^ ',') * 0x100000001b3L;
+            }
+            String key = keys.get(i);
+            boolean digit = false;
+            for (int j = 0, length = key.length(); j < length; j++) {
+                char c = key.charAt(j);
+                if (c >= '0' && c <= '9') {
+                    if (digit) {
+                        continue;
+                    }
+                    digit = true;
+                    c = '*';
+                } else {
+                    digit = false;
+                }
+                hash = (hash ^ c) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static String name(List<String> keys) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0, size = keys.size(); i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            String key = keys.get(i);
+            boolean digit = false;
+            for (int j = 0, length = key.length(); j < length; j++) {
+                char c = key.charAt(j);
+                if (c >= '0' && c <= '9') {
+                    if (!digit) {
+                        builder.append('*');
+                    }
+                    digit = true;
+                } else {
+                    builder.append(c);
+                    digit = false;
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    static final class Pattern {
+        private final long hash;
+        private final String name;
+        private volatile MetricSeries series;
+
+        private Pattern(long hash, String name) {
+            this.hash = hash;
+            this.name = name;
+            this.refresh();
+        }
+
+        private void refresh() {
+            this.series = MetricsRegistry.series(MEASUREMENT, "pattern", name);
+        }
+    }
+
+    public static class HeldLock {
+        private final List<String> keys;
+        private final String pattern;
+        private final String thread;
+        private final long heldMillis;
+        private final boolean watchdog;
+
+        HeldLock(List<String> keys, String pattern, String thread, long heldMillis, boolean watchdog) {
+            this.keys = keys;
+            this.pattern = pattern;
+            this.thread = thread;
+            this.heldMillis = heldMillis;
+            this.watchdog = watchdog;
+        }
+
+        public List<String> getKeys() {
+            return keys;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * 持有锁的线程名
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * 已持有的毫秒数
+         */
+        public long getHeldMillis() {
+            return heldMillis;
+        }
+
+        /**
+         * 是否由看门狗续期
+         */
+        public boolean isWatchdog() {
+            return watchdog;
+        }
+    }
+}
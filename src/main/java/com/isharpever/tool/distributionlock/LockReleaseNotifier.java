@@ -0,0 +1,188 @@
+package com.isharpever.tool.distributionlock;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 锁释放通知: 释放锁后在该key的频道(isharpever:lock:release:{key})上发布消息,等待该锁的线程收到消息后立即重试,
+ * 不必按固定间隔轮询redis
+ * <li>每个频道只在本JVM有等待线程时订阅,最后一个等待线程退出后取消订阅
+ * <li>每条释放消息唤醒本JVM中一个等待线程(按等待顺序),其他线程等待下一次释放;
+ * 广播的释放消息(如读写锁,释放后多个读锁可同时获得)唤醒全部等待线程
+ * <li>消息可能丢失(订阅建立前、连接断开期间),锁也可能过期而非被释放,等待线程需同时按退避间隔轮询
+ * <br>同一RedisConnectionFactory共用一个实例及一个订阅连接,由{@link #of}获取;消息在有界线程池中处理,JVM退出时停止订阅
+ *
+ * @see SimpleRedisLock#getReleaseNotifier
+ */
+public final class LockReleaseNotifier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockReleaseNotifier.class);
+
+    static final String CHANNEL_PREFIX = "isharpever:lock:release:";
+    /** 广播的释放消息内容,普通释放消息内容为空 */
+    private static final String BROADCAST = "all";
+
+    private static final Map<RedisConnectionFactory, LockReleaseNotifier> NOTIFIERS = new ConcurrentHashMap<>(2);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer container;
+    /** key -> 本JVM中等待该key的线程,修改订阅时持有本对象的锁 */
+    private final Map<String, KeyWaiters> waitersOfKey = new HashMap<>(16);
+
+    private LockReleaseNotifier(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        // 默认的SimpleAsyncTaskExecutor每条消息创建一个线程,改用有界线程池;处理消息只是唤醒等待线程,很快完成
+        ExecutorService taskExecutor = ExecutorServiceUtil.buildExecutorService(2, "LockReleaseListener-");
+        ExecutorService subscriptionExecutor = ExecutorServiceUtil.buildExecutorService(1, "LockReleaseSubscription-");
+        this.container = new RedisMessageListenerContainer();
+        this.container.setConnectionFactory(redisTemplate.getConnectionFactory());
+        this.container.setTaskExecutor(taskExecutor);
+        this.container.setSubscriptionExecutor(subscriptionExecutor);
+        this.container.afterPropertiesSet();
+        this.container.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                container.stop();
+                container.destroy();
+            } catch (Exception e) {
+                LOGGER.warn("--- 关闭锁释放通知的订阅失败", e);
+            }
+            taskExecutor.shutdown();
+            subscriptionExecutor.shutdown();
+        }, "LockReleaseNotifier-shutdown"));
+    }
+
+    public static LockReleaseNotifier of(StringRedisTemplate redisTemplate) {
+        return NOTIFIERS.computeIfAbsent(redisTemplate.getConnectionFactory(),
+                factory -> new LockReleaseNotifier(redisTemplate));
+    }
+
+    /**
+     * 开始等待keys中任一个的释放消息,等待结束后必须调用{@link #unregister}
+     */
+    Waiter register(List<String> keys) {
+        Waiter waiter = new Waiter(keys);
+        synchronized (this) {
+            for (String key : keys) {
+                KeyWaiters keyWaiters = waitersOfKey.get(key);
+                if (keyWaiters == null) {
+                    keyWaiters = new KeyWaiters(key);
+                    waitersOfKey.put(key, keyWaiters);
+                    container.addMessageListener(keyWaiters, new ChannelTopic(CHANNEL_PREFIX + key));
+                }
+                keyWaiters.count++;
+                keyWaiters.queue.offer(waiter);
+            }
+        }
+        return waiter;
+    }
+
+    void unregister(Waiter waiter) {
+        waiter.done = true;
+        synchronized (this) {
+            for (String key : waiter.keys) {
+                KeyWaiters keyWaiters = waitersOfKey.get(key);
+                if (keyWaiters == null) {
+                    continue;
+                }
+                keyWaiters.queue.remove(waiter);
+                if (--keyWaiters.count == 0) {
+                    waitersOfKey.remove(key);
+                    container.removeMessageListener(keyWaiters, new ChannelTopic(CHANNEL_PREFIX + key));
+                }
+            }
+        }
+    }
+
+    /**
+     * 发布keys的释放消息,在释放锁成功后调用
+     *
+     * @param broadcast 为true时唤醒各节点中所有等待该key的线程,否则每个节点唤醒一个
+     */
+    void publish(List<String> keys, boolean broadcast) {
+        for (String key : keys) {
+            try {
+                redisTemplate.convertAndSend(CHANNEL_PREFIX + key, broadcast ? BROADCAST : "");
+            } catch (Exception e) {
+                // 等待线程会按退避间隔轮询,消息发布失败只影响获得锁的延迟
+                LOGGER.warn("--- 发布锁释放消息失败 key={}", key, e);
+            }
+        }
+    }
+
+    /**
+     * 等待锁释放的线程
+     */
+    static final class Waiter {
+        private final List<String> keys;
+        private final Semaphore signal = new Semaphore(0);
+        /** 唤醒本线程的消息对应的key,本线程被唤醒后需重新进入这些key的等待队列 */
+        private final Queue<String> signaledKeys = new ConcurrentLinkedQueue<>();
+        private volatile boolean done;
+
+        private Waiter(List<String> keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * 等待释放消息,最长等待timeoutNanos
+         */
+        void await(LockReleaseNotifier notifier, long timeoutNanos) throws InterruptedException {
+            signal.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            // 多个消息同时到达时只需一次重试
+            signal.drainPermits();
+            String key;
+            while ((key = signaledKeys.poll()) != null) {
+                KeyWaiters keyWaiters;
+                synchronized (notifier) {
+                    keyWaiters = notifier.waitersOfKey.get(key);
+                }
+                if (keyWaiters != null) {
+                    keyWaiters.queue.offer(this);
+                }
+            }
+        }
+    }
+
+    private static final class KeyWaiters implements MessageListener {
+        private final String key;
+        private final Queue<Waiter> queue = new ConcurrentLinkedQueue<>();
+        /** 等待该key的线程数,只在持有LockReleaseNotifier的锁时访问 */
+        private int count;
+
+        private KeyWaiters(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            byte[] body = message.getBody();
+            boolean broadcast = body != null && body.length > 0;
+            Waiter waiter;
+            while ((waiter = queue.poll()) != null) {
+                if (!waiter.done) {
+                    waiter.signaledKeys.offer(key);
+                    waiter.signal.release();
+                    if (!broadcast) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.isharpever.tool.distributionlock;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 锁续期看门狗: 启用后加锁时使用较短的租约(isharpever.lock.watchdog.lease,默认30000毫秒),
+ * 每隔租约的1/3把本JVM持有的所有锁的过期时间延长为一个租约,同一tick内的续期在一次pipeline中执行
+ * <li>释放锁时停止续期;持有锁的线程已结束(未释放锁)时也停止续期,锁在一个租约后过期
+ * <li>锁已不属于本锁实例(已过期并被他人获得)时停止续期,记录lost
+ * <li>续期请求异常时保留,下一个tick重试
+ * <br>监控 isharpever.lock.watchdog: leases(续期的锁数)、renewed、lost、ownerDead、error、
+ * lag(距上次续期的时间超出续期间隔的毫秒数)、cost(一次pipeline耗时)
+ * <br>同一RedisConnectionFactory共用一个实例,由{@link #of}获取
+ *
+ * @see SimpleRedisLock#getWatchdog
+ */
+public final class LockWatchdog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockWatchdog.class);
+
+    static final long LEASE_MILLIS = Long.getLong("isharpever.lock.watchdog.lease", 30000L);
+    private static final String MEASUREMENT = "isharpever.lock.watchdog";
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * 所有key的值都是本锁实例的uuid时,延长所有key的过期时间(毫秒)并返回1,否则返回0:
+     * KEYS=锁的各个key, ARGV[1]=uuid, ARGV[2]=过期时间
+     */
+    private static final byte[] SCRIPT_RENEW = ("for _, key in ipairs(KEYS) do "
+            + "if redis.call('GET', key) ~= ARGV[1] then return 0 end end "
+            + "for _, key in ipairs(KEYS) do redis.call('PEXPIRE', key, ARGV[2]) end return 1")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final ScheduledExecutorService SCHEDULER = ExecutorServiceUtil
+            .buildScheduledThreadPool(1, "LockWatchdog-");
+    private static final Map<RedisConnectionFactory, LockWatchdog> WATCHDOGS = new ConcurrentHashMap<>(2);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final long intervalMillis = LEASE_MILLIS / 3;
+    private final byte[] rawLease = String.valueOf(LEASE_MILLIS).getBytes(StandardCharsets.UTF_8);
+
+    private LockWatchdog(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public static LockWatchdog of(StringRedisTemplate redisTemplate) {
+        return WATCHDOGS.computeIfAbsent(redisTemplate.getConnectionFactory(), factory -> {
+            LockWatchdog watchdog = new LockWatchdog(redisTemplate);
+            SCHEDULER.scheduleAtFixedRate(watchdog::renew, watchdog.intervalMillis, watchdog.intervalMillis,
+                    TimeUnit.MILLISECONDS);
+            return watchdog;
+        });
+    }
+
+    /**
+     * 加锁时使用的租约(毫秒)
+     */
+    long getLeaseMillis() {
+        return LEASE_MILLIS;
+    }
+
+    /**
+     * 开始为当前线程刚获得的锁续期
+     *
+     * @param keys 锁的key
+     * @param value 锁的值(锁实例的uuid)
+     */
+    Lease watch(List<String> keys, String value) {
+        Lease lease = new Lease(keys, value, rawLease, Thread.currentThread());
+        leases.add(lease);
+        return lease;
+    }
+
+    /**
+     * 停止续期,在释放锁前调用
+     */
+    void unwatch(Lease lease) {
+        leases.remove(lease);
+    }
+
+    int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * 为所有锁续期一次
+     */
+    void renew() {
+        // 每次重新获取,长期无数据的序列会被MetricsRegistry淘汰
+        MetricSeries series = MetricsRegistry.series(MEASUREMENT,
+                "app", AppNameUtil.getAppName(),
+                "ip", NetUtil.getLocalHostAddress());
+        List<Lease> renewing = new ArrayList<>(leases.size());
+        for (Lease lease : leases) {
+            if (!lease.owner.isAlive()) {
+                leases.remove(lease);
+                series.record("ownerDead", 1);
+                LOGGER.warn("--- 持有锁的线程已结束但未释放锁,停止续期 keys={} thread={}", lease.keys,
+                        lease.owner.getName());
+                continue;
+            }
+            renewing.add(lease);
+        }
+        if (renewing.isEmpty()) {
+            return;
+        }
+        series.record("leases", renewing.size());
+        for (int from = 0; from < renewing.size(); from += CHUNK_SIZE) {
+            this.renew(renewing.subList(from, Math.min(from + CHUNK_SIZE, renewing.size())), series);
+        }
+    }
+
+    private void renew(List<Lease> chunk, MetricSeries series) {
+        long startTime = System.currentTimeMillis();
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Lease lease : chunk) {
+                    connection.eval(SCRIPT_RENEW, ReturnType.INTEGER, lease.rawKeysAndArgs.length - 2,
+                            lease.rawKeysAndArgs);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            series.record("error", chunk.size());
+            LOGGER.error("--- 锁续期异常 锁数={} 首个keys={}", chunk.size(), chunk.get(0).keys, e);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        series.record("cost", now - startTime);
+        for (int i = 0, size = chunk.size(); i < size; i++) {
+            Lease lease = chunk.get(i);
+            if (Long.valueOf(1L).equals(results.get(i))) {
+                series.record("renewed", 1);
+                series.record("lag", Math.max(0, startTime - lease.renewedAt - intervalMillis));
+                lease.renewedAt = now;
+            } else if (leases.remove(lease)) {
+                // 未被移除说明续期期间已释放锁,不算丢失
+                series.record("lost", 1);
+                LOGGER.warn("--- 锁已不属于当前持有者,停止续期 keys={} thread={} 上次续期于{}ms前", lease.keys,
+                        lease.owner.getName(), now - lease.renewedAt);
+            }
+        }
+    }
+
+    /**
+     * 一个需要续期的锁
+     */
+    static final class Lease {
+        private final List<String> keys;
+        private final Thread owner;
+        /** 各key、uuid、租约,作为续期脚本的参数 */
+        private final byte[][] rawKeysAndArgs;
+        private volatile long renewedAt = System.currentTimeMillis();
+
+        private Lease(List<String> keys, String value, byte[] rawLease, Thread owner) {
+            this.keys = keys;
+            this.owner = owner;
+            this.rawKeysAndArgs = new byte[keys.size() + 2][];
+            for (int i = 0; i < keys.size(); i++) {
+                rawKeysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            rawKeysAndArgs[keys.size()] = value.getBytes(StandardCharsets.UTF_8);
+            rawKeysAndArgs[keys.size() + 1] = rawLease;
+        }
+    }
+}
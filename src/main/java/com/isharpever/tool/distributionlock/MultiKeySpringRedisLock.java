@@ -25,15 +25,58 @@ public class MultiKeySpringRedisLock extends SimpleRedisLock {
 
     private StringRedisTemplate stringRedisTemplate;
 
+    private LockReleaseNotifier releaseNotifier;
+
+    private LockWatchdog watchdog;
+
     /**
      * lockUUID stringRedisTemplate for builder
      */
-    @Builder
     public MultiKeySpringRedisLock(List<String> lockKeys, UUID lockUUID,
             StringRedisTemplate stringRedisTemplate, Long waitTime, Long leaseTime,
             TimeUnit timeUnit) {
+        this(lockKeys, lockUUID, stringRedisTemplate, waitTime, leaseTime, timeUnit, null);
+    }
+
+    /**
+     * lockUUID for builder
+     *
+     * @param notifyOnRelease 为true时启用锁释放通知,等待任一key的释放消息,见{@link LockReleaseNotifier}
+     */
+    public MultiKeySpringRedisLock(List<String> lockKeys, UUID lockUUID,
+            StringRedisTemplate stringRedisTemplate, Long waitTime, Long leaseTime,
+            TimeUnit timeUnit, Boolean notifyOnRelease) {
+        this(lockKeys, lockUUID, stringRedisTemplate, waitTime, leaseTime, timeUnit, notifyOnRelease, null);
+    }
+
+    /**
+     * lockUUID for builder
+     *
+     * @param notifyOnRelease 为true时启用锁释放通知,等待任一key的释放消息,见{@link LockReleaseNotifier}
+     * @param watchdog 为true时由看门狗为所有key续期,leaseTime不再生效,见{@link LockWatchdog}
+     */
+    @Builder
+    public MultiKeySpringRedisLock(List<String> lockKeys, UUID lockUUID,
+            StringRedisTemplate stringRedisTemplate, Long waitTime, Long leaseTime,
+            TimeUnit timeUnit, Boolean notifyOnRelease, Boolean watchdog) {
         super(lockKeys, waitTime, leaseTime, timeUnit);
         this.stringRedisTemplate = stringRedisTemplate;
+        if (Boolean.TRUE.equals(notifyOnRelease)) {
+            this.releaseNotifier = LockReleaseNotifier.of(stringRedisTemplate);
+        }
+        if (Boolean.TRUE.equals(watchdog)) {
+            this.watchdog = LockWatchdog.of(stringRedisTemplate);
+        }
+    }
+
+    @Override
+    protected LockReleaseNotifier getReleaseNotifier() {
+        return releaseNotifier;
+    }
+
+    @Override
+    protected LockWatchdog getWatchdog() {
+        return watchdog;
     }
 
     @Override
@@ -0,0 +1,118 @@
+package com.isharpever.tool.distributionlock;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+/**
+ * 分布式读写锁: 读锁之间不互斥,写锁与读锁、写锁互斥
+ * <li>每个读锁有各自的租约,持有者异常退出未释放时,过期后不再阻塞写锁
+ * <li>写锁因读锁未释放而等待时,新的读锁加锁失败(等待),直到写锁获得锁或等待超过一个租约,避免写锁饿死
+ * <br>{@link #readLock()}、{@link #writeLock()}每次返回新的锁实例,与{@link SpringRedisLockV2}一样使用:
+ * <pre>
+ * RedisReadWriteLock rwLock = RedisReadWriteLock.builder().lockKey(key).stringRedisTemplate(template).build();
+ * rwLock.readLock().doWithLock(context -> ...);
+ * </pre>
+ * 不支持看门狗续期
+ */
+public class RedisReadWriteLock {
+
+    private final static DefaultRedisScript<String> SCRIPT_READ_LOCK = new DefaultRedisScript<>();
+    private final static DefaultRedisScript<Long> SCRIPT_READ_UNLOCK = new DefaultRedisScript<>();
+    private final static DefaultRedisScript<String> SCRIPT_WRITE_LOCK = new DefaultRedisScript<>();
+    private final static DefaultRedisScript<Long> SCRIPT_WRITE_UNLOCK = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_READ_LOCK.setResultType(String.class);
+        SCRIPT_READ_LOCK.setLocation(new ClassPathResource("script/rw_read_lock.lua"));
+        SCRIPT_READ_LOCK.setScriptText(SCRIPT_READ_LOCK.getScriptAsString());
+
+        SCRIPT_READ_UNLOCK.setResultType(Long.class);
+        SCRIPT_READ_UNLOCK.setLocation(new ClassPathResource("script/rw_read_unlock.lua"));
+        SCRIPT_READ_UNLOCK.setScriptText(SCRIPT_READ_UNLOCK.getScriptAsString());
+
+        SCRIPT_WRITE_LOCK.setResultType(String.class);
+        SCRIPT_WRITE_LOCK.setLocation(new ClassPathResource("script/rw_write_lock.lua"));
+        SCRIPT_WRITE_LOCK.setScriptText(SCRIPT_WRITE_LOCK.getScriptAsString());
+
+        SCRIPT_WRITE_UNLOCK.setResultType(Long.class);
+        SCRIPT_WRITE_UNLOCK.setLocation(new ClassPathResource("script/rw_write_unlock.lua"));
+        SCRIPT_WRITE_UNLOCK.setScriptText(SCRIPT_WRITE_UNLOCK.getScriptAsString());
+    }
+
+    private final String lockKey;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Long waitTime;
+    private final Long leaseTime;
+    private final TimeUnit timeUnit;
+    private final LockReleaseNotifier releaseNotifier;
+
+    /**
+     * @param notifyOnRelease 为true时启用锁释放通知,见{@link LockReleaseNotifier}
+     */
+    @Builder
+    public RedisReadWriteLock(String lockKey, StringRedisTemplate stringRedisTemplate, Long waitTime,
+            Long leaseTime, TimeUnit timeUnit, Boolean notifyOnRelease) {
+        this.lockKey = lockKey;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.waitTime = waitTime;
+        this.leaseTime = leaseTime;
+        this.timeUnit = timeUnit;
+        this.releaseNotifier = Boolean.TRUE.equals(notifyOnRelease)
+                ? LockReleaseNotifier.of(stringRedisTemplate) : null;
+    }
+
+    /**
+     * 返回一个新的读锁实例
+     */
+    public SimpleRedisLock readLock() {
+        return new ModeLock(SCRIPT_READ_LOCK, SCRIPT_READ_UNLOCK);
+    }
+
+    /**
+     * 返回一个新的写锁实例
+     */
+    public SimpleRedisLock writeLock() {
+        return new ModeLock(SCRIPT_WRITE_LOCK, SCRIPT_WRITE_UNLOCK);
+    }
+
+    private class ModeLock extends SimpleRedisLock {
+        private final DefaultRedisScript<String> lockScript;
+        private final DefaultRedisScript<Long> unlockScript;
+
+        private ModeLock(DefaultRedisScript<String> lockScript, DefaultRedisScript<Long> unlockScript) {
+            super(lockKey, RedisReadWriteLock.this.waitTime, RedisReadWriteLock.this.leaseTime,
+                    RedisReadWriteLock.this.timeUnit);
+            this.lockScript = lockScript;
+            this.unlockScript = unlockScript;
+        }
+
+        @Override
+        protected LockReleaseNotifier getReleaseNotifier() {
+            return releaseNotifier;
+        }
+
+        /**
+         * 写锁释放后等待的读锁可同时获得,读锁释放后不确定等待的是读锁还是写锁,都唤醒全部等待线程
+         */
+        @Override
+        protected boolean isBroadcastRelease() {
+            return true;
+        }
+
+        @Override
+        protected String doTryLock(long leaseTimeInMillSeconds) {
+            return stringRedisTemplate.execute(lockScript, Collections.singletonList(lockKey), lockUUID.toString(),
+                    String.valueOf(leaseTimeInMillSeconds));
+        }
+
+        @Override
+        protected long doUnlock() {
+            return stringRedisTemplate.execute(unlockScript, Collections.singletonList(lockKey),
+                    lockUUID.toString());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.isharpever.tool.distributionlock;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+/**
+ * 分布式信号量: 同一key最多permits个持有者同时持有,每个实例获得/释放一个许可
+ * <li>每个许可有各自的租约(leaseTime),持有者异常退出未释放时,过期后自动归还
+ * <li>tryLock/unlock/doWithLock与{@link SpringRedisLockV2}一致,如限制调用第三方接口的并发数:
+ * <pre>
+ * RedisSemaphore.builder().lockKey(key).permits(10).stringRedisTemplate(template).build()
+ *         .doWithLock(context -> ...);
+ * </pre>
+ * 不支持看门狗续期
+ */
+public class RedisSemaphore extends SimpleRedisLock {
+
+    private final static DefaultRedisScript<String> SCRIPT_LOCK = new DefaultRedisScript<>();
+    private final static DefaultRedisScript<Long> SCRIPT_UNLOCK = new DefaultRedisScript<>();
+
+    static {
+        SCRIPT_LOCK.setResultType(String.class);
+        SCRIPT_LOCK.setLocation(new ClassPathResource("script/semaphore_lock.lua"));
+        SCRIPT_LOCK.setScriptText(SCRIPT_LOCK.getScriptAsString());
+
+        SCRIPT_UNLOCK.setResultType(Long.class);
+        SCRIPT_UNLOCK.setLocation(new ClassPathResource("script/semaphore_unlock.lua"));
+        SCRIPT_UNLOCK.setScriptText(SCRIPT_UNLOCK.getScriptAsString());
+    }
+
+    private final int permits;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private LockReleaseNotifier releaseNotifier;
+
+    /**
+     * @param permits 许可总数,同一key的各方应一致
+     * @param notifyOnRelease 为true时启用释放通知,见{@link LockReleaseNotifier}
+     */
+    @Builder
+    public RedisSemaphore(String lockKey, int permits, StringRedisTemplate stringRedisTemplate, Long waitTime,
+            Long leaseTime, TimeUnit timeUnit, Boolean notifyOnRelease) {
+        super(lockKey, waitTime, leaseTime, timeUnit);
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits应大于0: " + permits);
+        }
+        this.permits = permits;
+        this.stringRedisTemplate = stringRedisTemplate;
+        if (Boolean.TRUE.equals(notifyOnRelease)) {
+            this.releaseNotifier = LockReleaseNotifier.of(stringRedisTemplate);
+        }
+    }
+
+    @Override
+    protected LockReleaseNotifier getReleaseNotifier() {
+        return releaseNotifier;
+    }
+
+    @Override
+    protected String doTryLock(long leaseTimeInMillSeconds) {
+        return stringRedisTemplate.execute(SCRIPT_LOCK, Collections.singletonList(lockKeys.get(0)),
+                lockUUID.toString(), String.valueOf(leaseTimeInMillSeconds), String.valueOf(permits));
+    }
+
+    @Override
+    protected long doUnlock() {
+        return stringRedisTemplate.execute(SCRIPT_UNLOCK, Collections.singletonList(lockKeys.get(0)),
+                lockUUID.toString());
+    }
+}
@@ -0,0 +1,143 @@
+package com.isharpever.tool.distributionlock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 两级锁: 先获得本JVM内该key的本地锁,再获得redis锁
+ * <li>本JVM内竞争同一key的线程在本地锁上排队,同一时间只有一个线程访问redis,redis的请求量与节点数而不是线程数相关
+ * <li>可重入: 已持有该key的线程再次加锁时只增加持有次数,不访问redis;最外层释放时才释放redis锁
+ * <br>每个key一个本地锁,无线程使用时移除;不按hash分段共用本地锁,避免嵌套加锁不同key时因共用分段而死锁
+ * <br>用法: new ReentrantRedisLock(SpringRedisLockV2.builder()...build()).doWithLock(...),
+ * 获得锁超时时间、租约、释放通知、看门狗等取被包装的锁的设置,等待本地锁的时间计入获得锁超时时间
+ */
+public class ReentrantRedisLock extends SimpleRedisLock {
+
+    /** key -> 本地锁 */
+    private static final Map<String, LocalLock> LOCAL_LOCKS = new ConcurrentHashMap<>(64);
+
+    private final SimpleRedisLock delegate;
+    private final String localKey;
+    /** 本实例获得的本地锁,未持有锁时为null;其他线程可能读到旧值,使用前需确认本地锁由当前线程持有 */
+    private volatile LocalLock held;
+    /** 本实例的持有次数,只由持有本地锁的线程修改 */
+    private int holds;
+
+    public ReentrantRedisLock(SimpleRedisLock delegate) {
+        super(delegate.lockKeys, delegate.waitTime, delegate.leaseTime, delegate.timeUnit);
+        this.delegate = delegate;
+        this.localKey = delegate.lockKeys.size() == 1 ? delegate.lockKeys.get(0) : String.join(",", delegate.lockKeys);
+    }
+
+    @Override
+    String tryLock(long waitMillis) throws InterruptedException {
+        LocalLock current = held;
+        if (current != null && current.lock.isHeldByCurrentThread()) {
+            // 同一线程用同一实例重复加锁视为重入;其他线程使用同一实例时按正常流程限时等待
+            acquireLocalLock(localKey);
+            held.lock.lock();
+            holds++;
+            return LOCK_SUCCESS;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        LocalLock localLock = acquireLocalLock(localKey);
+        boolean locked = false;
+        boolean success = false;
+        try {
+            if (!localLock.lock.tryLock(waitMillis, TimeUnit.MILLISECONDS)) {
+                return LOCK_FAIL;
+            }
+            locked = true;
+            // 持有次数大于1说明当前线程已持有redis锁
+            if (localLock.lock.getHoldCount() == 1) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                String result = delegate.tryLock(Math.max(remaining, 0));
+                if (!LOCK_SUCCESS.equalsIgnoreCase(result)) {
+                    return result;
+                }
+                localLock.redisLock = delegate;
+            }
+            success = true;
+            held = localLock;
+            holds = 1;
+            return LOCK_SUCCESS;
+        } finally {
+            if (!success) {
+                if (locked) {
+                    localLock.lock.unlock();
+                }
+                releaseLocalLock(localKey);
+            }
+        }
+    }
+
+    /**
+     * 释放一次持有,最外层释放时释放redis锁
+     *
+     * @return 释放redis锁的结果;未释放redis锁(重入的持有)时返回1,未持有锁时返回0
+     */
+    @Override
+    public long unlock() {
+        LocalLock localLock = held;
+        if (localLock == null || !localLock.lock.isHeldByCurrentThread()) {
+            return 0;
+        }
+        if (--holds == 0) {
+            held = null;
+        }
+        long released = 1;
+        try {
+            if (localLock.lock.getHoldCount() == 1) {
+                SimpleRedisLock redisLock = localLock.redisLock;
+                localLock.redisLock = null;
+                released = redisLock.unlock();
+            }
+        } finally {
+            localLock.lock.unlock();
+            releaseLocalLock(localKey);
+        }
+        return released;
+    }
+
+    /**
+     * 当前线程对该锁的持有次数
+     */
+    public int getHoldCount() {
+        LocalLock localLock = LOCAL_LOCKS.get(localKey);
+        return localLock == null ? 0 : localLock.lock.getHoldCount();
+    }
+
+    @Override
+    protected String doTryLock(long leaseTimeInMillSeconds) {
+        return delegate.doTryLock(leaseTimeInMillSeconds);
+    }
+
+    @Override
+    protected long doUnlock() {
+        return delegate.doUnlock();
+    }
+
+    private static LocalLock acquireLocalLock(String key) {
+        return LOCAL_LOCKS.compute(key, (k, localLock) -> {
+            if (localLock == null) {
+                localLock = new LocalLock();
+            }
+            localLock.refs++;
+            return localLock;
+        });
+    }
+
+    private static void releaseLocalLock(String key) {
+        LOCAL_LOCKS.computeIfPresent(key, (k, localLock) -> --localLock.refs == 0 ? null : localLock);
+    }
+
+    private static final class LocalLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        /** 持有或等待该锁的次数,只在LOCAL_LOCKS.compute中修改 */
+        private int refs;
+        /** 持有该key的redis锁的实例,由最外层持有者设置和释放 */
+        private SimpleRedisLock redisLock;
+    }
+}
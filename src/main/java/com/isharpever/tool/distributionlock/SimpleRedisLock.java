@@ -3,6 +3,7 @@ package com.isharpever.tool.distributionlock;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +21,10 @@ public abstract class SimpleRedisLock {
      */
     public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 3 * ONE_SECOND;
     public static final long DEFAULT_ACQUIRY_RESOLUTION_MILLIS = 10;
+    /**
+     * 释放通知模式下轮询的最大退避间隔
+     */
+    public static final long MAX_ACQUIRY_BACKOFF_MILLIS = 200;
 
     protected List<String> lockKeys;
     protected final UUID lockUUID;
@@ -28,6 +33,22 @@ public abstract class SimpleRedisLock {
     protected Long leaseTime = DEFAULT_EXPIRY_TIME_MILLIS;
     protected TimeUnit timeUnit = TimeUnit.MILLISECONDS;
 
+    /**
+     * 看门狗续期中的锁,未启用看门狗或未持有锁时为null
+     */
+    private volatile LockWatchdog.Lease watchedLease;
+
+    /**
+     * 监控: key模式、本次获得锁请求redis的次数、获得锁的时间(nanoTime,未持有时为0);
+     * 抽样记录为持有中的锁时的位置(未记录为-1)、获得锁的时间、持有线程,见{@link LockMonitor}
+     */
+    LockMonitor.Pattern monitorPattern;
+    private int attempts;
+    private long acquiredNanos;
+    private int heldSlot = -1;
+    long heldSince;
+    Thread holder;
+
     public final static String LOCK_SUCCESS = "OK";
     public final static String LOCK_FAIL = "FAIL";
 
@@ -78,17 +99,86 @@ public abstract class SimpleRedisLock {
 
     /**
      * 尝试获得锁，默认超时时间3s，默认加锁时间3s
+     * <br>启用看门狗时忽略leaseTime,以看门狗的租约加锁,获得锁后由看门狗续期直到释放锁
      */
     public String tryLock() throws InterruptedException {
-        return tryLock(waitTime, leaseTime, timeUnit);
+        return tryLock(timeUnit.toMillis(waitTime));
     }
 
     /**
-     * 释放锁
+     * 尝试获得锁,获得锁超时时间为waitMillis毫秒,其他同{@link #tryLock()}
+     */
+    String tryLock(long waitMillis) throws InterruptedException {
+        if (monitorPattern == null) {
+            monitorPattern = LockMonitor.pattern(lockKeys);
+        }
+        attempts = 0;
+        long startTime = System.nanoTime();
+        String result;
+        try {
+            result = this.acquire(waitMillis);
+        } catch (InterruptedException | RuntimeException e) {
+            LockMonitor.recordError(monitorPattern);
+            throw e;
+        }
+        boolean acquired = LOCK_SUCCESS.equalsIgnoreCase(result);
+        long now = System.nanoTime();
+        LockMonitor.recordAcquire(monitorPattern, attempts, now - startTime, acquired);
+        if (acquired) {
+            acquiredNanos = now;
+            heldSince = System.currentTimeMillis();
+            holder = Thread.currentThread();
+            heldSlot = LockMonitor.trackHeld(this);
+        }
+        return result;
+    }
+
+    private String acquire(long waitMillis) throws InterruptedException {
+        LockWatchdog watchdog = this.getWatchdog();
+        if (watchdog == null) {
+            return tryLock(waitMillis, timeUnit.toMillis(leaseTime), TimeUnit.MILLISECONDS);
+        }
+        String result = tryLock(waitMillis, watchdog.getLeaseMillis(), TimeUnit.MILLISECONDS);
+        if (LOCK_SUCCESS.equalsIgnoreCase(result)) {
+            this.watchedLease = watchdog.watch(lockKeys, lockUUID.toString());
+        }
+        return result;
+    }
+
+    /**
+     * 释放锁,启用了释放通知时发布释放消息
      * @return
      */
     public long unlock() {
-        return doUnlock();
+        LockWatchdog.Lease lease = this.watchedLease;
+        if (lease != null) {
+            this.watchedLease = null;
+            this.getWatchdog().unwatch(lease);
+        }
+        long released = 0;
+        try {
+            released = doUnlock();
+        } finally {
+            this.recordRelease(released > 0);
+        }
+        LockReleaseNotifier notifier = this.getReleaseNotifier();
+        if (released > 0 && notifier != null) {
+            notifier.publish(lockKeys, this.isBroadcastRelease());
+        }
+        return released;
+    }
+
+    private void recordRelease(boolean released) {
+        if (acquiredNanos == 0) {
+            // 未获得锁(如doWithLock中tryLock异常后的释放)
+            return;
+        }
+        LockMonitor.recordRelease(monitorPattern, System.nanoTime() - acquiredNanos, released);
+        acquiredNanos = 0;
+        if (heldSlot >= 0) {
+            LockMonitor.untrackHeld(heldSlot, this);
+            heldSlot = -1;
+        }
     }
 
     /**
@@ -104,8 +194,12 @@ public abstract class SimpleRedisLock {
         long timeout = unit.toMillis(waitTime);
         long internalLockLeaseTime = unit.toMillis(leaseTime);
 
+        LockReleaseNotifier notifier = this.getReleaseNotifier();
+        if (notifier != null) {
+            return tryLockNotified(notifier, timeout, internalLockLeaseTime);
+        }
         while (timeout >= 0) {
-            result = doTryLock(internalLockLeaseTime);
+            result = this.attempt(internalLockLeaseTime);
             if (LOCK_SUCCESS.equalsIgnoreCase(result)) {
                 return LOCK_SUCCESS;
             }
@@ -117,6 +211,66 @@ public abstract class SimpleRedisLock {
         return result;
     }
 
+    /**
+     * 释放通知模式: 收到锁释放消息后立即重试,同时按退避间隔轮询(防止消息丢失或锁过期而非被释放),
+     * 间隔从DEFAULT_ACQUIRY_RESOLUTION_MILLIS开始每次翻倍,最大MAX_ACQUIRY_BACKOFF_MILLIS,并随机缩短至一半以内,
+     * 避免多个节点同时重试
+     */
+    private String tryLockNotified(LockReleaseNotifier notifier, long timeout, long internalLockLeaseTime)
+            throws InterruptedException {
+        String result = this.attempt(internalLockLeaseTime);
+        if (LOCK_SUCCESS.equalsIgnoreCase(result) || timeout <= 0) {
+            return result;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        LockReleaseNotifier.Waiter waiter = notifier.register(lockKeys);
+        try {
+            long backoff = DEFAULT_ACQUIRY_RESOLUTION_MILLIS;
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return result;
+                }
+                long sleep = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                waiter.await(notifier, Math.min(TimeUnit.MILLISECONDS.toNanos(sleep), remaining));
+                result = this.attempt(internalLockLeaseTime);
+                if (LOCK_SUCCESS.equalsIgnoreCase(result)) {
+                    return LOCK_SUCCESS;
+                }
+                backoff = Math.min(backoff * 2, MAX_ACQUIRY_BACKOFF_MILLIS);
+            }
+        } finally {
+            notifier.unregister(waiter);
+        }
+    }
+
+    private String attempt(long leaseTimeInMillSeconds) {
+        attempts++;
+        return doTryLock(leaseTimeInMillSeconds);
+    }
+
+    /**
+     * 锁释放通知,返回null时(默认)按固定间隔DEFAULT_ACQUIRY_RESOLUTION_MILLIS轮询获得锁
+     * <br>使用同一个锁的各方都应启用,否则未启用的一方释放锁时不发布消息,等待方只能靠轮询获得锁
+     */
+    protected LockReleaseNotifier getReleaseNotifier() {
+        return null;
+    }
+
+    /**
+     * 释放锁时是否唤醒所有等待该锁的线程,默认只唤醒一个(释放后只有一个线程能获得锁)
+     */
+    protected boolean isBroadcastRelease() {
+        return false;
+    }
+
+    /**
+     * 锁续期看门狗,返回null时(默认)按leaseTime加锁,不续期
+     */
+    protected LockWatchdog getWatchdog() {
+        return null;
+    }
+
     protected abstract String doTryLock(long leaseTimeInMillSeconds);
 
     /**
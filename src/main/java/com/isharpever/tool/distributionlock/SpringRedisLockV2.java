@@ -27,15 +27,54 @@ public class SpringRedisLockV2 extends SimpleRedisLock {
 
     private StringRedisTemplate stringRedisTemplate;
 
+    private LockReleaseNotifier releaseNotifier;
+
+    private LockWatchdog watchdog;
+
     /**
      * @param lockUUID 单纯为了builder写的，不需要传
      * @param stringRedisTemplate 单纯为了builder写的，不需要传
      */
-    @Builder
     public SpringRedisLockV2(String lockKey, UUID lockUUID, StringRedisTemplate stringRedisTemplate,
             Long waitTime, Long leaseTime, TimeUnit timeUnit) {
+        this(lockKey, lockUUID, stringRedisTemplate, waitTime, leaseTime, timeUnit, null);
+    }
+
+    /**
+     * @param lockUUID 单纯为了builder写的，不需要传
+     * @param notifyOnRelease 为true时启用锁释放通知,见{@link LockReleaseNotifier}
+     */
+    public SpringRedisLockV2(String lockKey, UUID lockUUID, StringRedisTemplate stringRedisTemplate,
+            Long waitTime, Long leaseTime, TimeUnit timeUnit, Boolean notifyOnRelease) {
+        this(lockKey, lockUUID, stringRedisTemplate, waitTime, leaseTime, timeUnit, notifyOnRelease, null);
+    }
+
+    /**
+     * @param lockUUID 单纯为了builder写的，不需要传
+     * @param notifyOnRelease 为true时启用锁释放通知,见{@link LockReleaseNotifier}
+     * @param watchdog 为true时由看门狗续期,leaseTime不再生效,见{@link LockWatchdog}
+     */
+    @Builder
+    public SpringRedisLockV2(String lockKey, UUID lockUUID, StringRedisTemplate stringRedisTemplate,
+            Long waitTime, Long leaseTime, TimeUnit timeUnit, Boolean notifyOnRelease, Boolean watchdog) {
         super(lockKey, waitTime, leaseTime, timeUnit);
         this.stringRedisTemplate = stringRedisTemplate;
+        if (Boolean.TRUE.equals(notifyOnRelease)) {
+            this.releaseNotifier = LockReleaseNotifier.of(stringRedisTemplate);
+        }
+        if (Boolean.TRUE.equals(watchdog)) {
+            this.watchdog = LockWatchdog.of(stringRedisTemplate);
+        }
+    }
+
+    @Override
+    protected LockReleaseNotifier getReleaseNotifier() {
+        return releaseNotifier;
+    }
+
+    @Override
+    protected LockWatchdog getWatchdog() {
+        return watchdog;
     }
 
     @Override
@@ -1,6 +1,8 @@
 package com.isharpever.tool.dubbo.filter;
 
 import com.alibaba.fastjson.JSON;
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
 import com.isharpever.tool.utils.NetUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.dubbo.common.constants.CommonConstants;
@@ -30,8 +32,6 @@ public class InvokeMonitorFilter extends ListenableFilter {
     static class InvokeMonitorListener implements Listener {
         private static final Logger LOGGER = LoggerFactory.getLogger(InvokeMonitorFilter.class);
 
-//        private MonitorUtil monitor = MonitorFactory.connect();
-
         @Override
         public void onResponse(Result appResponse, Invoker<?> invoker, Invocation invocation) {
             Long cost = null;
@@ -80,16 +80,17 @@ public class InvokeMonitorFilter extends ListenableFilter {
                 slow = "true";
             }
 
-//            MonitorPoint point = MonitorPoint
-//                    .monitorKey("isharpever.dubbo.monitor")
-//                    .addTag("app", this.getAppCode(invoker))
-//                    .addTag("ip", ip)
-//                    .addTag("interface", interfaceName)
-//                    .addTag("method", methodName)
-//                    .addTag("slow", slow)
-//                    .addField("cost", cost)
-//                    .addField("rlen", rsltLen).build();
-//            monitor.writePoint(point);
+            // 同一接口方法的调用在进程内聚合,每秒输出一次
+            MetricSeries series = MetricsRegistry.series("isharpever.dubbo.monitor",
+                    "app", this.getAppCode(invoker),
+                    "ip", ip,
+                    "interface", interfaceName,
+                    "method", methodName,
+                    "slow", slow);
+            if (cost != null) {
+                series.record("cost", cost);
+            }
+            series.record("rlen", rsltLen);
         }
 
         /**
@@ -1,10 +1,9 @@
 package com.isharpever.tool.dubbo.threadpool;
 
-import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.executor.InstrumentedThreadPoolExecutor;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.constants.CommonConstants;
@@ -24,11 +23,11 @@ public class MonitorCachedThreadPool implements ThreadPool {
         }
         int queues = url.getParameter(CommonConstants.QUEUES_KEY, CommonConstants.DEFAULT_QUEUES);
         int alive = url.getParameter(CommonConstants.ALIVE_KEY, CommonConstants.DEFAULT_ALIVE);
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(cores, threads, alive, TimeUnit.MILLISECONDS,
+        return new InstrumentedThreadPoolExecutor(name, "isharpever.threadpool.dubbo",
+                cores, threads, alive, TimeUnit.MILLISECONDS,
                 queues == 0 ? new SynchronousQueue<>() :
                         (queues < 0 ? new LinkedBlockingQueue<>()
                                 : new LinkedBlockingQueue<>(queues)),
                 new NamedThreadFactory(name, true), new AbortPolicyWithReport(name, url));
-        return ExecutorServiceUtil.buildExecutorService(executor, name, "isharpever.threadpool.dubbo");
     }
 }
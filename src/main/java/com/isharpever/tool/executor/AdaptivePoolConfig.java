@@ -0,0 +1,101 @@
+package com.isharpever.tool.executor;
+
+/**
+ * 自适应线程池的配置
+ * <pre>
+ * ExecutorServiceUtil.buildAdaptiveExecutorService(
+ *         new AdaptivePoolConfig(4, 64).setQueueWaitThresholdMillis(20), "order-query-");
+ * </pre>
+ *
+ * @see AdaptivePoolController
+ */
+public class AdaptivePoolConfig {
+
+    /** 核心线程数下限,也是初始核心线程数 */
+    private final int minPoolSize;
+    /** 核心线程数上限 */
+    private final int maxPoolSize;
+    /** 排队耗时p99超过此值(且队列非空)时扩容 */
+    private long queueWaitThresholdMillis = 50;
+    /** 每次扩容增加当前核心线程数的百分比,至少增加1 */
+    private int growPercent = 25;
+    /** 连续空闲(队列为空且活动线程数不到核心线程数一半)多少秒后缩容 */
+    private int shrinkAfterSeconds = 30;
+    /** 扩容后吞吐量没有提升时,暂停扩容的秒数 */
+    private int cooldownSeconds = 10;
+    /** 超出核心线程数的空闲线程的存活时间(秒) */
+    private long keepAliveSeconds = 60;
+    /** 队列及拒绝策略 */
+    private QueueConfig queueConfig = QueueConfig.defaults();
+
+    public AdaptivePoolConfig(int minPoolSize, int maxPoolSize) {
+        if (minPoolSize <= 0 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException(
+                    "minPoolSize=" + minPoolSize + " maxPoolSize=" + maxPoolSize);
+        }
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public long getQueueWaitThresholdMillis() {
+        return queueWaitThresholdMillis;
+    }
+
+    public AdaptivePoolConfig setQueueWaitThresholdMillis(long queueWaitThresholdMillis) {
+        this.queueWaitThresholdMillis = queueWaitThresholdMillis;
+        return this;
+    }
+
+    public int getGrowPercent() {
+        return growPercent;
+    }
+
+    public AdaptivePoolConfig setGrowPercent(int growPercent) {
+        this.growPercent = growPercent;
+        return this;
+    }
+
+    public int getShrinkAfterSeconds() {
+        return shrinkAfterSeconds;
+    }
+
+    public AdaptivePoolConfig setShrinkAfterSeconds(int shrinkAfterSeconds) {
+        this.shrinkAfterSeconds = shrinkAfterSeconds;
+        return this;
+    }
+
+    public int getCooldownSeconds() {
+        return cooldownSeconds;
+    }
+
+    public AdaptivePoolConfig setCooldownSeconds(int cooldownSeconds) {
+        this.cooldownSeconds = cooldownSeconds;
+        return this;
+    }
+
+    public long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public AdaptivePoolConfig setKeepAliveSeconds(long keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+        return this;
+    }
+
+    public QueueConfig getQueueConfig() {
+        return queueConfig;
+    }
+
+    public AdaptivePoolConfig setQueueConfig(QueueConfig queueConfig) {
+        this.queueConfig = queueConfig;
+        return this;
+    }
+}
@@ -0,0 +1,129 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 自适应线程池的控制器: 每个统计周期(1秒)由{@link PoolStat}在监控调度线程上调用,
+ * 根据队列长度、排队耗时p99、完成任务数,在配置的上下限之间调整corePoolSize
+ * <li>扩容: 队列非空且排队耗时p99超过阈值,按比例增加核心线程数
+ * <li>扩容无效: 上次扩容后吞吐量(每秒完成任务数)没有提升,说明瓶颈不在线程数(如下游变慢),暂停扩容一段时间
+ * <li>缩容: 连续一段时间队列为空且活动线程数不到核心线程数的一半,减少核心线程数,多出的线程空闲keepAlive后退出
+ * <br>每次决策(grow/shrink/hold)输出一个监控数据点,measurement为isharpever.threadpool.adaptive
+ */
+class AdaptivePoolController {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolController.class);
+
+    private static final String MEASUREMENT = "isharpever.threadpool.adaptive";
+    /** 扩容后吞吐量至少提升此比例才认为扩容有效 */
+    private static final double MIN_THROUGHPUT_GAIN = 1.05;
+
+    private final ThreadPoolExecutor executor;
+    private final String poolName;
+    private final AdaptivePoolConfig config;
+    private final long queueWaitThresholdMicros;
+
+    /** 前一次的完成任务数,用于计算每周期完成任务数 */
+    private long previousCompletedTaskCount = -1;
+    /** 上次扩容前一个周期的完成任务数,大于等于0表示上个周期进行了扩容 */
+    private long throughputBeforeGrow = -1;
+    /** 剩余的暂停扩容周期数 */
+    private int cooldownTicks;
+    /** 连续空闲的周期数 */
+    private int idleTicks;
+
+    AdaptivePoolController(ThreadPoolExecutor executor, String poolName, AdaptivePoolConfig config) {
+        this.executor = executor;
+        this.poolName = poolName;
+        this.config = config;
+        this.queueWaitThresholdMicros = TimeUnit.MILLISECONDS.toMicros(config.getQueueWaitThresholdMillis());
+    }
+
+    /**
+     * 根据最近一个统计周期的数据调整核心线程数,只在监控调度线程上调用
+     *
+     * @param latency 本周期任务耗时分布
+     * @param activeCount 本周期活动线程数峰值
+     * @param queueSize 本周期队列长度峰值
+     * @param completedTaskCount 当前累计完成任务数
+     */
+    void adjust(PoolLatency latency, int activeCount, int queueSize, long completedTaskCount) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long throughput = previousCompletedTaskCount < 0 ? 0 : completedTaskCount - previousCompletedTaskCount;
+        previousCompletedTaskCount = completedTaskCount;
+
+        int corePoolSize = executor.getCorePoolSize();
+        long queueWaitP99 = latency.getQueueWait().getP99();
+        boolean congested = queueSize > 0 && queueWaitP99 >= queueWaitThresholdMicros;
+
+        if (congested) {
+            idleTicks = 0;
+            if (cooldownTicks > 0) {
+                cooldownTicks--;
+                throughputBeforeGrow = -1;
+                return;
+            }
+            if (throughputBeforeGrow >= 0 && throughput < throughputBeforeGrow * MIN_THROUGHPUT_GAIN) {
+                // 扩容后吞吐量没有提升,继续加线程只会增加下游压力
+                throughputBeforeGrow = -1;
+                cooldownTicks = config.getCooldownSeconds();
+                decide("hold", corePoolSize, corePoolSize, queueSize, queueWaitP99, throughput);
+                return;
+            }
+            if (corePoolSize >= config.getMaxPoolSize()) {
+                throughputBeforeGrow = -1;
+                return;
+            }
+            int step = Math.max(1, corePoolSize * config.getGrowPercent() / 100);
+            int target = Math.min(config.getMaxPoolSize(), corePoolSize + step);
+            executor.setCorePoolSize(target);
+            throughputBeforeGrow = throughput;
+            decide("grow", corePoolSize, target, queueSize, queueWaitP99, throughput);
+            return;
+        }
+
+        throughputBeforeGrow = -1;
+        if (cooldownTicks > 0) {
+            cooldownTicks--;
+        }
+        if (queueSize > 0 || activeCount * 2 >= corePoolSize || corePoolSize <= config.getMinPoolSize()) {
+            idleTicks = 0;
+            return;
+        }
+        if (++idleTicks < config.getShrinkAfterSeconds()) {
+            return;
+        }
+        idleTicks = 0;
+        int step = Math.max(1, corePoolSize / 4);
+        int target = Math.max(config.getMinPoolSize(), Math.max(activeCount + 1, corePoolSize - step));
+        if (target < corePoolSize) {
+            executor.setCorePoolSize(target);
+            decide("shrink", corePoolSize, target, queueSize, queueWaitP99, throughput);
+        }
+    }
+
+    private void decide(String action, int from, int to, int queueSize, long queueWaitP99, long throughput) {
+        logger.info("--- 自适应线程池调整 poolName={} action={} corePoolSize={}->{} queueSize={} queueWaitP99={}us throughput={}/s",
+                poolName, action, from, to, queueSize, queueWaitP99, throughput);
+        MetricsRegistry.write(MetricPoint
+                .monitorKey(MEASUREMENT)
+                .addTag("app", AppNameUtil.getAppName())
+                .addTag("ip", NetUtil.getLocalHostAddress())
+                .addTag("name", poolName)
+                .addTag("action", action)
+                .addField("from", from)
+                .addField("to", to)
+                .addField("queueSize", queueSize)
+                .addField("queueWaitP99", queueWaitP99)
+                .addField("throughput", throughput)
+                .build());
+    }
+}
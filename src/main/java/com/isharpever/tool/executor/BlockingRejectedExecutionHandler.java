@@ -0,0 +1,40 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队列满时阻塞提交线程,直到队列有空位或超时;超时或线程池已关闭时抛出RejectedExecutionException
+ */
+public class BlockingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    private final long timeoutMillis;
+
+    public BlockingRejectedExecutionHandler(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", executor is shutdown");
+        }
+        boolean offered;
+        try {
+            offered = executor.getQueue().offer(r, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", interrupted", e);
+        }
+        if (!offered) {
+            throw new RejectedExecutionException("Task " + r + " rejected from " + executor
+                    + ", queue still full after " + timeoutMillis + "ms");
+        }
+        // 阻塞期间线程池被关闭的话,任务可能永远不会执行,尝试移出并拒绝
+        if (executor.isShutdown() && executor.remove(r)) {
+            throw new RejectedExecutionException("Task " + r + " rejected from " + executor + ", executor is shutdown");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.isharpever.tool.executor;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 给无界阻塞队列(PriorityBlockingQueue/LinkedTransferQueue)加上容量上限: 入队前获取许可,出队后释放许可
+ * <br>size()由许可数计算,为O(1),避免LinkedTransferQueue.size()遍历整个队列(线程池监控在每次提交/执行任务时都会读取)
+ */
+class BoundedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final BlockingQueue<E> delegate;
+    private final int capacity;
+    private final Semaphore permits;
+
+    BoundedBlockingQueue(BlockingQueue<E> delegate, int capacity) {
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        return offerWithPermit(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (!permits.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        return offerWithPermit(e);
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        permits.acquire();
+        offerWithPermit(e);
+    }
+
+    private boolean offerWithPermit(E e) {
+        boolean offered = false;
+        try {
+            offered = delegate.offer(e);
+            return offered;
+        } finally {
+            if (!offered) {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        return released(delegate.poll());
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return released(delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return released(delegate.take());
+    }
+
+    private E released(E e) {
+        if (e != null) {
+            permits.release();
+        }
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (delegate.remove(o)) {
+            permits.release();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int drained = delegate.drainTo(c, maxElements);
+        if (drained > 0) {
+            permits.release(drained);
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        return capacity - permits.availablePermits();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> iterator = delegate.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = iterator.next();
+                return last;
+            }
+
+            /**
+             * PriorityBlockingQueue的迭代器基于快照,其remove不一定真正移除了元素,因此经由remove(Object)移除
+             */
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                BoundedBlockingQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return delegate.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return delegate.toArray(a);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -1,28 +1,17 @@
 package com.isharpever.tool.executor;
 
-import com.isharpever.tool.mdc.LogUniqueKeyUtil;
-import com.isharpever.tool.utils.AppNameUtil;
-import com.isharpever.tool.utils.NetUtil;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import org.apache.commons.lang3.ClassUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,19 +25,111 @@ public abstract class ExecutorServiceUtil {
         return buildExecutorService(maximumPoolSize, poolName, DEFAULT_MEASUREMENT);
     }
 
+    /**
+     * 返回固定线程数的线程池,队列及拒绝策略为{@link QueueConfig#defaults()}: 有界队列,队列满时由提交线程执行任务
+     */
     public static ExecutorService buildExecutorService(int maximumPoolSize, String poolName, String measurement) {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(maximumPoolSize, maximumPoolSize, 0L,
-                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
-                new DefaultNamedThreadFactory(poolName));
-        return buildExecutorService(executor, poolName, measurement);
+        return buildExecutorService(maximumPoolSize, poolName, measurement, QueueConfig.defaults());
+    }
+
+    /**
+     * 返回固定线程数的线程池,使用指定的队列及拒绝策略;被拒绝的任务数输出到监控(rejectedCount)
+     */
+    public static ExecutorService buildExecutorService(int maximumPoolSize, String poolName, String measurement,
+            QueueConfig queueConfig) {
+        return new InstrumentedThreadPoolExecutor(poolName, measurement, maximumPoolSize,
+                maximumPoolSize, 0L, TimeUnit.MILLISECONDS, queueConfig.newQueue(),
+                new DefaultNamedThreadFactory(poolName), queueConfig.newRejectedExecutionHandler());
+    }
+
+    public static ExecutorService buildAdaptiveExecutorService(int minPoolSize, int maxPoolSize, String poolName) {
+        return buildAdaptiveExecutorService(new AdaptivePoolConfig(minPoolSize, maxPoolSize), poolName);
+    }
+
+    public static ExecutorService buildAdaptiveExecutorService(AdaptivePoolConfig config, String poolName) {
+        return buildAdaptiveExecutorService(config, poolName, DEFAULT_MEASUREMENT);
+    }
+
+    /**
+     * 返回自适应线程池: 核心线程数从minPoolSize开始,由监控调度线程每秒根据队列长度、排队耗时、吞吐量
+     * 在[minPoolSize, maxPoolSize]之间调整,见{@link AdaptivePoolController}
+     */
+    public static ExecutorService buildAdaptiveExecutorService(AdaptivePoolConfig config, String poolName, String measurement) {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor(poolName, measurement,
+                config.getMinPoolSize(), config.getMaxPoolSize(), config.getKeepAliveSeconds(),
+                TimeUnit.SECONDS, config.getQueueConfig().newQueue(), new DefaultNamedThreadFactory(poolName),
+                config.getQueueConfig().newRejectedExecutionHandler());
+        executor.getPoolStat().setAdaptiveController(new AdaptivePoolController(executor, poolName, config));
+        return executor;
+    }
+
+    public static ExecutorService buildVirtualThreadExecutor(String poolName, int maxConcurrency) {
+        return buildVirtualThreadExecutor(poolName, maxConcurrency, DEFAULT_MEASUREMENT);
+    }
+
+    /**
+     * 返回基于虚拟线程的线程池,适用于阻塞IO类任务,无需调整线程数,并发数不超过maxConcurrency,见{@link VirtualThreadExecutor}
+     * <br>当前JDK不支持虚拟线程(JDK21以下)时,退化为线程数为maxConcurrency的普通线程池
+     */
+    public static ExecutorService buildVirtualThreadExecutor(String poolName, int maxConcurrency, String measurement) {
+        if (!VirtualThreadExecutor.isSupported()) {
+            logger.warn("--- 当前JDK不支持虚拟线程,使用普通线程池 poolName={} java.version={}",
+                    poolName, System.getProperty("java.version"));
+            return buildExecutorService(maxConcurrency, poolName, measurement);
+        }
+        return new VirtualThreadExecutor(poolName, measurement, maxConcurrency);
+    }
+
+    public static ExecutorService buildWorkStealingExecutor(int parallelism, String poolName) {
+        return buildWorkStealingExecutor(parallelism, poolName, DEFAULT_MEASUREMENT);
+    }
+
+    /**
+     * 返回工作窃取线程池(ForkJoinPool),适用于大量短小的CPU密集型任务,见{@link InstrumentedForkJoinPool}
+     *
+     * @param parallelism 并行度,一般为CPU核数
+     */
+    public static ExecutorService buildWorkStealingExecutor(int parallelism, String poolName, String measurement) {
+        return new InstrumentedForkJoinPool(poolName, measurement, parallelism);
+    }
+
+    public static FairQueuingExecutor buildFairExecutorService(int maximumPoolSize, String poolName) {
+        return buildFairExecutorService(maximumPoolSize, poolName, DEFAULT_MEASUREMENT,
+                QueueConfig.DEFAULT_CAPACITY, QueueConfig.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 返回按key公平调度的线程池,多个租户/业务线共用时各key分别排队、轮流执行,见{@link FairQueuingExecutor}
+     * <br>队列满(总任务数达到capacity或该key的任务数达到keyCapacity)时由提交线程执行任务
+     *
+     * @param capacity 队列总容量
+     * @param keyCapacity 每个key的队列容量,小于capacity时可防止单个key占满整个队列
+     */
+    public static FairQueuingExecutor buildFairExecutorService(int maximumPoolSize, String poolName,
+            String measurement, int capacity, int keyCapacity) {
+        return new FairQueuingExecutor(poolName, measurement, maximumPoolSize,
+                new FairBlockingQueue(capacity, keyCapacity), new DefaultNamedThreadFactory(poolName),
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     public static ExecutorService buildExecutorService(ThreadPoolExecutor executor, String poolName) {
         return buildExecutorService(executor, poolName, DEFAULT_MEASUREMENT);
     }
 
+    /**
+     * 返回带监控的线程池
+     * <br>executor若不是{@link InstrumentedThreadPoolExecutor},则返回包装executor的线程池: 经由返回值提交的任务在executor上执行并被监控,
+     * executor仍由调用方持有,关闭返回值或直接关闭executor效果相同
+     */
     public static ExecutorService buildExecutorService(ThreadPoolExecutor executor, String poolName, String measurement) {
-        return getProxy(executor, poolName, measurement);
+        if (executor instanceof InstrumentedThreadPoolExecutor
+                || executor instanceof InstrumentedScheduledExecutor) {
+            return executor;
+        }
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            return buildScheduledThreadPool((ScheduledThreadPoolExecutor) executor, poolName, measurement);
+        }
+        return new InstrumentedExecutorDelegate(executor, poolName, measurement);
     }
 
     public static ScheduledExecutorService buildScheduledThreadPool(int maximumPoolSize, String poolName) {
@@ -56,17 +137,70 @@ public abstract class ExecutorServiceUtil {
     }
 
     public static ScheduledExecutorService buildScheduledThreadPool(int maximumPoolSize, String poolName, String measurement) {
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(maximumPoolSize,
+        return new InstrumentedScheduledExecutor(poolName, measurement, maximumPoolSize,
                 new DefaultNamedThreadFactory(poolName));
-        return buildScheduledThreadPool(executor, poolName, measurement);
     }
 
     public static ScheduledExecutorService buildScheduledThreadPool(ScheduledThreadPoolExecutor executor, String poolName) {
         return buildScheduledThreadPool(executor, poolName, DEFAULT_MEASUREMENT);
     }
 
+    /**
+     * 返回带监控的定时线程池
+     * <br>executor若不是{@link InstrumentedScheduledExecutor},则返回包装executor的定时线程池,
+     * executor仍由调用方持有,见{@link #buildExecutorService(ThreadPoolExecutor, String, String)}
+     */
     public static ScheduledExecutorService buildScheduledThreadPool(ScheduledThreadPoolExecutor executor, String poolName, String measurement) {
-        return getProxy(executor, poolName, measurement);
+        if (executor instanceof InstrumentedScheduledExecutor) {
+            return executor;
+        }
+        return new InstrumentedScheduledExecutorDelegate(executor, poolName, measurement);
+    }
+
+    /**
+     * 批量并行调用: 把tasks提交到executor,在timeout内按完成顺序收集结果,到期仍未完成的任务被取消(cancel(true))
+     * <pre>
+     * FanOutResult&lt;Item&gt; result = ExecutorServiceUtil.invokeAllWithDeadline(executor, "queryItems", tasks,
+     *         200, TimeUnit.MILLISECONDS, FanOutMode.COLLECT_PARTIAL);
+     * </pre>
+     * 任务在执行线程上沿用提交线程的日志唯一key;每批的并行度、耗时、失败数、超时数输出到监控
+     *
+     * @param executor 线程池,不要求是本工具类构建的;队列满被拒绝的任务(包括拒绝策略为CallerRunsPolicy时)计为失败
+     * @param name 调用名,作为监控数据的name
+     * @param mode FAIL_FAST:任一任务失败抛出其ExecutionException、到期未全部完成抛出TimeoutException;
+     *             COLLECT_PARTIAL:不抛出这两种异常,失败/超时的任务记录在结果中
+     * @throws InterruptedException 等待期间被中断,此时未完成的任务均被取消
+     */
+    public static <T> FanOutResult<T> invokeAllWithDeadline(ExecutorService executor, String name,
+            Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit, FanOutMode mode)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return FanOut.invokeAll(executor, name, tasks, timeout, unit, mode);
+    }
+
+    /**
+     * 返回指定线程池最近一个统计周期(1秒)内任务排队耗时、执行耗时的p50/p99/p999等分布
+     *
+     * @param poolName 线程池名
+     * @return 线程池不存在或尚未完成第一个统计周期时返回null
+     */
+    public static PoolLatency getPoolLatency(String poolName) {
+        return PoolStat.getLatency(poolName);
+    }
+
+    /**
+     * 返回全部线程池最近一个统计周期(1秒)内任务排队耗时、执行耗时的分布
+     */
+    public static List<PoolLatency> getAllPoolLatency() {
+        return PoolStat.getAllLatency();
+    }
+
+    /**
+     * 在线程池监控调度线程(ThreadPoolStat-)上每秒执行一次指定任务,供其他监控组件复用同一调度线程
+     *
+     * @param task 任务,应快速完成
+     */
+    public static void scheduleStatTask(Runnable task) {
+        PoolStat.STAT_EXECUTOR.scheduleAtFixedRate(task, 1, 1, TimeUnit.SECONDS);
     }
 
     private static class DefaultNamedThreadFactory implements ThreadFactory {
@@ -93,389 +227,4 @@ public abstract class ExecutorServiceUtil {
             return t;
         }
     }
-
-    /**
-     * 返回代理线程池对象
-     * @param executor
-     * @param name
-     * @param measurement
-     * @return
-     */
-    private static <T> T getProxy(final ThreadPoolExecutor executor, String name, String measurement) {
-        CustomeInvocationHandler customeInvocationHandler = new CustomeInvocationHandler(executor, name, measurement);
-
-        List<Class<?>> interfaceList = ClassUtils.getAllInterfaces(executor.getClass());
-        Class[] interfaces = new Class[interfaceList.size()];
-        interfaceList.toArray(interfaces);
-
-        return (T) Proxy.newProxyInstance(
-                Thread.currentThread().getContextClassLoader(), interfaces,
-                customeInvocationHandler);
-    }
-
-    /**
-     * 代理处理: <li>1.异常日志 <li>2.监控
-     */
-    private static class CustomeInvocationHandler implements InvocationHandler {
-        private static final ScheduledExecutorService executorService = ExecutorServiceUtil
-                .buildScheduledThreadPool(1, "ThreadPoolStat-");
-        private static final ConcurrentHashMap<String, PoolStat> POOL_STAT_REGISTRY = new ConcurrentHashMap<>(8);
-
-        /**
-         * 被代理方法:提交任务
-         */
-        private static final List<String> METHOD_NAME_SUBMIT = new ArrayList<>(8);
-
-        static {
-            METHOD_NAME_SUBMIT.add("submit");
-            METHOD_NAME_SUBMIT.add("execute");
-            METHOD_NAME_SUBMIT.add("schedule");
-            METHOD_NAME_SUBMIT.add("scheduleAtFixedRate");
-            METHOD_NAME_SUBMIT.add("scheduleWithFixedDelay");
-
-            /*
-             * 把各线程池状态输出到监控日志,并清零,每秒执行一次
-             */
-            executorService.scheduleAtFixedRate(() -> {
-                POOL_STAT_REGISTRY.values().forEach(poolStat -> {
-                    if (poolStat == null) {
-                        return;
-                    }
-                    poolStat.writePoint();
-                });
-            }, 1, 1, TimeUnit.SECONDS);
-        }
-
-        private ThreadPoolExecutor threadPoolExecutor;
-        private String threadPoolName;
-        private String measurement;
-
-        private CustomeInvocationHandler(ThreadPoolExecutor threadPoolExecutor,
-                String threadPoolName, String measurement) {
-            this.threadPoolExecutor = threadPoolExecutor;
-            this.threadPoolName = threadPoolName;
-            this.measurement = measurement;
-        }
-
-        @Override
-        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            // 线程池监控
-            this.recordPoolStat();
-
-            if (METHOD_NAME_SUBMIT.contains(method.getName())) {
-                final String logKey = LogUniqueKeyUtil.getKeyFromLog();
-
-                final Object arg0 = args[0];
-                if (arg0 instanceof Runnable) {
-                    args[0] = (Runnable) () -> {
-                        LogUniqueKeyUtil.generateKeyToLog(logKey);
-                        final Runnable task = (Runnable) arg0;
-                        try {
-                            task.run();
-                            if (task instanceof Future<?>) {
-                                final Future<?> future = (Future<?>) task;
-
-                                if (future.isDone()) {
-                                    try {
-                                        future.get();
-                                    } catch (final CancellationException | ExecutionException ce) {
-                                        logger.error(String.format("Thread:%s catch exception.",
-                                                Thread.currentThread().getName()), ce);
-                                    } catch (final InterruptedException ie) {
-                                        Thread.currentThread().interrupt();
-                                    }
-                                }
-                            }
-                        } catch (final RuntimeException re) {
-                            logger.error(String.format("Thread:%s catch exception.",
-                                    Thread.currentThread().getName()), re);
-                        } catch (final Error e) {
-                            logger.error(String.format("Thread:%s catch error.",
-                                    Thread.currentThread().getName()), e);
-                            throw e;
-                        } finally {
-                            // 线程池监控
-                            this.recordPoolStat();
-                        }
-                    };
-                } else if (arg0 instanceof Callable<?>) {
-                    args[0] = (Callable<Object>) () -> {
-                        LogUniqueKeyUtil.generateKeyToLog(logKey);
-                        final Callable<?> task = (Callable<?>) arg0;
-                        try {
-                            return task.call();
-                        } catch (final Exception e) {
-                            logger.error(String.format("Thread:%s catch exception.",
-                                    Thread.currentThread().getName()), e);
-                            throw e;
-                        } catch (final Error e) {
-                            logger.error(String.format("Thread:%s catch error.",
-                                    Thread.currentThread().getName()), e);
-                            throw e;
-                        } finally {
-                            // 线程池监控
-                            this.recordPoolStat();
-                        }
-                    };
-                }
-            }
-            return method.invoke(threadPoolExecutor, args);
-        }
-
-        /**
-         * 获取线程池的状态值,如果比当前值更大则更新当前值<br>
-         * 执行的时机为:(a)向线程池提交任务时 (b)任务执行结束时
-         */
-        private void recordPoolStat() {
-            PoolStat poolStat = this.getPoolStat(this.threadPoolName, this.threadPoolExecutor, this.measurement);
-            poolStat.updateNow();
-        }
-
-        private PoolStat getPoolStat(String poolName, ThreadPoolExecutor executor, String measurement) {
-            PoolStat poolStat = POOL_STAT_REGISTRY.get(poolName);
-            if (poolStat == null) {
-                POOL_STAT_REGISTRY.putIfAbsent(poolName, new PoolStat(poolName, executor, measurement));
-                poolStat = POOL_STAT_REGISTRY.get(poolName);
-            }
-            return poolStat;
-        }
-    }
-
-    private static class PoolStat {
-//        private static final MonitorUtil monitor = MonitorFactory.connect();
-
-        private ThreadPoolExecutor executor;
-        private String poolName;
-        private String measurement;
-        /** 核心线程数 */
-        private AtomicInteger corePoolSize;
-        /** 最大线程数 */
-        private AtomicInteger maximumPoolSize;
-        /** 当前线程数 */
-        private AtomicInteger poolSize;
-        /** 最大线程数 */
-        private AtomicInteger largestPoolSize;
-        /** 活动线程数 */
-        private AtomicInteger activeCount;
-        /** 完成的任务数 */
-        private AtomicLong completedTaskCount;
-        /** 完成的任务数+正在执行的任务数 */
-        private AtomicLong taskCount;
-        /** 等待执行的任务数 */
-        private AtomicInteger queueSize;
-
-        /** 前一次收集的值:核心线程数 */
-        private int previousCorePoolSize;
-        /** 前一次收集的值:最大线程数 */
-        private int previousMaximumPoolSize;
-        /** 前一次收集的值:当前线程数 */
-        private int previousPoolSize;
-        /** 前一次收集的值:最大线程数 */
-        private int previousLargestPoolSize;
-        /** 前一次收集的值:活动线程数 */
-        private int previousActiveCount;
-        /** 前一次收集的值:完成的任务数 */
-        private long previousCompletedTaskCount;
-        /** 前一次收集的值:完成的任务数+正在执行的任务数 */
-        private long previousTaskCount;
-        /** 前一次收集的值:等待执行的任务数 */
-        private int previousQueueSize;
-
-        private PoolStat(String poolName, ThreadPoolExecutor executor, String measurement) {
-            this.executor = executor;
-            this.poolName = poolName;
-            this.measurement = measurement;
-            this.corePoolSize = new AtomicInteger(0);
-            this.maximumPoolSize = new AtomicInteger(0);
-            this.poolSize = new AtomicInteger(0);
-            this.largestPoolSize = new AtomicInteger(0);
-            this.activeCount = new AtomicInteger(0);
-            this.completedTaskCount = new AtomicLong(0);
-            this.taskCount = new AtomicLong(0);
-            this.queueSize = new AtomicInteger(0);
-        }
-
-        /**
-         * 只在值变大的时候更新,因此收集当前值后需要清零(getAndClearXxx),否则值只会变大不会变小<br>
-         * 没有采取"凡是在值发生变化时都更新"这样策略的原因是:值是每隔一段时间收集一次的,希望收集的值能体现出这段时间内的高峰
-         */
-        private void updateNow() {
-            updCorePoolSizeIfLarger(executor.getCorePoolSize());
-            updMaximumPoolSizeIfLarger(executor.getMaximumPoolSize());
-            updPoolSizeIfLarger(executor.getPoolSize());
-            updLargestPoolSizeIfLarger(executor.getLargestPoolSize());
-            updActiveCountIfLarger(executor.getActiveCount());
-            updCompletedTaskCountIfLarger(executor.getCompletedTaskCount());
-            updTaskCountIfLarger(executor.getTaskCount());
-            updQueueSizeIfLarger(executor.getQueue().size());
-        }
-
-        private void updCorePoolSizeIfLarger(int corePoolSize) {
-            int current = this.corePoolSize.get();
-            while (corePoolSize > current) {
-                if (this.corePoolSize.compareAndSet(current, corePoolSize)) {
-                    return;
-                }
-                current = this.corePoolSize.get();
-            }
-        }
-
-        private void updMaximumPoolSizeIfLarger(int maximumPoolSize) {
-            int current = this.maximumPoolSize.get();
-            while (maximumPoolSize > current) {
-                if (this.maximumPoolSize.compareAndSet(current, maximumPoolSize)) {
-                    return;
-                }
-                current = this.maximumPoolSize.get();
-            }
-        }
-
-        private void updPoolSizeIfLarger(int poolSize) {
-            int current = this.poolSize.get();
-            while (poolSize > current) {
-                if (this.poolSize.compareAndSet(current, poolSize)) {
-                    return;
-                }
-                current = this.poolSize.get();
-            }
-        }
-
-        private void updLargestPoolSizeIfLarger(int largestPoolSize) {
-            int current = this.largestPoolSize.get();
-            while (largestPoolSize > current) {
-                if (this.largestPoolSize.compareAndSet(current, largestPoolSize)) {
-                    return;
-                }
-                current = this.largestPoolSize.get();
-            }
-        }
-
-        private void updActiveCountIfLarger(int activeCount) {
-            int current = this.activeCount.get();
-            while (activeCount > current) {
-                if (this.activeCount.compareAndSet(current, activeCount)) {
-                    return;
-                }
-                current = this.activeCount.get();
-            }
-        }
-
-        private void updCompletedTaskCountIfLarger(long completedTaskCount) {
-            long current = this.completedTaskCount.get();
-            while (completedTaskCount > current) {
-                if (this.completedTaskCount.compareAndSet(current, completedTaskCount)) {
-                    return;
-                }
-                current = this.completedTaskCount.get();
-            }
-        }
-
-        private void updTaskCountIfLarger(long taskCount) {
-            long current = this.taskCount.get();
-            while (taskCount > current) {
-                if (this.taskCount.compareAndSet(current, taskCount)) {
-                    return;
-                }
-                current = this.taskCount.get();
-            }
-        }
-
-        private void updQueueSizeIfLarger(int queueSize) {
-            int current = this.queueSize.get();
-            while (queueSize > current) {
-                if (this.queueSize.compareAndSet(current, queueSize)) {
-                    return;
-                }
-                current = this.queueSize.get();
-            }
-        }
-
-        public int getAndClearCorePoolSize() {
-            return corePoolSize.getAndSet(0);
-        }
-
-        public int getAndClearMaximumPoolSize() {
-            return maximumPoolSize.getAndSet(0);
-        }
-
-        public int getAndClearPoolSize() {
-            return poolSize.getAndSet(0);
-        }
-
-        public int getAndClearLargestPoolSize() {
-            return largestPoolSize.getAndSet(0);
-        }
-
-        public int getAndClearActiveCount() {
-            return activeCount.getAndSet(0);
-        }
-
-        public long getAndClearCompletedTaskCount() {
-            return completedTaskCount.getAndSet(0);
-        }
-
-        public long getAndClearTaskCount() {
-            return taskCount.getAndSet(0);
-        }
-
-        public int getAndClearQueueSize() {
-            return queueSize.getAndSet(0);
-        }
-
-        /**
-         * 输出监控日志
-         */
-        private void writePoint() {
-            // 为保证监控结果的相对实时性,在输出监控日志之前再次获取并记录线程池的状态值
-            updateNow();
-
-            // 获取并清零当前状态值
-            int corePoolSize = getAndClearCorePoolSize();
-            int maximumPoolSize = getAndClearMaximumPoolSize();
-            int poolSize = getAndClearPoolSize();
-            int largestPoolSize = getAndClearLargestPoolSize();
-            int activeCount = getAndClearActiveCount();
-            long completedTaskCount = getAndClearCompletedTaskCount();
-            long taskCount = getAndClearTaskCount();
-            int queueSize = getAndClearQueueSize();
-
-            // 从上次获取并记录后没有发生变化的话,没必要输出监控日志
-            if (corePoolSize == previousCorePoolSize
-                    && maximumPoolSize == previousMaximumPoolSize
-                    && poolSize == previousPoolSize
-                    && largestPoolSize == previousLargestPoolSize
-                    && activeCount == previousActiveCount
-                    // 这两项即使变化,也没啥必要实时输出到监控
-//                    && completedTaskCount == previousCompletedTaskCount
-//                    && taskCount == previousTaskCount
-                    && queueSize == previousQueueSize) {
-                return;
-            }
-
-//            MonitorPoint point = MonitorPoint
-//                    .monitorKey(this.measurement)
-//                    .addTag("app", AppNameUtil.getAppName())
-//                    .addTag("ip", NetUtil.getLocalHostAddress())
-//                    .addTag("name", this.poolName)
-//                    .addField("corePoolSize", corePoolSize)
-//                    .addField("maximumPoolSize", maximumPoolSize)
-//                    .addField("poolSize", poolSize)
-//                    .addField("largestPoolSize", largestPoolSize)
-//                    .addField("activeCount", activeCount)
-//                    .addField("completedTaskCount", completedTaskCount)
-//                    .addField("taskCount", taskCount)
-//                    .addField("queueSize", queueSize)
-//                    .build();
-//            monitor.writePoint(point);
-
-            this.previousCorePoolSize = corePoolSize;
-            this.previousMaximumPoolSize = maximumPoolSize;
-            this.previousPoolSize = poolSize;
-            this.previousLargestPoolSize = largestPoolSize;
-            this.previousActiveCount = activeCount;
-            this.previousCompletedTaskCount = completedTaskCount;
-            this.previousTaskCount = taskCount;
-            this.previousQueueSize = queueSize;
-        }
-    }
 }
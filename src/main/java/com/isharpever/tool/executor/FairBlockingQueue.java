@@ -0,0 +1,421 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 公平队列: 按任务的key(租户/业务线)分成多个子队列,以加权轮询(deficit round robin)的方式出队,
+ * 某个key的突发流量只会在自己的子队列中排队,不会让其他key的任务一直等待
+ * <li>每轮中每个子队列最多连续出队weight个任务,weight默认为1
+ * <li>总容量及每个key的容量均有上限,超出时入队失败,由线程池的拒绝策略处理
+ * <li>key数量有上限,超出后新的key归入{@link #OVERFLOW_KEY}
+ * <br>每个统计周期输出每个key的队列长度峰值及排队耗时,measurement为isharpever.threadpool.fair
+ *
+ * @see FairQueuingExecutor
+ */
+class FairBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final String MEASUREMENT = "isharpever.threadpool.fair";
+    /** 未指定key的任务归入的key */
+    static final String DEFAULT_KEY = "default";
+    /** key数量达到上限后,新的key归入的key */
+    static final String OVERFLOW_KEY = "overflow";
+    /** key数量上限 */
+    private static final int MAX_KEYS = 1024;
+    /** 子队列连续多少个统计周期无任务后被移除 */
+    private static final int IDLE_TICKS = 300;
+
+    private final int capacity;
+    private final int keyCapacity;
+    private final Map<String, Integer> weights = new ConcurrentHashMap<>(8);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /** 以下字段只在持有lock时访问 */
+    private final Map<String, SubQueue> subQueues = new HashMap<>(16);
+    /** 非空子队列的轮询顺序,队首为当前出队的子队列 */
+    private final ArrayDeque<SubQueue> ring = new ArrayDeque<>(16);
+    private int count;
+
+    FairBlockingQueue(int capacity, int keyCapacity) {
+        if (capacity <= 0 || keyCapacity <= 0) {
+            throw new IllegalArgumentException("capacity=" + capacity + " keyCapacity=" + keyCapacity);
+        }
+        this.capacity = capacity;
+        this.keyCapacity = keyCapacity;
+    }
+
+    void setWeight(String key, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight=" + weight);
+        }
+        weights.put(key, weight);
+    }
+
+    private int weightOf(String key) {
+        Integer weight = weights.get(key);
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * 取得任务的key: 经MdcTaskWrapper包装的{@link FairQueuingExecutor.KeyedTask}
+     */
+    private static String keyOf(Runnable r) {
+        Runnable task = r instanceof MdcTaskWrapper.MdcRunnable ? ((MdcTaskWrapper.MdcRunnable) r).getTask() : r;
+        return task instanceof FairQueuingExecutor.KeyedTask ? ((FairQueuingExecutor.KeyedTask) task).getKey() : DEFAULT_KEY;
+    }
+
+    private SubQueue subQueueOf(String key) {
+        SubQueue subQueue = subQueues.get(key);
+        if (subQueue == null) {
+            if (subQueues.size() >= MAX_KEYS) {
+                key = OVERFLOW_KEY;
+                subQueue = subQueues.get(key);
+            }
+            if (subQueue == null) {
+                subQueue = new SubQueue(key);
+                subQueues.put(key, subQueue);
+            }
+        }
+        return subQueue;
+    }
+
+    /**
+     * 持有lock时调用
+     */
+    private boolean enqueue(Runnable r, SubQueue subQueue) {
+        if (count >= capacity || subQueue.tasks.size() >= keyCapacity) {
+            return false;
+        }
+        if (subQueue.tasks.isEmpty()) {
+            subQueue.credit = weightOf(subQueue.key);
+            ring.addLast(subQueue);
+        }
+        subQueue.tasks.addLast(r);
+        subQueue.maxDepth = Math.max(subQueue.maxDepth, subQueue.tasks.size());
+        count++;
+        notEmpty.signal();
+        return true;
+    }
+
+    /**
+     * 持有lock时调用
+     */
+    private Runnable dequeue() {
+        SubQueue subQueue = ring.peekFirst();
+        if (subQueue == null) {
+            return null;
+        }
+        Runnable r = subQueue.tasks.pollFirst();
+        if (subQueue.tasks.isEmpty()) {
+            ring.pollFirst();
+        } else if (--subQueue.credit <= 0) {
+            // 本轮额度用完,轮到下一个子队列
+            ring.addLast(ring.pollFirst());
+            subQueue.credit = weightOf(subQueue.key);
+        }
+        count--;
+        subQueue.recordWait(r);
+        notFull.signal();
+        return r;
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        String key = keyOf(r);
+        lock.lock();
+        try {
+            return enqueue(r, subQueueOf(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        String key = keyOf(r);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            SubQueue subQueue = subQueueOf(key);
+            while (!enqueue(r, subQueue)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) throws InterruptedException {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        String key = keyOf(r);
+        lock.lockInterruptibly();
+        try {
+            SubQueue subQueue = subQueueOf(key);
+            while (!enqueue(r, subQueue)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            SubQueue subQueue = ring.peekFirst();
+            return subQueue == null ? null : subQueue.tasks.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Runnable)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            SubQueue subQueue = subQueues.get(keyOf((Runnable) o));
+            if (subQueue == null || !subQueue.tasks.remove(o)) {
+                // key超出上限时任务在OVERFLOW_KEY中
+                subQueue = subQueues.get(OVERFLOW_KEY);
+                if (subQueue == null || !subQueue.tasks.remove(o)) {
+                    return false;
+                }
+            }
+            if (subQueue.tasks.isEmpty()) {
+                ring.remove(subQueue);
+            }
+            count--;
+            notFull.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回快照的迭代器,其remove经由{@link #remove(Object)}移除
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(count);
+            for (SubQueue subQueue : ring) {
+                snapshot.addAll(subQueue.tasks);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> iterator = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                FairBlockingQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * 输出每个key本统计周期的队列长度峰值及排队耗时,并移除长期空闲的子队列,由监控调度线程调用
+     */
+    void writePoints(String poolName) {
+        List<MetricPoint> points = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<SubQueue> iterator = subQueues.values().iterator();
+            while (iterator.hasNext()) {
+                SubQueue subQueue = iterator.next();
+                if (subQueue.maxDepth == 0 && subQueue.waitCount == 0) {
+                    if (subQueue.tasks.isEmpty() && ++subQueue.idleTicks > IDLE_TICKS) {
+                        iterator.remove();
+                    }
+                    continue;
+                }
+                subQueue.idleTicks = 0;
+                points.add(MetricPoint
+                        .monitorKey(MEASUREMENT)
+                        .addTag("app", AppNameUtil.getAppName())
+                        .addTag("ip", NetUtil.getLocalHostAddress())
+                        .addTag("name", poolName)
+                        .addTag("key", subQueue.key)
+                        .addField("queueSize", subQueue.tasks.size())
+                        .addField("maxQueueSize", subQueue.maxDepth)
+                        .addField("queueWaitCount", subQueue.waitCount)
+                        .addField("queueWaitSum", subQueue.waitSumMicros)
+                        .addField("queueWaitMax", subQueue.waitMaxMicros)
+                        .build());
+                subQueue.maxDepth = subQueue.tasks.size();
+                subQueue.waitCount = 0;
+                subQueue.waitSumMicros = 0;
+                subQueue.waitMaxMicros = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+        points.forEach(MetricsRegistry::write);
+    }
+
+    /**
+     * 某个key的子队列及其统计值,只在持有lock时访问
+     */
+    private static class SubQueue {
+        private final String key;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        /** 本轮剩余可连续出队的任务数 */
+        private int credit;
+        /** 本统计周期的队列长度峰值 */
+        private int maxDepth;
+        /** 本统计周期出队的任务数及排队耗时(微秒) */
+        private long waitCount;
+        private long waitSumMicros;
+        private long waitMaxMicros;
+        private int idleTicks;
+
+        private SubQueue(String key) {
+            this.key = key;
+        }
+
+        private void recordWait(Runnable r) {
+            if (!(r instanceof MdcTaskWrapper.MdcRunnable)) {
+                return;
+            }
+            long waitMicros = TimeUnit.NANOSECONDS.toMicros(
+                    System.nanoTime() - ((MdcTaskWrapper.MdcRunnable) r).submitNanos);
+            waitCount++;
+            waitSumMicros += waitMicros;
+            waitMaxMicros = Math.max(waitMaxMicros, waitMicros);
+        }
+    }
+}
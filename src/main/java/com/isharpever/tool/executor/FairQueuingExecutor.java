@@ -0,0 +1,118 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按key公平调度的线程池: 多个租户/业务线共用一个线程池时,按提交时指定的key分别排队,
+ * 以加权轮询的方式取任务执行,某个key的突发流量不会让其他key的任务长时间排队,见{@link FairBlockingQueue}
+ * <pre>
+ * FairQueuingExecutor executor = ExecutorServiceUtil.buildFairExecutorService(16, "report-export-");
+ * executor.setWeight("vip", 3);
+ * executor.submit(tenantId, () -&gt; export(tenantId));
+ * </pre>
+ * 未指定key提交的任务(execute(Runnable)/submit(Callable)等)归入{@link FairBlockingQueue#DEFAULT_KEY}
+ * <br>除通用监控字段外,每个key输出一条监控数据(measurement为isharpever.threadpool.fair,tag key):
+ * 当前队列长度queueSize、本周期队列长度峰值maxQueueSize、出队任务数queueWaitCount、
+ * 排队耗时之和queueWaitSum及最大值queueWaitMax(微秒)
+ */
+public class FairQueuingExecutor extends InstrumentedThreadPoolExecutor {
+
+    private final FairBlockingQueue fairQueue;
+
+    FairQueuingExecutor(String poolName, String measurement, int poolSize, FairBlockingQueue workQueue,
+            ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(poolName, measurement, poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, workQueue, threadFactory,
+                handler);
+        this.fairQueue = workQueue;
+    }
+
+    /**
+     * 设置key的权重: 每轮中该key最多连续执行weight个任务,默认为1
+     */
+    public void setWeight(String key, int weight) {
+        fairQueue.setWeight(key, weight);
+    }
+
+    public void execute(String key, Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        execute(new KeyedRunnable(key, command));
+    }
+
+    public Future<?> submit(String key, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        KeyedFutureTask<Void> future = new KeyedFutureTask<>(key, task, null);
+        execute(future);
+        return future;
+    }
+
+    public <T> Future<T> submit(String key, Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        KeyedFutureTask<T> future = new KeyedFutureTask<>(key, task);
+        execute(future);
+        return future;
+    }
+
+    private static String keyOrDefault(String key) {
+        return key == null ? FairBlockingQueue.DEFAULT_KEY : key;
+    }
+
+    /**
+     * 带key的任务,由{@link FairBlockingQueue}据此入队
+     */
+    interface KeyedTask {
+        String getKey();
+    }
+
+    private static class KeyedRunnable implements Runnable, KeyedTask {
+        private final String key;
+        private final Runnable task;
+
+        private KeyedRunnable(String key, Runnable task) {
+            this.key = keyOrDefault(key);
+            this.task = task;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * submit提交的任务仍是Future,MdcRunnable据此记录任务的异常日志
+     */
+    private static class KeyedFutureTask<V> extends FutureTask<V> implements KeyedTask {
+        private final String key;
+
+        private KeyedFutureTask(String key, Callable<V> callable) {
+            super(callable);
+            this.key = keyOrDefault(key);
+        }
+
+        private KeyedFutureTask(String key, Runnable runnable, V result) {
+            super(runnable, result);
+            this.key = keyOrDefault(key);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+}
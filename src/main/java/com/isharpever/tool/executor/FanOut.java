@@ -0,0 +1,163 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.MetricSeries;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 批量并行调用: 提交一批任务,在截止时间内按完成顺序收集结果,截止时仍未完成的任务被取消
+ * <br>每批输出一次监控数据(measurement为isharpever.executor.fanout):
+ * 并行度width、整批耗时cost(毫秒,取决于最慢的任务,即尾延迟)、失败数failed、超时数timedOut
+ * <br>任务不会在提交线程上执行: 拒绝策略为CallerRunsPolicy的线程池队列满时,该任务视为被拒绝
+ */
+final class FanOut {
+
+    private static final String MEASUREMENT = "isharpever.executor.fanout";
+
+    private FanOut() {
+    }
+
+    static <T> FanOutResult<T> invokeAll(ExecutorService executor, String name,
+            Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit, FanOutMode mode)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean wrap = !isInstrumented(executor);
+        Thread caller = Thread.currentThread();
+
+        int size = tasks.size();
+        FanOutResult<T> result = new FanOutResult<>(size);
+        ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>(size);
+        Map<Future<T>, Integer> indexes = new IdentityHashMap<>(size * 2);
+        int completed = 0;
+        try {
+            // 提交
+            for (Callable<T> task : tasks) {
+                int index = futures.size();
+                try {
+                    CallerRunsGuard<T> guarded = new CallerRunsGuard<>(wrap ? MdcTaskWrapper.wrap(task) : task, caller);
+                    Future<T> future = completionService.submit(guarded);
+                    if (guarded.rejected) {
+                        // 队列满时拒绝策略(如CallerRunsPolicy)在提交线程上执行了任务,不等待其执行,视为被拒绝
+                        throw new RejectedExecutionException(name + " task " + index
+                                + " rejected, executor would run it on the caller thread");
+                    }
+                    indexes.put(future, index);
+                    futures.add(future);
+                } catch (RejectedExecutionException e) {
+                    if (mode == FanOutMode.FAIL_FAST) {
+                        throw e;
+                    }
+                    futures.add(null);
+                    result.failed(index, e);
+                    completed++;
+                }
+            }
+
+            // 按完成顺序收集
+            while (completed < size) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                Future<T> future = completionService.poll(remaining, TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    break;
+                }
+                Integer index = indexes.get(future);
+                if (index == null) {
+                    // 在提交线程上被拒绝的任务,已计入失败
+                    continue;
+                }
+                completed++;
+                try {
+                    result.success(index, future.get());
+                } catch (ExecutionException e) {
+                    result.failed(index, e.getCause());
+                    if (mode == FanOutMode.FAIL_FAST) {
+                        throw e;
+                    }
+                }
+            }
+
+            // 截止时间已到,未完成的任务计为超时
+            for (int i = 0; i < size; i++) {
+                if (result.getState(i) == FanOutResult.PENDING) {
+                    result.timedOut(i);
+                }
+            }
+            if (mode == FanOutMode.FAIL_FAST && completed < size) {
+                throw new TimeoutException(name + " " + (size - completed) + "/" + size
+                        + " tasks not completed in " + unit.toMillis(timeout) + "ms");
+            }
+            return result;
+        } finally {
+            // 取消未完成的任务(正常返回、抛出异常、被中断)
+            for (Future<T> future : futures) {
+                if (future != null && !future.isDone()) {
+                    future.cancel(true);
+                }
+            }
+            long cost = System.currentTimeMillis() - startTime;
+            result.setElapsedMillis(cost);
+            MetricSeries series = MetricsRegistry.series(MEASUREMENT,
+                    "app", AppNameUtil.getAppName(),
+                    "ip", NetUtil.getLocalHostAddress(),
+                    "name", name);
+            series.record("width", size);
+            series.record("cost", cost);
+            series.record("failed", result.getFailedCount());
+            series.record("timedOut", result.getTimedOutCount());
+        }
+    }
+
+    /**
+     * 在提交线程上被调用时(拒绝策略为CallerRunsPolicy且队列已满,或executor直接在提交线程执行任务)不执行任务,
+     * 避免提交阶段被单个任务阻塞而无视截止时间
+     */
+    private static final class CallerRunsGuard<T> implements Callable<T> {
+        private final Callable<T> task;
+        private final Thread caller;
+        private boolean rejected;
+
+        private CallerRunsGuard(Callable<T> task, Thread caller) {
+            this.task = task;
+            this.caller = caller;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (Thread.currentThread() == caller) {
+                rejected = true;
+                throw new RejectedExecutionException("caller runs");
+            }
+            return task.call();
+        }
+    }
+
+    /**
+     * 本工具类构建的线程池会自行传递日志唯一key、记录异常日志,无需再包装任务
+     */
+    private static boolean isInstrumented(ExecutorService executor) {
+        return executor instanceof InstrumentedThreadPoolExecutor
+                || executor instanceof InstrumentedExecutorDelegate
+                || executor instanceof InstrumentedScheduledExecutor
+                || executor instanceof InstrumentedForkJoinPool
+                || executor instanceof VirtualThreadExecutor;
+    }
+}
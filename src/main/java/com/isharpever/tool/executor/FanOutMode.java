@@ -0,0 +1,11 @@
+package com.isharpever.tool.executor;
+
+/**
+ * 批量并行调用({@link ExecutorServiceUtil#invokeAllWithDeadline})的失败处理方式
+ */
+public enum FanOutMode {
+    /** 任一任务失败或超时,立即取消其余任务并抛出异常 */
+    FAIL_FAST,
+    /** 失败或超时的任务记录在结果中,返回已完成的部分结果 */
+    COLLECT_PARTIAL
+}
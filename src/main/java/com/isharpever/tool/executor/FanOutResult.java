@@ -0,0 +1,125 @@
+package com.isharpever.tool.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量并行调用的结果,按提交顺序保存每个任务的结果/异常/状态
+ *
+ * @see ExecutorServiceUtil#invokeAllWithDeadline
+ */
+public class FanOutResult<T> {
+
+    static final byte PENDING = 0;
+    static final byte SUCCESS = 1;
+    static final byte FAILED = 2;
+    static final byte TIMED_OUT = 3;
+
+    private final Object[] values;
+    private final Throwable[] errors;
+    private final byte[] states;
+    private long elapsedMillis;
+
+    FanOutResult(int size) {
+        this.values = new Object[size];
+        this.errors = new Throwable[size];
+        this.states = new byte[size];
+    }
+
+    void success(int index, T value) {
+        values[index] = value;
+        states[index] = SUCCESS;
+    }
+
+    void failed(int index, Throwable error) {
+        errors[index] = error;
+        states[index] = FAILED;
+    }
+
+    void timedOut(int index) {
+        states[index] = TIMED_OUT;
+    }
+
+    byte getState(int index) {
+        return states[index];
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * 返回第index个任务的结果,任务失败或超时时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public T getValue(int index) {
+        return (T) values[index];
+    }
+
+    /**
+     * 返回全部任务的结果(按提交顺序),失败或超时的任务对应null
+     */
+    public List<T> getValues() {
+        List<T> result = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            result.add(getValue(i));
+        }
+        return result;
+    }
+
+    /**
+     * 返回第index个任务抛出的异常,任务成功或超时时返回null
+     */
+    public Throwable getError(int index) {
+        return errors[index];
+    }
+
+    public boolean isSuccess(int index) {
+        return states[index] == SUCCESS;
+    }
+
+    public boolean isTimedOut(int index) {
+        return states[index] == TIMED_OUT;
+    }
+
+    public boolean isAllSuccess() {
+        return getSuccessCount() == states.length;
+    }
+
+    public int getSuccessCount() {
+        return count(SUCCESS);
+    }
+
+    public int getFailedCount() {
+        return count(FAILED);
+    }
+
+    public int getTimedOutCount() {
+        return count(TIMED_OUT);
+    }
+
+    /** 从提交到返回的耗时 */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    private int count(byte state) {
+        int count = 0;
+        for (byte s : states) {
+            if (s == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "FanOutResult[size=" + size() + ", success=" + getSuccessCount() + ", failed=" + getFailedCount()
+                + ", timedOut=" + getTimedOutCount() + ", elapsedMillis=" + elapsedMillis + "]";
+    }
+}
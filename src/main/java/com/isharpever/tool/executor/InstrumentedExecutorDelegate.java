@@ -0,0 +1,132 @@
+package com.isharpever.tool.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 为调用方自行创建的ThreadPoolExecutor增加监控: <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.监控
+ * <br>经由本对象提交的任务在executor上执行,executor仍由调用方持有,关闭本对象或直接关闭executor效果相同;
+ * 直接提交到executor的任务不被监控
+ */
+class InstrumentedExecutorDelegate extends AbstractExecutorService {
+
+    final ThreadPoolExecutor executor;
+    final PoolStat poolStat;
+
+    InstrumentedExecutorDelegate(ThreadPoolExecutor executor, String poolName, String measurement) {
+        this.executor = executor;
+        this.poolStat = PoolStat.register(poolName, executor, measurement);
+        RejectedExecutionHandler handler = executor.getRejectedExecutionHandler();
+        if (handler instanceof CountingRejectedExecutionHandler) {
+            // 同一executor被重复包装时,只保留最后一次的统计
+            handler = ((CountingRejectedExecutionHandler) handler).delegate;
+        }
+        executor.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(poolStat, handler));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        executor.execute(new TimedTask(poolStat, command));
+        // 线程池监控
+        poolStat.onSubmit();
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return 未执行的任务(包装前的任务)
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = executor.shutdownNow();
+        List<Runnable> result = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            result.add(task instanceof TimedTask ? ((TimedTask) task).task.getTask() : task);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[" + executor + "]";
+    }
+
+    /**
+     * 在执行线程上记录排队耗时、执行耗时,相当于{@link InstrumentedThreadPoolExecutor}的beforeExecute/afterExecute
+     */
+    static class TimedTask implements Runnable {
+        private final PoolStat poolStat;
+        private final MdcTaskWrapper.MdcRunnable task;
+        /** 计划开始执行的时间(System.nanoTime),排队耗时从此时算起 */
+        long triggerNanos;
+        /** 周期任务的周期(纳秒): 正数为fixed-rate,负数为fixed-delay,0为非周期任务 */
+        long periodNanos;
+
+        TimedTask(PoolStat poolStat, Runnable task) {
+            this.poolStat = poolStat;
+            this.task = (MdcTaskWrapper.MdcRunnable) MdcTaskWrapper.wrap(task);
+            this.triggerNanos = this.task.submitNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            poolStat.onTaskStart(startNanos - triggerNanos, startNanos);
+            try {
+                task.run();
+            } finally {
+                long endNanos = System.nanoTime();
+                poolStat.onTaskEnd(endNanos - startNanos);
+                if (periodNanos > 0) {
+                    triggerNanos += periodNanos;
+                } else if (periodNanos < 0) {
+                    triggerNanos = endNanos - periodNanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * 统计拒绝次数后交给原拒绝策略处理
+     */
+    private static class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+        private final PoolStat poolStat;
+        private final RejectedExecutionHandler delegate;
+
+        private CountingRejectedExecutionHandler(PoolStat poolStat, RejectedExecutionHandler delegate) {
+            this.poolStat = poolStat;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            poolStat.onReject();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
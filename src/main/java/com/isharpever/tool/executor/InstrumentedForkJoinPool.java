@@ -0,0 +1,242 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.MetricPoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带监控的工作窃取线程池: <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.监控
+ * <br>每个工作线程有自己的任务队列,空闲时从其他线程的队列窃取任务,没有ThreadPoolExecutor单一共享队列的锁竞争,
+ * 适合大量短小的CPU密集型任务
+ * <br>包装并统计的是以Runnable/Callable提交的任务;直接提交的ForkJoinTask及其fork出的子任务不经过包装
+ * <br>除通用监控字段外,还输出本周期的窃取次数(stealCount)、各工作线程队列中的任务数(queuedTaskCount)、
+ * 外部提交队列中的任务数(queuedSubmissionCount)
+ */
+public class InstrumentedForkJoinPool extends ForkJoinPool implements MonitoredPool {
+
+    private final String poolName;
+    private final PoolStat poolStat;
+
+    /** 已提交的任务数 */
+    private final LongAdder taskCount = new LongAdder();
+    /** 已开始执行的任务数 */
+    private final LongAdder startedCount = new LongAdder();
+    /** 完成的任务数 */
+    private final LongAdder completedTaskCount = new LongAdder();
+    /** 线程数峰值 */
+    private final AtomicInteger largestPoolSize = new AtomicInteger(0);
+    /** 前一次输出的累计窃取次数,只在监控调度线程上访问 */
+    private long previousStealCount;
+
+    public InstrumentedForkJoinPool(String poolName, String measurement, int parallelism) {
+        super(parallelism, new NamedWorkerThreadFactory(poolName), null, true);
+        this.poolName = poolName;
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new TimedRunnable(MdcTaskWrapper.wrap(task)));
+    }
+
+    /**
+     * 以Callable方式包装,任务抛出的异常由返回的Future传递给调用方(与ThreadPoolExecutor.submit一致)
+     */
+    @Override
+    public ForkJoinTask<?> submit(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        return super.submit(new TimedCallable<>(MdcTaskWrapper.wrap(Executors.callable(task))));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        return super.submit(new TimedCallable<>(MdcTaskWrapper.wrap(Executors.callable(task, result))));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        return super.submit(new TimedCallable<>(MdcTaskWrapper.wrap(task)));
+    }
+
+    /**
+     * ForkJoinPool.invokeAll不经由submit提交,需要单独包装
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            wrapped.add(new TimedCallable<>(MdcTaskWrapper.wrap(task)));
+        }
+        return super.invokeAll(wrapped);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        PoolStat.unregister(poolStat);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        PoolStat.unregister(poolStat);
+        return tasks;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    private void onTaskStart(long submitNanos, long startNanos) {
+        startedCount.increment();
+        poolStat.onTaskStart(startNanos - submitNanos, startNanos);
+    }
+
+    private void onTaskEnd(long startNanos) {
+        completedTaskCount.increment();
+        poolStat.onTaskEnd(System.nanoTime() - startNanos);
+    }
+
+    /** 即并行度 */
+    @Override
+    public int getCorePoolSize() {
+        return getParallelism();
+    }
+
+    /** 即并行度 */
+    @Override
+    public int getMaximumPoolSize() {
+        return getParallelism();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        int poolSize = getPoolSize();
+        int current = largestPoolSize.get();
+        while (poolSize > current) {
+            if (largestPoolSize.compareAndSet(current, poolSize)) {
+                return poolSize;
+            }
+            current = largestPoolSize.get();
+        }
+        return current;
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completedTaskCount.sum();
+    }
+
+    @Override
+    public long getTaskCount() {
+        return taskCount.sum();
+    }
+
+    /**
+     * 以Runnable/Callable提交、尚未开始执行的任务数<br>
+     * 由计数器计算,不遍历各工作线程的队列(getQueuedTaskCount),可在提交/执行任务时调用
+     */
+    @Override
+    public int getQueueSize() {
+        return (int) Math.max(0, taskCount.sum() - startedCount.sum());
+    }
+
+    @Override
+    public void addFields(MetricPoint.Builder builder) {
+        long stealCount = getStealCount();
+        builder.addField("stealCount", stealCount - previousStealCount)
+                .addField("queuedTaskCount", getQueuedTaskCount())
+                .addField("queuedSubmissionCount", getQueuedSubmissionCount())
+                .addField("runningThreadCount", getRunningThreadCount());
+        previousStealCount = stealCount;
+    }
+
+    /**
+     * 记录排队耗时、执行耗时
+     */
+    private class TimedRunnable implements Runnable {
+        private final Runnable task;
+        private final long submitNanos;
+
+        private TimedRunnable(Runnable task) {
+            this.task = task;
+            this.submitNanos = System.nanoTime();
+            taskCount.increment();
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            onTaskStart(submitNanos, startNanos);
+            try {
+                task.run();
+            } finally {
+                onTaskEnd(startNanos);
+            }
+        }
+    }
+
+    /**
+     * 记录排队耗时、执行耗时
+     */
+    private class TimedCallable<V> implements Callable<V> {
+        private final Callable<V> task;
+        private final long submitNanos;
+
+        private TimedCallable(Callable<V> task) {
+            this.task = task;
+            this.submitNanos = System.nanoTime();
+            taskCount.increment();
+        }
+
+        @Override
+        public V call() throws Exception {
+            long startNanos = System.nanoTime();
+            onTaskStart(submitNanos, startNanos);
+            try {
+                return task.call();
+            } finally {
+                onTaskEnd(startNanos);
+            }
+        }
+    }
+
+    private static class NamedWorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        private NamedWorkerThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(namePrefix + threadNumber.getAndIncrement());
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的定时线程池: <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.监控
+ * <br>execute/submit最终都经由schedule系列方法提交,因此只需覆写schedule系列方法包装任务
+ */
+public class InstrumentedScheduledExecutor extends ScheduledThreadPoolExecutor {
+
+    /**
+     * 工作线程当前任务的开始执行时间<br>
+     * 定时任务在beforeExecute/afterExecute中拿到的是ScheduledFutureTask而非包装后的任务,无法在任务对象上记录
+     */
+    private static final ThreadLocal<long[]> TASK_START_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final String poolName;
+    private final PoolStat poolStat;
+
+    public InstrumentedScheduledExecutor(String poolName, String measurement, int corePoolSize,
+            ThreadFactory threadFactory) {
+        super(corePoolSize, threadFactory);
+        this.poolName = poolName;
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    public InstrumentedScheduledExecutor(String poolName, String measurement, int corePoolSize,
+            ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, threadFactory, handler);
+        this.poolName = poolName;
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        ScheduledFuture<?> future = super.schedule(MdcTaskWrapper.wrap(command), delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        ScheduledFuture<V> future = super.schedule(MdcTaskWrapper.wrap(callable), delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+            TimeUnit unit) {
+        ScheduledFuture<?> future = super
+                .scheduleAtFixedRate(MdcTaskWrapper.wrap(command), initialDelay, period, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        ScheduledFuture<?> future = super
+                .scheduleWithFixedDelay(MdcTaskWrapper.wrap(command), initialDelay, delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        // 线程池监控:排队耗时,即任务到达触发时间后等待执行的时长
+        long queueWaitNanos = 0;
+        if (r instanceof Delayed) {
+            queueWaitNanos = -((Delayed) r).getDelay(TimeUnit.NANOSECONDS);
+        }
+        long[] startNanos = TASK_START_NANOS.get();
+        startNanos[0] = System.nanoTime();
+        poolStat.onTaskStart(queueWaitNanos, startNanos[0]);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        // 线程池监控:执行耗时
+        poolStat.onTaskEnd(System.nanoTime() - TASK_START_NANOS.get()[0]);
+        super.afterExecute(r, t);
+    }
+
+    @Override
+    protected void terminated() {
+        PoolStat.unregister(poolStat);
+        super.terminated();
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+}
@@ -0,0 +1,90 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 为调用方自行创建的ScheduledThreadPoolExecutor增加监控,见{@link InstrumentedExecutorDelegate}
+ * <br>排队耗时为任务到达触发时间后等待执行的时长,与{@link InstrumentedScheduledExecutor}一致
+ */
+class InstrumentedScheduledExecutorDelegate extends InstrumentedExecutorDelegate implements ScheduledExecutorService {
+
+    private final ScheduledThreadPoolExecutor scheduledExecutor;
+
+    InstrumentedScheduledExecutorDelegate(ScheduledThreadPoolExecutor executor, String poolName,
+            String measurement) {
+        super(executor, poolName, measurement);
+        this.scheduledExecutor = executor;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        TimedTask task = new TimedTask(poolStat, command);
+        task.triggerNanos += unit.toNanos(delay);
+        ScheduledFuture<?> future = scheduledExecutor.schedule(task, delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        TimedCallable<V> task = new TimedCallable<>(poolStat, callable);
+        task.triggerNanos += unit.toNanos(delay);
+        ScheduledFuture<V> future = scheduledExecutor.schedule(task, delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+            TimeUnit unit) {
+        TimedTask task = new TimedTask(poolStat, command);
+        task.triggerNanos += unit.toNanos(initialDelay);
+        task.periodNanos = unit.toNanos(period);
+        ScheduledFuture<?> future = scheduledExecutor.scheduleAtFixedRate(task, initialDelay, period, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        TimedTask task = new TimedTask(poolStat, command);
+        task.triggerNanos += unit.toNanos(initialDelay);
+        task.periodNanos = -unit.toNanos(delay);
+        ScheduledFuture<?> future = scheduledExecutor.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+        // 线程池监控
+        poolStat.onSubmit();
+        return future;
+    }
+
+    private static class TimedCallable<V> implements Callable<V> {
+        private final PoolStat poolStat;
+        private final Callable<V> task;
+        /** 计划开始执行的时间(System.nanoTime) */
+        private long triggerNanos;
+
+        private TimedCallable(PoolStat poolStat, Callable<V> task) {
+            this.poolStat = poolStat;
+            this.task = MdcTaskWrapper.wrap(task);
+            this.triggerNanos = System.nanoTime();
+        }
+
+        @Override
+        public V call() throws Exception {
+            long startNanos = System.nanoTime();
+            poolStat.onTaskStart(startNanos - triggerNanos, startNanos);
+            try {
+                return task.call();
+            } finally {
+                poolStat.onTaskEnd(System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的线程池: <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.监控
+ * <br>通过覆写execute/beforeExecute/afterExecute实现,替代原先基于反射代理的方式,
+ * 查询类方法(getQueue/isShutdown等)不再有额外开销
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final String poolName;
+    private final PoolStat poolStat;
+
+    public InstrumentedThreadPoolExecutor(String poolName, String measurement, int corePoolSize,
+            int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue,
+            ThreadFactory threadFactory) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                new CountingRejectedExecutionHandler(new AbortPolicy()));
+        this.poolName = poolName;
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    public InstrumentedThreadPoolExecutor(String poolName, String measurement, int corePoolSize,
+            int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue,
+            ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                new CountingRejectedExecutionHandler(handler));
+        this.poolName = poolName;
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    /**
+     * submit/invokeAll/invokeAny最终都经由此方法提交,在此统一包装任务
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(MdcTaskWrapper.wrap(command));
+        // 线程池监控
+        poolStat.onSubmit();
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        // 线程池监控:排队耗时
+        long startNanos = System.nanoTime();
+        long queueWaitNanos = 0;
+        if (r instanceof MdcTaskWrapper.MdcRunnable) {
+            MdcTaskWrapper.MdcRunnable task = (MdcTaskWrapper.MdcRunnable) r;
+            task.startNanos = startNanos;
+            queueWaitNanos = startNanos - task.submitNanos;
+        }
+        poolStat.onTaskStart(queueWaitNanos, startNanos);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        // 线程池监控:执行耗时
+        long executeNanos = 0;
+        if (r instanceof MdcTaskWrapper.MdcRunnable) {
+            executeNanos = System.nanoTime() - ((MdcTaskWrapper.MdcRunnable) r).startNanos;
+        }
+        poolStat.onTaskEnd(executeNanos);
+        super.afterExecute(r, t);
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler(handler instanceof CountingRejectedExecutionHandler
+                ? handler : new CountingRejectedExecutionHandler(handler));
+    }
+
+    @Override
+    protected void terminated() {
+        PoolStat.unregister(poolStat);
+        super.terminated();
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    PoolStat getPoolStat() {
+        return poolStat;
+    }
+
+    /**
+     * 统计拒绝次数后交给实际的拒绝策略处理
+     */
+    private static class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+
+        private CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+            if (delegate == null) {
+                throw new NullPointerException();
+            }
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            // 构造过程中(poolStat赋值前)不会提交任务,此处poolStat不为null
+            ((InstrumentedThreadPoolExecutor) executor).poolStat.onReject();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.mdc.LogUniqueKeyUtil;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 包装提交到线程池的任务: <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.记录提交时间,用于统计排队耗时
+ */
+final class MdcTaskWrapper {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorServiceUtil.class);
+
+    private MdcTaskWrapper() {
+    }
+
+    static Runnable wrap(Runnable task) {
+        return new MdcRunnable(LogUniqueKeyUtil.getKeyFromLog(), task);
+    }
+
+    static <V> Callable<V> wrap(Callable<V> task) {
+        return new MdcCallable<>(LogUniqueKeyUtil.getKeyFromLog(), task);
+    }
+
+    static class MdcRunnable implements Runnable {
+        private final String logKey;
+        private final Runnable task;
+        /** 提交时间(System.nanoTime) */
+        final long submitNanos;
+        /** 开始执行时间(System.nanoTime),由执行线程在beforeExecute中写入、afterExecute中读取 */
+        long startNanos;
+
+        MdcRunnable(String logKey, Runnable task) {
+            this.logKey = logKey;
+            this.task = task;
+            this.submitNanos = System.nanoTime();
+        }
+
+        /** 包装前的任务 */
+        Runnable getTask() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            LogUniqueKeyUtil.generateKeyToLog(logKey);
+            try {
+                task.run();
+                if (task instanceof Future<?>) {
+                    final Future<?> future = (Future<?>) task;
+
+                    if (future.isDone()) {
+                        try {
+                            future.get();
+                        } catch (final CancellationException | ExecutionException ce) {
+                            logger.error(String.format("Thread:%s catch exception.",
+                                    Thread.currentThread().getName()), ce);
+                        } catch (final InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            } catch (final RuntimeException re) {
+                logger.error(String.format("Thread:%s catch exception.",
+                        Thread.currentThread().getName()), re);
+            } catch (final Error e) {
+                logger.error(String.format("Thread:%s catch error.",
+                        Thread.currentThread().getName()), e);
+                throw e;
+            }
+        }
+    }
+
+    static class MdcCallable<V> implements Callable<V> {
+        private final String logKey;
+        private final Callable<V> task;
+
+        MdcCallable(String logKey, Callable<V> task) {
+            this.logKey = logKey;
+            this.task = task;
+        }
+
+        @Override
+        public V call() throws Exception {
+            LogUniqueKeyUtil.generateKeyToLog(logKey);
+            try {
+                return task.call();
+            } catch (final Exception e) {
+                logger.error(String.format("Thread:%s catch exception.",
+                        Thread.currentThread().getName()), e);
+                throw e;
+            } catch (final Error e) {
+                logger.error(String.format("Thread:%s catch error.",
+                        Thread.currentThread().getName()), e);
+                throw e;
+            }
+        }
+    }
+}
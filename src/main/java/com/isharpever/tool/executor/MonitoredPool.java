@@ -0,0 +1,38 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.MetricPoint;
+
+/**
+ * 非ThreadPoolExecutor的线程池(虚拟线程池、ForkJoinPool)向{@link PoolStat}提供状态值,含义与ThreadPoolExecutor的同名方法一致
+ * <br>各方法在提交/执行任务时也会被调用,应快速返回
+ */
+interface MonitoredPool {
+
+    int getCorePoolSize();
+
+    int getMaximumPoolSize();
+
+    int getPoolSize();
+
+    int getLargestPoolSize();
+
+    long getCompletedTaskCount();
+
+    long getTaskCount();
+
+    /** 等待执行的任务数 */
+    int getQueueSize();
+
+    /**
+     * 是否每个任务一个线程(如虚拟线程池),是的话线程不会被复用
+     */
+    default boolean isThreadPerTask() {
+        return false;
+    }
+
+    /**
+     * 输出监控数据时追加该类线程池特有的字段,只在监控调度线程上调用
+     */
+    default void addFields(MetricPoint.Builder builder) {
+    }
+}
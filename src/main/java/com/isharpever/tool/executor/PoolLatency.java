@@ -0,0 +1,44 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.LatencyHistogram.Snapshot;
+
+/**
+ * 线程池一个统计周期内的任务耗时分布(单位:微秒)
+ */
+public class PoolLatency {
+
+    private final String poolName;
+    private final String measurement;
+    /** 排队耗时:提交到开始执行 */
+    private final Snapshot queueWait;
+    /** 执行耗时 */
+    private final Snapshot execute;
+
+    PoolLatency(String poolName, String measurement, Snapshot queueWait, Snapshot execute) {
+        this.poolName = poolName;
+        this.measurement = measurement;
+        this.queueWait = queueWait;
+        this.execute = execute;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public String getMeasurement() {
+        return measurement;
+    }
+
+    public Snapshot getQueueWait() {
+        return queueWait;
+    }
+
+    public Snapshot getExecute() {
+        return execute;
+    }
+
+    @Override
+    public String toString() {
+        return poolName + "(" + measurement + ") queueWait[" + queueWait + "] execute[" + execute + "]";
+    }
+}
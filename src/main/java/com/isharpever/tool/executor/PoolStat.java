@@ -0,0 +1,461 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.metrics.LatencyHistogram;
+import com.isharpever.tool.metrics.MetricPoint;
+import com.isharpever.tool.metrics.MetricsRegistry;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 线程池监控数据
+ */
+class PoolStat {
+    private static final Logger logger = LoggerFactory.getLogger(PoolStat.class);
+
+    private static final ConcurrentHashMap<String, PoolStat> POOL_STAT_REGISTRY = new ConcurrentHashMap<>(8);
+
+    /**
+     * 负责输出监控数据的线程池,其本身也被监控
+     */
+    static final ScheduledExecutorService STAT_EXECUTOR = ExecutorServiceUtil
+            .buildScheduledThreadPool(1, "ThreadPoolStat-");
+
+    static {
+        /*
+         * 把各线程池状态输出到监控日志,并清零,每秒执行一次
+         */
+        STAT_EXECUTOR.scheduleAtFixedRate(() -> {
+            POOL_STAT_REGISTRY.values().forEach(poolStat -> {
+                if (poolStat == null) {
+                    return;
+                }
+                if (poolStat.executor != null && poolStat.executor.isTerminated()) {
+                    // 包装的线程池(见InstrumentedExecutorDelegate)没有terminated回调,在此注销
+                    unregister(poolStat);
+                    return;
+                }
+                poolStat.writePoint();
+            });
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 登记线程池,同名线程池以后登记的为准
+     */
+    static PoolStat register(String poolName, ThreadPoolExecutor executor, String measurement) {
+        PoolStat poolStat = new PoolStat(poolName, executor, measurement);
+        POOL_STAT_REGISTRY.put(poolName, poolStat);
+        return poolStat;
+    }
+
+    /**
+     * 登记非ThreadPoolExecutor的线程池(虚拟线程池、ForkJoinPool),同名线程池以后登记的为准
+     */
+    static PoolStat register(String poolName, MonitoredPool pool, String measurement) {
+        PoolStat poolStat = new PoolStat(poolName, null, measurement);
+        poolStat.pool = pool;
+        poolStat.watchdog = new StuckTaskWatchdog(poolName, pool.isThreadPerTask());
+        POOL_STAT_REGISTRY.put(poolName, poolStat);
+        return poolStat;
+    }
+
+    /**
+     * 返回指定线程池最近一个统计周期的任务耗时分布,线程池不存在或尚未统计时返回null
+     */
+    static PoolLatency getLatency(String poolName) {
+        PoolStat poolStat = POOL_STAT_REGISTRY.get(poolName);
+        return poolStat == null ? null : poolStat.latency;
+    }
+
+    /**
+     * 返回全部线程池最近一个统计周期的任务耗时分布
+     */
+    static List<PoolLatency> getAllLatency() {
+        List<PoolLatency> result = new ArrayList<>(POOL_STAT_REGISTRY.size());
+        POOL_STAT_REGISTRY.values().forEach(poolStat -> {
+            if (poolStat.latency != null) {
+                result.add(poolStat.latency);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 线程池终止后注销
+     */
+    static void unregister(PoolStat poolStat) {
+        POOL_STAT_REGISTRY.remove(poolStat.poolName, poolStat);
+    }
+
+    private ThreadPoolExecutor executor;
+    /** 非ThreadPoolExecutor的线程池,与executor二者只有一个不为null */
+    private MonitoredPool pool;
+    private String poolName;
+    private String measurement;
+
+    /** 正在执行任务的线程数,由beforeExecute/afterExecute维护,避免在提交路径上调用需要加mainLock的getActiveCount */
+    private final AtomicInteger runningCount = new AtomicInteger(0);
+
+    /** 任务排队耗时分布 */
+    private final LatencyHistogram queueWaitHistogram = new LatencyHistogram();
+    /** 任务执行耗时分布 */
+    private final LatencyHistogram executeHistogram = new LatencyHistogram();
+    /** 最近一个统计周期的耗时分布 */
+    private volatile PoolLatency latency;
+    /** 自适应线程池的控制器,非自适应线程池为null */
+    private volatile AdaptivePoolController adaptiveController;
+
+    /** 长时间运行任务检测 */
+    private StuckTaskWatchdog watchdog;
+    /** 被拒绝的任务数(队列满或线程池已关闭),每个统计周期清零 */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /** 核心线程数 */
+    private AtomicInteger corePoolSize;
+    /** 最大线程数 */
+    private AtomicInteger maximumPoolSize;
+    /** 当前线程数 */
+    private AtomicInteger poolSize;
+    /** 最大线程数 */
+    private AtomicInteger largestPoolSize;
+    /** 活动线程数 */
+    private AtomicInteger activeCount;
+    /** 完成的任务数 */
+    private AtomicLong completedTaskCount;
+    /** 完成的任务数+正在执行的任务数 */
+    private AtomicLong taskCount;
+    /** 等待执行的任务数 */
+    private AtomicInteger queueSize;
+
+    /** 前一次收集的值:核心线程数 */
+    private int previousCorePoolSize;
+    /** 前一次收集的值:最大线程数 */
+    private int previousMaximumPoolSize;
+    /** 前一次收集的值:当前线程数 */
+    private int previousPoolSize;
+    /** 前一次收集的值:最大线程数 */
+    private int previousLargestPoolSize;
+    /** 前一次收集的值:活动线程数 */
+    private int previousActiveCount;
+    /** 前一次收集的值:完成的任务数 */
+    private long previousCompletedTaskCount;
+    /** 前一次收集的值:完成的任务数+正在执行的任务数 */
+    private long previousTaskCount;
+    /** 前一次收集的值:等待执行的任务数 */
+    private int previousQueueSize;
+
+    private PoolStat(String poolName, ThreadPoolExecutor executor, String measurement) {
+        this.executor = executor;
+        this.poolName = poolName;
+        this.measurement = measurement;
+        this.watchdog = new StuckTaskWatchdog(poolName, false);
+        this.corePoolSize = new AtomicInteger(0);
+        this.maximumPoolSize = new AtomicInteger(0);
+        this.poolSize = new AtomicInteger(0);
+        this.largestPoolSize = new AtomicInteger(0);
+        this.activeCount = new AtomicInteger(0);
+        this.completedTaskCount = new AtomicLong(0);
+        this.taskCount = new AtomicLong(0);
+        this.queueSize = new AtomicInteger(0);
+    }
+
+    void setAdaptiveController(AdaptivePoolController adaptiveController) {
+        this.adaptiveController = adaptiveController;
+    }
+
+    /**
+     * 提交任务时调用
+     */
+    void onSubmit() {
+        updateOnTaskEvent();
+    }
+
+    /**
+     * 任务被拒绝时调用,随后由实际的拒绝策略处理(抛异常/提交线程执行/丢弃最早的任务/阻塞等待)
+     */
+    void onReject() {
+        rejectedCount.increment();
+    }
+
+    /**
+     * 任务开始执行前调用(beforeExecute)
+     *
+     * @param queueWaitNanos 任务排队耗时(纳秒)
+     * @param startNanos 任务开始执行时间(System.nanoTime)
+     */
+    void onTaskStart(long queueWaitNanos, long startNanos) {
+        queueWaitHistogram.recordNanos(queueWaitNanos);
+        watchdog.onTaskStart(startNanos);
+        updActiveCountIfLarger(runningCount.incrementAndGet());
+    }
+
+    /**
+     * 任务执行结束后调用(afterExecute)
+     *
+     * @param executeNanos 任务执行耗时(纳秒)
+     */
+    void onTaskEnd(long executeNanos) {
+        executeHistogram.recordNanos(executeNanos);
+        watchdog.onTaskEnd();
+        runningCount.decrementAndGet();
+        updateOnTaskEvent();
+    }
+
+    /**
+     * 提交/执行任务时只记录变化频繁且读取代价低的值(活动线程数、队列长度)<br>
+     * 其余需要加mainLock才能读取的值,只在输出监控数据时收集
+     */
+    private void updateOnTaskEvent() {
+        updQueueSizeIfLarger(executor != null ? executor.getQueue().size() : pool.getQueueSize());
+    }
+
+    /**
+     * 只在值变大的时候更新,因此收集当前值后需要清零(getAndClearXxx),否则值只会变大不会变小<br>
+     * 没有采取"凡是在值发生变化时都更新"这样策略的原因是:值是每隔一段时间收集一次的,希望收集的值能体现出这段时间内的高峰
+     */
+    private void updateNow() {
+        if (executor == null) {
+            updCorePoolSizeIfLarger(pool.getCorePoolSize());
+            updMaximumPoolSizeIfLarger(pool.getMaximumPoolSize());
+            updPoolSizeIfLarger(pool.getPoolSize());
+            updLargestPoolSizeIfLarger(pool.getLargestPoolSize());
+            updActiveCountIfLarger(runningCount.get());
+            updCompletedTaskCountIfLarger(pool.getCompletedTaskCount());
+            updTaskCountIfLarger(pool.getTaskCount());
+            updQueueSizeIfLarger(pool.getQueueSize());
+            return;
+        }
+        updCorePoolSizeIfLarger(executor.getCorePoolSize());
+        updMaximumPoolSizeIfLarger(executor.getMaximumPoolSize());
+        updPoolSizeIfLarger(executor.getPoolSize());
+        updLargestPoolSizeIfLarger(executor.getLargestPoolSize());
+        updActiveCountIfLarger(runningCount.get());
+        updCompletedTaskCountIfLarger(executor.getCompletedTaskCount());
+        updTaskCountIfLarger(executor.getTaskCount());
+        updQueueSizeIfLarger(executor.getQueue().size());
+    }
+
+    private void updCorePoolSizeIfLarger(int corePoolSize) {
+        int current = this.corePoolSize.get();
+        while (corePoolSize > current) {
+            if (this.corePoolSize.compareAndSet(current, corePoolSize)) {
+                return;
+            }
+            current = this.corePoolSize.get();
+        }
+    }
+
+    private void updMaximumPoolSizeIfLarger(int maximumPoolSize) {
+        int current = this.maximumPoolSize.get();
+        while (maximumPoolSize > current) {
+            if (this.maximumPoolSize.compareAndSet(current, maximumPoolSize)) {
+                return;
+            }
+            current = this.maximumPoolSize.get();
+        }
+    }
+
+    private void updPoolSizeIfLarger(int poolSize) {
+        int current = this.poolSize.get();
+        while (poolSize > current) {
+            if (this.poolSize.compareAndSet(current, poolSize)) {
+                return;
+            }
+            current = this.poolSize.get();
+        }
+    }
+
+    private void updLargestPoolSizeIfLarger(int largestPoolSize) {
+        int current = this.largestPoolSize.get();
+        while (largestPoolSize > current) {
+            if (this.largestPoolSize.compareAndSet(current, largestPoolSize)) {
+                return;
+            }
+            current = this.largestPoolSize.get();
+        }
+    }
+
+    private void updActiveCountIfLarger(int activeCount) {
+        int current = this.activeCount.get();
+        while (activeCount > current) {
+            if (this.activeCount.compareAndSet(current, activeCount)) {
+                return;
+            }
+            current = this.activeCount.get();
+        }
+    }
+
+    private void updCompletedTaskCountIfLarger(long completedTaskCount) {
+        long current = this.completedTaskCount.get();
+        while (completedTaskCount > current) {
+            if (this.completedTaskCount.compareAndSet(current, completedTaskCount)) {
+                return;
+            }
+            current = this.completedTaskCount.get();
+        }
+    }
+
+    private void updTaskCountIfLarger(long taskCount) {
+        long current = this.taskCount.get();
+        while (taskCount > current) {
+            if (this.taskCount.compareAndSet(current, taskCount)) {
+                return;
+            }
+            current = this.taskCount.get();
+        }
+    }
+
+    private void updQueueSizeIfLarger(int queueSize) {
+        int current = this.queueSize.get();
+        while (queueSize > current) {
+            if (this.queueSize.compareAndSet(current, queueSize)) {
+                return;
+            }
+            current = this.queueSize.get();
+        }
+    }
+
+    public int getAndClearCorePoolSize() {
+        return corePoolSize.getAndSet(0);
+    }
+
+    public int getAndClearMaximumPoolSize() {
+        return maximumPoolSize.getAndSet(0);
+    }
+
+    public int getAndClearPoolSize() {
+        return poolSize.getAndSet(0);
+    }
+
+    public int getAndClearLargestPoolSize() {
+        return largestPoolSize.getAndSet(0);
+    }
+
+    public int getAndClearActiveCount() {
+        return activeCount.getAndSet(0);
+    }
+
+    public long getAndClearCompletedTaskCount() {
+        return completedTaskCount.getAndSet(0);
+    }
+
+    public long getAndClearTaskCount() {
+        return taskCount.getAndSet(0);
+    }
+
+    public int getAndClearQueueSize() {
+        return queueSize.getAndSet(0);
+    }
+
+    /**
+     * 输出监控日志
+     */
+    private void writePoint() {
+        // 任务耗时分布,每个统计周期都更新,不受下面"状态值无变化不输出"的影响
+        LatencyHistogram.Snapshot queueWait = queueWaitHistogram.snapshotAndReset();
+        LatencyHistogram.Snapshot execute = executeHistogram.snapshotAndReset();
+        this.latency = new PoolLatency(poolName, measurement, queueWait, execute);
+
+        // 为保证监控结果的相对实时性,在输出监控日志之前再次获取并记录线程池的状态值
+        updateNow();
+
+        // 获取并清零当前状态值
+        int corePoolSize = getAndClearCorePoolSize();
+        int maximumPoolSize = getAndClearMaximumPoolSize();
+        int poolSize = getAndClearPoolSize();
+        int largestPoolSize = getAndClearLargestPoolSize();
+        int activeCount = getAndClearActiveCount();
+        long completedTaskCount = getAndClearCompletedTaskCount();
+        long taskCount = getAndClearTaskCount();
+        int queueSize = getAndClearQueueSize();
+        long rejectedCount = this.rejectedCount.sumThenReset();
+        int longRunningCount = 0;
+        try {
+            longRunningCount = watchdog.check(maximumPoolSize, queueSize);
+        } catch (Exception e) {
+            logger.warn("--- 长时间运行任务检测异常 poolName={}", poolName, e);
+        }
+
+        // 自适应线程池:根据本周期数据调整线程数,不受下面"状态值无变化不输出"的影响
+        AdaptivePoolController controller = this.adaptiveController;
+        if (controller != null) {
+            try {
+                controller.adjust(this.latency, activeCount, queueSize, completedTaskCount);
+            } catch (Exception e) {
+                logger.warn("--- 自适应线程池调整异常 poolName={}", poolName, e);
+            }
+        }
+
+        // 公平队列:每个key的队列长度及排队耗时
+        if (executor != null && executor.getQueue() instanceof FairBlockingQueue) {
+            try {
+                ((FairBlockingQueue) executor.getQueue()).writePoints(poolName);
+            } catch (Exception e) {
+                logger.warn("--- 公平队列监控输出异常 poolName={}", poolName, e);
+            }
+        }
+
+        // 从上次获取并记录后没有发生变化、且这段时间内没有任务执行的话,没必要输出监控日志
+        if (queueWait.getCount() == 0
+                && execute.getCount() == 0
+                && rejectedCount == 0
+                && longRunningCount == 0
+                && corePoolSize == previousCorePoolSize
+                && maximumPoolSize == previousMaximumPoolSize
+                && poolSize == previousPoolSize
+                && largestPoolSize == previousLargestPoolSize
+                && activeCount == previousActiveCount
+                // 这两项即使变化,也没啥必要实时输出到监控
+//                && completedTaskCount == previousCompletedTaskCount
+//                && taskCount == previousTaskCount
+                && queueSize == previousQueueSize) {
+            return;
+        }
+
+        MetricPoint.Builder builder = MetricPoint
+                .monitorKey(this.measurement)
+                .addTag("app", AppNameUtil.getAppName())
+                .addTag("ip", NetUtil.getLocalHostAddress())
+                .addTag("name", this.poolName)
+                .addField("corePoolSize", corePoolSize)
+                .addField("maximumPoolSize", maximumPoolSize)
+                .addField("poolSize", poolSize)
+                .addField("largestPoolSize", largestPoolSize)
+                .addField("activeCount", activeCount)
+                .addField("completedTaskCount", completedTaskCount)
+                .addField("taskCount", taskCount)
+                .addField("queueSize", queueSize)
+                .addField("rejectedCount", rejectedCount)
+                .addField("longRunningCount", longRunningCount)
+                .addField("queueWaitP50", queueWait.getP50())
+                .addField("queueWaitP99", queueWait.getP99())
+                .addField("queueWaitP999", queueWait.getP999())
+                .addField("executeP50", execute.getP50())
+                .addField("executeP99", execute.getP99())
+                .addField("executeP999", execute.getP999());
+        if (pool != null) {
+            pool.addFields(builder);
+        }
+        MetricsRegistry.write(builder.build());
+
+        this.previousCorePoolSize = corePoolSize;
+        this.previousMaximumPoolSize = maximumPoolSize;
+        this.previousPoolSize = poolSize;
+        this.previousLargestPoolSize = largestPoolSize;
+        this.previousActiveCount = activeCount;
+        this.previousCompletedTaskCount = completedTaskCount;
+        this.previousTaskCount = taskCount;
+        this.previousQueueSize = queueSize;
+    }
+}
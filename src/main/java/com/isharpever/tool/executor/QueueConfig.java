@@ -0,0 +1,141 @@
+package com.isharpever.tool.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池的队列及拒绝策略配置,队列一律有界,避免下游变慢时任务无限堆积导致OOM
+ * <pre>
+ * ExecutorServiceUtil.buildExecutorService(16, "order-query-", "isharpever.threadpool",
+ *         new QueueConfig(QueueType.ARRAY, 2000).setRejectPolicy(RejectPolicy.BLOCK).setBlockTimeoutMillis(500));
+ * </pre>
+ * 默认({@link #defaults()}): LinkedBlockingQueue,容量由系统属性isharpever.executor.queue.capacity指定(默认10000),
+ * 队列满时由提交线程执行任务(CALLER_RUNS),从而对提交方形成反压,任务不会丢失
+ */
+public class QueueConfig {
+
+    /** 默认队列容量 */
+    static final int DEFAULT_CAPACITY = Integer.getInteger("isharpever.executor.queue.capacity", 10000);
+
+    public enum QueueType {
+        /** LinkedBlockingQueue,入队出队分别加锁 */
+        LINKED,
+        /** ArrayBlockingQueue,预分配数组,入队出队共用一把锁 */
+        ARRAY,
+        /**
+         * PriorityBlockingQueue,按任务的自然顺序优先执行,任务需通过execute提交且实现Comparable<br>
+         * submit提交的任务被包装为FutureTask,不参与优先级比较
+         */
+        PRIORITY,
+        /** LinkedTransferQueue,无锁,有空闲线程等待时直接交给空闲线程 */
+        TRANSFER
+    }
+
+    public enum RejectPolicy {
+        /** 抛出RejectedExecutionException */
+        ABORT,
+        /** 由提交线程执行任务 */
+        CALLER_RUNS,
+        /** 丢弃队首(最早入队,PRIORITY队列则为优先级最高)的任务,再尝试提交 */
+        DISCARD_OLDEST,
+        /** 阻塞提交线程直到队列有空位,超过blockTimeoutMillis则抛出RejectedExecutionException */
+        BLOCK
+    }
+
+    private final QueueType queueType;
+    private final int capacity;
+    private RejectPolicy rejectPolicy = RejectPolicy.CALLER_RUNS;
+    private long blockTimeoutMillis = 1000;
+
+    public QueueConfig(QueueType queueType, int capacity) {
+        if (queueType == null || capacity <= 0) {
+            throw new IllegalArgumentException("queueType=" + queueType + " capacity=" + capacity);
+        }
+        this.queueType = queueType;
+        this.capacity = capacity;
+    }
+
+    public static QueueConfig defaults() {
+        return new QueueConfig(QueueType.LINKED, DEFAULT_CAPACITY);
+    }
+
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public RejectPolicy getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    public QueueConfig setRejectPolicy(RejectPolicy rejectPolicy) {
+        if (rejectPolicy == null) {
+            throw new IllegalArgumentException("rejectPolicy is null");
+        }
+        this.rejectPolicy = rejectPolicy;
+        return this;
+    }
+
+    public long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+
+    public QueueConfig setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        return this;
+    }
+
+    BlockingQueue<Runnable> newQueue() {
+        switch (queueType) {
+            case ARRAY:
+                return new ArrayBlockingQueue<>(capacity);
+            case PRIORITY:
+                return new BoundedBlockingQueue<>(new PriorityBlockingQueue<>(11, QueueConfig::compareTask), capacity);
+            case TRANSFER:
+                return new BoundedBlockingQueue<>(new LinkedTransferQueue<>(), capacity);
+            case LINKED:
+            default:
+                return new LinkedBlockingQueue<>(capacity);
+        }
+    }
+
+    RejectedExecutionHandler newRejectedExecutionHandler() {
+        switch (rejectPolicy) {
+            case ABORT:
+                return new ThreadPoolExecutor.AbortPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            case BLOCK:
+                return new BlockingRejectedExecutionHandler(blockTimeoutMillis);
+            case CALLER_RUNS:
+            default:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+    }
+
+    /**
+     * 按包装前任务的自然顺序比较,任一方未实现Comparable时视为相等
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareTask(Runnable r1, Runnable r2) {
+        Object task1 = r1 instanceof MdcTaskWrapper.MdcRunnable ? ((MdcTaskWrapper.MdcRunnable) r1).getTask() : r1;
+        Object task2 = r2 instanceof MdcTaskWrapper.MdcRunnable ? ((MdcTaskWrapper.MdcRunnable) r2).getTask() : r2;
+        if (task1 instanceof Comparable && task2 instanceof Comparable) {
+            return ((Comparable) task1).compareTo(task2);
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return queueType + "(" + capacity + ")/" + rejectPolicy;
+    }
+}
@@ -0,0 +1,164 @@
+package com.isharpever.tool.executor;
+
+import com.isharpever.tool.enums.CustomLogLevel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 长时间运行任务(卡住的任务)及线程饥饿检测,由{@link PoolStat}在监控调度线程(ThreadPoolStat-)上每秒调用
+ * <li>执行时间超过阈值的任务计为长时间运行任务,数量作为监控字段longRunningCount输出
+ * <li>任务首次超过阈值时,通过ThreadMXBean获取其线程栈(只取新发现的,不做全量dump),以DING级别日志告警
+ * <li>长时间运行的任务占满了全部线程、且队列中有任务在等待时,告警中标明线程饥饿
+ * <br>可通过系统属性配置:
+ * <li>isharpever.executor.stuck.threshold.millis 阈值,默认30000
+ * <li>isharpever.executor.stuck.alert.interval.millis 同一线程池两次告警的最小间隔,默认60000
+ */
+class StuckTaskWatchdog {
+    private static final Logger logger = LogManager.getLogger(StuckTaskWatchdog.class);
+
+    private static final long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("isharpever.executor.stuck.threshold.millis", 30000));
+    private static final long ALERT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("isharpever.executor.stuck.alert.interval.millis", 60000));
+    /** 告警中每个任务线程栈的最大深度 */
+    private static final int MAX_STACK_DEPTH = 20;
+    /** 每次告警最多附带的线程栈数 */
+    private static final int MAX_STACKS_PER_ALERT = 5;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String poolName;
+    /** 执行过任务的线程 -> 其当前任务;工作线程复用时对象也复用,提交/执行路径上不分配对象 */
+    private final Map<Thread, RunningTask> runningTasks = new ConcurrentHashMap<>(16);
+    /** 每个任务一个线程(虚拟线程池),任务结束即移除 */
+    private final boolean threadPerTask;
+    /** 上次告警时间,只在监控调度线程上访问 */
+    private long lastAlertNanos;
+
+    StuckTaskWatchdog(String poolName, boolean threadPerTask) {
+        this.poolName = poolName;
+        this.threadPerTask = threadPerTask;
+    }
+
+    /**
+     * 任务开始执行时在执行线程上调用
+     */
+    void onTaskStart(long startNanos) {
+        Thread thread = Thread.currentThread();
+        RunningTask task = runningTasks.get(thread);
+        if (task == null) {
+            task = runningTasks.computeIfAbsent(thread, RunningTask::new);
+        }
+        task.startNanos = startNanos;
+    }
+
+    /**
+     * 任务执行结束时在执行线程上调用
+     */
+    void onTaskEnd() {
+        Thread thread = Thread.currentThread();
+        if (threadPerTask) {
+            runningTasks.remove(thread);
+            return;
+        }
+        RunningTask task = runningTasks.get(thread);
+        if (task != null) {
+            task.startNanos = 0;
+        }
+    }
+
+    /**
+     * 检测长时间运行的任务,对新发现的告警
+     *
+     * @param maximumPoolSize 最大线程数(或并发数上限)
+     * @param queueSize 等待执行的任务数
+     * @return 长时间运行的任务数
+     */
+    int check(int maximumPoolSize, int queueSize) {
+        long now = System.nanoTime();
+        int longRunningCount = 0;
+        List<RunningTask> newlyStuck = null;
+        Iterator<RunningTask> iterator = runningTasks.values().iterator();
+        while (iterator.hasNext()) {
+            RunningTask task = iterator.next();
+            long startNanos = task.startNanos;
+            if (startNanos == 0) {
+                // 已退出的工作线程(如超过keepAlive的非核心线程)
+                if (!task.thread.isAlive()) {
+                    iterator.remove();
+                }
+                continue;
+            }
+            if (now - startNanos < THRESHOLD_NANOS) {
+                continue;
+            }
+            longRunningCount++;
+            if (task.alertedStartNanos != startNanos) {
+                if (newlyStuck == null) {
+                    newlyStuck = new ArrayList<>();
+                }
+                newlyStuck.add(task);
+            }
+        }
+
+        // 未到告警间隔的,留到下次告警
+        if (newlyStuck != null && now - lastAlertNanos >= ALERT_INTERVAL_NANOS) {
+            lastAlertNanos = now;
+            for (RunningTask task : newlyStuck) {
+                task.alertedStartNanos = task.startNanos;
+            }
+            alert(newlyStuck, longRunningCount, maximumPoolSize, queueSize, now);
+        }
+        return longRunningCount;
+    }
+
+    private void alert(List<RunningTask> newlyStuck, int longRunningCount, int maximumPoolSize, int queueSize,
+            long now) {
+        boolean starving = longRunningCount >= maximumPoolSize && queueSize > 0;
+        StringBuilder stacks = new StringBuilder(1024);
+        int count = Math.min(newlyStuck.size(), MAX_STACKS_PER_ALERT);
+        long[] threadIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            threadIds[i] = newlyStuck.get(i).thread.getId();
+        }
+        ThreadInfo[] threadInfos = THREAD_MX_BEAN.getThreadInfo(threadIds, MAX_STACK_DEPTH);
+        for (int i = 0; i < count; i++) {
+            RunningTask task = newlyStuck.get(i);
+            StackTraceElement[] stackTrace = threadInfos[i] != null ? threadInfos[i].getStackTrace()
+                    // 虚拟线程不能通过ThreadMXBean获取
+                    : task.thread.getStackTrace();
+            stacks.append("\n\"").append(task.thread.getName()).append("\" 已运行")
+                    .append(TimeUnit.NANOSECONDS.toMillis(now - task.startNanos)).append("ms");
+            if (threadInfos[i] != null) {
+                stacks.append(' ').append(threadInfos[i].getThreadState());
+            }
+            for (int j = 0; j < stackTrace.length && j < MAX_STACK_DEPTH; j++) {
+                stacks.append("\n\tat ").append(stackTrace[j]);
+            }
+        }
+        logger.log(CustomLogLevel.DING.toLevel(), "【线程池{}】poolName={} 长时间运行的任务数={} 最大线程数={} 排队任务数={} 阈值={}ms 线程栈:{}",
+                starving ? "线程饥饿" : "任务执行超时", poolName, longRunningCount, maximumPoolSize, queueSize,
+                TimeUnit.NANOSECONDS.toMillis(THRESHOLD_NANOS), stacks);
+    }
+
+    private static class RunningTask {
+        private final Thread thread;
+        /** 当前任务的开始执行时间(System.nanoTime),0表示空闲 */
+        private volatile long startNanos;
+        /** 已告警的任务的开始执行时间,同一任务只告警一次,只在监控调度线程上访问 */
+        private long alertedStartNanos;
+
+        private RunningTask(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.isharpever.tool.executor;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于虚拟线程(JDK21+)的线程池: 每个任务一个虚拟线程,不复用线程,并发数由信号量限制
+ * <li>1.把提交线程的日志唯一key传递到执行线程 <li>2.异常日志 <li>3.监控,与普通线程池输出相同的监控数据
+ * <br>并发数达到上限时,提交线程等待信号量(与有界队列满时由提交线程执行任务一样形成反压),
+ * 等待信号量的提交数计为队列中的任务(queueSize),等待信号量的耗时计入排队耗时
+ * <br>本工程按JDK8编译,虚拟线程通过反射获取,由{@link ExecutorServiceUtil#buildVirtualThreadExecutor}
+ * 在不支持虚拟线程的JDK上退化为固定大小的普通线程池
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService implements MonitoredPool {
+    /** Thread.ofVirtual(),不支持虚拟线程时为null */
+    private static final Method OF_VIRTUAL;
+    /** Thread.Builder.name(String, long) */
+    private static final Method BUILDER_NAME;
+    /** Thread.Builder.factory() */
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+    }
+
+    private final String poolName;
+    private final int maxConcurrency;
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final PoolStat poolStat;
+
+    /** 已启动未结束的线程,shutdownNow时中断 */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    /** 已提交未结束的任务数 */
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    /** 等待信号量的提交数 */
+    private final AtomicInteger waitingCount = new AtomicInteger(0);
+    /** 线程数峰值 */
+    private final AtomicInteger largestPoolSize = new AtomicInteger(0);
+    /** 已提交的任务数 */
+    private final AtomicLong taskCount = new AtomicLong(0);
+    /** 完成的任务数 */
+    private final AtomicLong completedTaskCount = new AtomicLong(0);
+
+    private volatile boolean shutdown;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public VirtualThreadExecutor(String poolName, String measurement, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency=" + maxConcurrency);
+        }
+        this.poolName = poolName;
+        this.maxConcurrency = maxConcurrency;
+        this.threadFactory = newVirtualThreadFactory(poolName);
+        this.permits = new Semaphore(maxConcurrency);
+        this.poolStat = PoolStat.register(poolName, this, measurement);
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String poolName) {
+        if (OF_VIRTUAL == null) {
+            throw new UnsupportedOperationException("当前JDK不支持虚拟线程: " + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, poolName, 1L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("创建虚拟线程工厂失败", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        pendingCount.incrementAndGet();
+        if (shutdown) {
+            onTaskExit();
+            throw new RejectedExecutionException("Task " + command + " rejected from " + this);
+        }
+        MdcTaskWrapper.MdcRunnable task = (MdcTaskWrapper.MdcRunnable) MdcTaskWrapper.wrap(command);
+        taskCount.incrementAndGet();
+        // 先获得许可再创建线程,并发数达到上限时提交线程在此等待,线程数不会超过maxConcurrency
+        waitingCount.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            waitingCount.decrementAndGet();
+            onTaskExit();
+            throw new RejectedExecutionException("Task " + command + " rejected from " + this
+                    + ", interrupted while waiting for permit", e);
+        }
+        waitingCount.decrementAndGet();
+        if (shutdown) {
+            // 等待许可期间已关闭
+            permits.release();
+            onTaskExit();
+            throw new RejectedExecutionException("Task " + command + " rejected from " + this);
+        }
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(() -> runTask(task));
+            threads.add(thread);
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            if (thread != null) {
+                threads.remove(thread);
+            }
+            permits.release();
+            onTaskExit();
+            throw e;
+        }
+        updLargestPoolSize(threads.size());
+        // 线程池监控
+        poolStat.onSubmit();
+    }
+
+    private void runTask(MdcTaskWrapper.MdcRunnable task) {
+        try {
+            // 线程池监控:排队耗时
+            task.startNanos = System.nanoTime();
+            poolStat.onTaskStart(task.startNanos - task.submitNanos, task.startNanos);
+            task.run();
+        } finally {
+            permits.release();
+            // 线程池监控:执行耗时
+            poolStat.onTaskEnd(System.nanoTime() - task.startNanos);
+            completedTaskCount.incrementAndGet();
+            threads.remove(Thread.currentThread());
+            onTaskExit();
+        }
+    }
+
+    private void onTaskExit() {
+        if (pendingCount.decrementAndGet() == 0 && shutdown) {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        if (terminated.getCount() > 0) {
+            terminated.countDown();
+            PoolStat.unregister(poolStat);
+        }
+    }
+
+    private void updLargestPoolSize(int poolSize) {
+        int current = largestPoolSize.get();
+        while (poolSize > current) {
+            if (largestPoolSize.compareAndSet(current, poolSize)) {
+                return;
+            }
+            current = largestPoolSize.get();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (pendingCount.get() == 0) {
+            terminate();
+        }
+    }
+
+    /**
+     * 中断所有线程,等待信号量的提交在获得许可后被拒绝;由于任务已绑定到各自的线程,返回空列表
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /** 即并发数上限 */
+    @Override
+    public int getCorePoolSize() {
+        return maxConcurrency;
+    }
+
+    /** 即并发数上限 */
+    @Override
+    public int getMaximumPoolSize() {
+        return maxConcurrency;
+    }
+
+    /** 当前线程数 */
+    @Override
+    public int getPoolSize() {
+        return threads.size();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return largestPoolSize.get();
+    }
+
+    /** 等待信号量的提交数 */
+    @Override
+    public int getQueueSize() {
+        return waitingCount.get();
+    }
+
+    @Override
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    @Override
+    public boolean isThreadPerTask() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[poolName=" + poolName + ", maxConcurrency=" + maxConcurrency
+                + ", poolSize=" + getPoolSize() + ", queueSize=" + getQueueSize()
+                + ", completedTaskCount=" + getCompletedTaskCount() + "]";
+    }
+}
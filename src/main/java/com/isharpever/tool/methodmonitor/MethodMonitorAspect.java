@@ -1,5 +1,6 @@
 package com.isharpever.tool.methodmonitor;
 
+import com.isharpever.tool.metrics.MetricsRegistry;
 import com.isharpever.tool.utils.AppNameUtil;
 import com.isharpever.tool.utils.NetUtil;
 import java.lang.reflect.Method;
@@ -16,8 +17,6 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class MethodMonitorAspect {
 
-//    private MonitorUtil monitor = new MonitorUtilImpl();
-
     @Pointcut("@annotation(MethodMonitor)")
     public void pointcut() {}
 
@@ -32,16 +31,13 @@ public class MethodMonitorAspect {
                 // 目标方法签名
                 String[] target = this.getTargetMethodSignure(joinPoint);
 
-                // 写入监控
-//                MonitorPoint point = MonitorPoint
-//                        .monitorKey("isharpever.method.monitor")
-//                        .addTag("app", AppNameUtil.getAppName())
-//                        .addTag("ip", NetUtil.getLocalHostAddress())
-//                        .addTag("class", target[0])
-//                        .addTag("method", target[1])
-//                        .addField("rt", System.currentTimeMillis() - startTime)
-//                        .build();
-//                monitor.writePoint(point);
+                // 写入监控,同一方法的调用在进程内聚合,每秒输出一次
+                MetricsRegistry.series("isharpever.method.monitor",
+                        "app", AppNameUtil.getAppName(),
+                        "ip", NetUtil.getLocalHostAddress(),
+                        "class", target[0],
+                        "method", target[1])
+                        .record("rt", System.currentTimeMillis() - startTime);
             } catch (Exception e) {
                 log.warn("--- 监控目标方式发生异常", e);
             }
@@ -0,0 +1,18 @@
+package com.isharpever.tool.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 开启监控数据查看接口
+ *
+ * @see MetricsController
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Import(MetricsController.class)
+public @interface EnableMetricsEndpoint {
+}
@@ -0,0 +1,169 @@
+package com.isharpever.tool.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁耗时直方图(HDR风格的对数-线性分桶)
+ * <br>记录单位为微秒,相对误差约3%,可记录的最大值约19小时,超出的计入最后一个桶
+ * <br>按线程分散到多个条带(stripe)记录,记录路径上只有一次无竞争的原子自增;
+ * {@link #snapshotAndReset()}合并各条带并清零,得到这段时间内的分布
+ */
+public class LatencyHistogram {
+
+    /** 每个数量级内的子桶数 = 2^SUB_BUCKET_BITS */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** 最大数量级(2^36微秒) */
+    private static final int MAX_MAGNITUDE = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private static final int STRIPE_COUNT;
+
+    static {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+        int stripes = 1;
+        while (stripes < processors) {
+            stripes <<= 1;
+        }
+        STRIPE_COUNT = stripes;
+    }
+
+    private final AtomicLongArray[] stripes;
+
+    public LatencyHistogram() {
+        this.stripes = new AtomicLongArray[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            this.stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时(纳秒),负值按0记录
+     */
+    public void recordNanos(long nanos) {
+        record(nanos <= 0 ? 0 : nanos / 1000);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros 耗时(微秒),负值按0记录
+     */
+    public void record(long micros) {
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPE_COUNT - 1));
+        stripes[stripe].incrementAndGet(bucketIndex(micros));
+    }
+
+    /**
+     * 合并各条带并清零,返回自上次调用以来的分布
+     */
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (stripe.get(i) != 0) {
+                    long count = stripe.getAndSet(i, 0);
+                    counts[i] += count;
+                    total += count;
+                }
+            }
+        }
+        return new Snapshot(counts, total);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * 桶的代表值:桶内区间的中点
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lower = ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    /**
+     * 直方图快照,数值单位为微秒
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts, long count) {
+            this.counts = counts;
+            this.count = count;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 返回指定分位的值
+         *
+         * @param quantile 分位,取值(0,1],如0.99
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketValue(i);
+                }
+            }
+            return getMax();
+        }
+
+        public long getP50() {
+            return getValueAtQuantile(0.5);
+        }
+
+        public long getP99() {
+            return getValueAtQuantile(0.99);
+        }
+
+        public long getP999() {
+            return getValueAtQuantile(0.999);
+        }
+
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return bucketValue(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", p50=" + getP50() + "us, p99=" + getP99() + "us, p999="
+                    + getP999() + "us, max=" + getMax() + "us";
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.isharpever.tool.metrics;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 把监控数据以influxdb行协议格式输出到日志,logger名为isharpever.metrics,可在日志配置中单独输出到文件
+ */
+public class LoggingMetricsReporter implements MetricsReporter {
+    private static final Logger logger = LoggerFactory.getLogger("isharpever.metrics");
+
+    @Override
+    public void report(List<MetricPoint> points) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        for (MetricPoint point : points) {
+            logger.info(point.toString());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.isharpever.tool.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个监控数据点: measurement + tags + fields
+ * <pre>
+ * MetricPoint point = MetricPoint
+ *         .monitorKey("isharpever.threadpool")
+ *         .addTag("name", poolName)
+ *         .addField("activeCount", activeCount)
+ *         .build();
+ * MetricsRegistry.write(point);
+ * </pre>
+ */
+public class MetricPoint {
+
+    private final String measurement;
+    /** 依次为tag名、tag值 */
+    private final String[] tags;
+    private final String[] fieldNames;
+    private final Number[] fieldValues;
+    private final long timestamp;
+
+    MetricPoint(String measurement, String[] tags, String[] fieldNames, Number[] fieldValues,
+            long timestamp) {
+        this.measurement = measurement;
+        this.tags = tags;
+        this.fieldNames = fieldNames;
+        this.fieldValues = fieldValues;
+        this.timestamp = timestamp;
+    }
+
+    public static Builder monitorKey(String measurement) {
+        return new Builder(measurement);
+    }
+
+    public String getMeasurement() {
+        return measurement;
+    }
+
+    public int getTagCount() {
+        return tags.length / 2;
+    }
+
+    public String getTagName(int index) {
+        return tags[index * 2];
+    }
+
+    public String getTagValue(int index) {
+        return tags[index * 2 + 1];
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+
+    public Number getFieldValue(int index) {
+        return fieldValues[index];
+    }
+
+    /**
+     * 产生时间(毫秒)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * influxdb行协议格式: measurement,tag=v field=v timestamp
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(measurement);
+        for (int i = 0; i < getTagCount(); i++) {
+            sb.append(',').append(getTagName(i)).append('=').append(getTagValue(i));
+        }
+        for (int i = 0; i < fieldNames.length; i++) {
+            sb.append(i == 0 ? ' ' : ',').append(fieldNames[i]).append('=').append(fieldValues[i]);
+        }
+        return sb.append(' ').append(timestamp).toString();
+    }
+
+    public static class Builder {
+        private final String measurement;
+        private final List<String> tags = new ArrayList<>(12);
+        private final List<String> fieldNames = new ArrayList<>(8);
+        private final List<Number> fieldValues = new ArrayList<>(8);
+
+        private Builder(String measurement) {
+            this.measurement = measurement;
+        }
+
+        public Builder addTag(String name, String value) {
+            tags.add(name);
+            tags.add(value == null ? "unknown" : value);
+            return this;
+        }
+
+        public Builder addField(String name, Number value) {
+            if (value != null) {
+                fieldNames.add(name);
+                fieldValues.add(value);
+            }
+            return this;
+        }
+
+        public MetricPoint build() {
+            return new MetricPoint(measurement, tags.toArray(new String[0]),
+                    fieldNames.toArray(new String[0]), fieldValues.toArray(new Number[0]),
+                    System.currentTimeMillis());
+        }
+    }
+}
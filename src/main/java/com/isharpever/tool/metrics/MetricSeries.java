@@ -0,0 +1,138 @@
+package com.isharpever.tool.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事件类监控数据(如每次调用的RT)的聚合序列: 同一measurement+tags的事件在进程内聚合,
+ * 每个统计周期输出一次 field_count/field_sum/field_max,而不是每个事件输出一个数据点
+ * <br>由{@link MetricsRegistry#series}获取,调用方可缓存复用(长期无数据被淘汰后,再次记录时自动重新登记);记录路径上不分配对象
+ */
+public class MetricSeries {
+
+    /** 达到序列数上限后返回的空序列,记录的数据被丢弃 */
+    static final MetricSeries NOOP = new MetricSeries(null, new String[0]) {
+        @Override
+        public void record(String field, long value) {
+        }
+    };
+
+    private final String measurement;
+    /** 依次为tag名、tag值 */
+    private final String[] tags;
+    private final Map<String, FieldStat> fields = new ConcurrentHashMap<>(4);
+    /** 连续无数据的统计周期数,用于淘汰不再活跃的序列 */
+    int idleTicks;
+    /** 已被淘汰,再次记录时重新登记,调用方缓存的序列因此仍然有效 */
+    volatile boolean evicted;
+
+    MetricSeries(String measurement, String[] tags) {
+        this.measurement = measurement;
+        this.tags = tags;
+    }
+
+    /**
+     * 记录一个事件值
+     *
+     * @param field 字段名,如rt
+     * @param value 值
+     */
+    public void record(String field, long value) {
+        if (evicted) {
+            MetricSeries current = MetricsRegistry.reattach(this);
+            if (current != this) {
+                current.record(field, value);
+                return;
+            }
+        }
+        FieldStat stat = fields.get(field);
+        if (stat == null) {
+            stat = fields.computeIfAbsent(field, k -> new FieldStat());
+        }
+        stat.record(value);
+    }
+
+    /**
+     * 取出并清零本周期的聚合值,无数据时返回null
+     */
+    MetricPoint snapshotAndReset() {
+        MetricPoint.Builder builder = null;
+        for (Map.Entry<String, FieldStat> entry : fields.entrySet()) {
+            FieldStat stat = entry.getValue();
+            long count = stat.count.sumThenReset();
+            if (count == 0) {
+                continue;
+            }
+            if (builder == null) {
+                builder = MetricPoint.monitorKey(measurement);
+                for (int i = 0; i < tags.length; i += 2) {
+                    builder.addTag(tags[i], tags[i + 1]);
+                }
+            }
+            String field = entry.getKey();
+            long max = stat.max.getAndSet(Long.MIN_VALUE);
+            builder.addField(field + "_count", count)
+                    .addField(field + "_sum", stat.sum.sumThenReset())
+                    .addField(field + "_max", max == Long.MIN_VALUE ? 0 : max);
+        }
+        return builder == null ? null : builder.build();
+    }
+
+    Key key() {
+        return new Key(measurement, tags);
+    }
+
+    private static class FieldStat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private void record(long value) {
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current) {
+                if (max.compareAndSet(current, value)) {
+                    return;
+                }
+                current = max.get();
+            }
+        }
+    }
+
+    /**
+     * 序列的标识: measurement + tags
+     */
+    static class Key {
+        private final String measurement;
+        private final String[] tags;
+        private final int hash;
+
+        Key(String measurement, String[] tags) {
+            this.measurement = measurement;
+            this.tags = tags;
+            this.hash = 31 * measurement.hashCode() + Arrays.hashCode(tags);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && measurement.equals(other.measurement)
+                    && Arrays.equals(tags, other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
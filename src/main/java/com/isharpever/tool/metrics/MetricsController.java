@@ -0,0 +1,26 @@
+package com.isharpever.tool.metrics;
+
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 监控数据查看
+ *
+ * @see EnableMetricsEndpoint
+ */
+@RestController
+@RequestMapping("/isharpever/metrics")
+public class MetricsController {
+
+    /**
+     * Prometheus文本格式的监控数据,需启用prometheus reporter(系统属性isharpever.metrics.reporters包含prometheus)
+     */
+    @RequestMapping(value = "/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String prometheus() {
+        PrometheusMetricsReporter reporter = MetricsRegistry.getReporter(PrometheusMetricsReporter.class);
+        if (reporter == null) {
+            return "# 未启用prometheus reporter\n";
+        }
+        return reporter.scrape();
+    }
+}
@@ -0,0 +1,286 @@
+package com.isharpever.tool.metrics;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.utils.AppNameUtil;
+import com.isharpever.tool.utils.NetUtil;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 进程内监控数据中心: 收集各组件的监控数据,由监控调度线程(ThreadPoolStat-/ConnectionPoolStat-)
+ * 每秒批量交给{@link MetricsReporter}输出
+ * <li>已聚合的数据点(如线程池状态)通过{@link #write}写入有界缓冲区,缓冲区满时丢弃并计数
+ * <li>事件类数据(如每次调用的RT)通过{@link #series}在进程内聚合,序列数达到上限后丢弃并计数
+ * <br>写入方永远不会被阻塞,监控不会反压业务线程
+ * <br>可通过系统属性配置:
+ * <li>isharpever.metrics.reporters 输出端,逗号分隔,可选logging/prometheus,默认logging
+ * <li>isharpever.metrics.buffer.capacity 缓冲区容量,默认4096
+ * <li>isharpever.metrics.series.max 聚合序列数上限,默认5000
+ */
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    /** 监控数据中心自身的监控数据的measurement */
+    private static final String SELF_MEASUREMENT = "isharpever.metrics";
+    /** 每批交给reporter的最大数据点数 */
+    private static final int BATCH_SIZE = 512;
+    /** 序列连续多少个统计周期无数据后被淘汰 */
+    private static final int SERIES_IDLE_TICKS = 300;
+
+    private static final int BUFFER_CAPACITY = Integer.getInteger("isharpever.metrics.buffer.capacity", 4096);
+    private static final int MAX_SERIES = Integer.getInteger("isharpever.metrics.series.max", 5000);
+
+    private static final ArrayBlockingQueue<MetricPoint> BUFFER = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+    private static final ConcurrentHashMap<MetricSeries.Key, MetricSeries> SERIES_REGISTRY = new ConcurrentHashMap<>(64);
+    private static final List<MetricsReporter> REPORTERS = new CopyOnWriteArrayList<>();
+
+    /** 因缓冲区满丢弃的数据点数 */
+    private static final LongAdder DROPPED_POINTS = new LongAdder();
+    /** 因序列数达到上限丢弃的序列创建次数 */
+    private static final LongAdder DROPPED_SERIES = new LongAdder();
+    /** reporter输出失败次数 */
+    private static final LongAdder REPORT_FAILURES = new LongAdder();
+
+    /** 前一次输出的值:丢弃的数据点数 */
+    private static long previousDroppedPoints;
+    /** 前一次输出的值:丢弃的序列创建次数 */
+    private static long previousDroppedSeries;
+    /** 前一次输出的值:reporter输出失败次数 */
+    private static long previousReportFailures;
+
+    private static final ReentrantLock FLUSH_LOCK = new ReentrantLock();
+    /** 批次对象,只在持有FLUSH_LOCK时使用 */
+    private static final List<MetricPoint> BATCH = new ArrayList<>(BATCH_SIZE);
+
+    static {
+        loadReporters();
+        ExecutorServiceUtil.scheduleStatTask(MetricsRegistry::flush);
+    }
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * 写入一个已聚合的数据点,缓冲区满时丢弃
+     *
+     * @return 是否写入成功
+     */
+    public static boolean write(MetricPoint point) {
+        if (BUFFER.offer(point)) {
+            return true;
+        }
+        DROPPED_POINTS.increment();
+        return false;
+    }
+
+    /**
+     * 返回指定measurement+tags的事件聚合序列,不存在则创建;序列数达到上限时返回一个丢弃数据的空序列
+     *
+     * @param measurement measurement
+     * @param tags 依次为tag名、tag值
+     */
+    public static MetricSeries series(String measurement, String... tags) {
+        for (int i = 1; i < tags.length; i += 2) {
+            if (tags[i] == null) {
+                tags[i] = "unknown";
+            }
+        }
+        MetricSeries.Key key = new MetricSeries.Key(measurement, tags);
+        MetricSeries series = SERIES_REGISTRY.get(key);
+        if (series != null) {
+            return series;
+        }
+        if (SERIES_REGISTRY.size() >= MAX_SERIES) {
+            DROPPED_SERIES.increment();
+            return MetricSeries.NOOP;
+        }
+        return SERIES_REGISTRY.computeIfAbsent(key, k -> new MetricSeries(measurement, tags));
+    }
+
+    /**
+     * 被淘汰的序列再次记录数据时重新登记;期间已有同一measurement+tags的新序列时返回新序列
+     */
+    static MetricSeries reattach(MetricSeries series) {
+        MetricSeries.Key key = series.key();
+        MetricSeries current = SERIES_REGISTRY.get(key);
+        if (current != null) {
+            return current;
+        }
+        if (SERIES_REGISTRY.size() >= MAX_SERIES) {
+            DROPPED_SERIES.increment();
+            return MetricSeries.NOOP;
+        }
+        series.idleTicks = 0;
+        current = SERIES_REGISTRY.putIfAbsent(key, series);
+        if (current != null) {
+            return current;
+        }
+        series.evicted = false;
+        return series;
+    }
+
+    public static void addReporter(MetricsReporter reporter) {
+        REPORTERS.add(reporter);
+    }
+
+    public static void removeReporter(MetricsReporter reporter) {
+        REPORTERS.remove(reporter);
+    }
+
+    /**
+     * 返回已注册的指定类型的reporter,没有则返回null
+     */
+    public static <T extends MetricsReporter> T getReporter(Class<T> type) {
+        for (MetricsReporter reporter : REPORTERS) {
+            if (type.isInstance(reporter)) {
+                return type.cast(reporter);
+            }
+        }
+        return null;
+    }
+
+    public static long getDroppedPoints() {
+        return DROPPED_POINTS.sum();
+    }
+
+    public static long getDroppedSeries() {
+        return DROPPED_SERIES.sum();
+    }
+
+    /**
+     * 把缓冲区及各聚合序列的数据批量交给reporter<br>
+     * 由监控调度线程调用,若其他线程正在输出则直接返回
+     */
+    public static void flush() {
+        if (!FLUSH_LOCK.tryLock()) {
+            return;
+        }
+        try {
+            // 聚合序列
+            Iterator<Map.Entry<MetricSeries.Key, MetricSeries>> iterator = SERIES_REGISTRY.entrySet().iterator();
+            while (iterator.hasNext()) {
+                MetricSeries series = iterator.next().getValue();
+                MetricPoint point = series.snapshotAndReset();
+                if (point == null) {
+                    if (++series.idleTicks > SERIES_IDLE_TICKS) {
+                        iterator.remove();
+                        series.evicted = true;
+                        // 判断空闲后、标记淘汰前记录的数据
+                        point = series.snapshotAndReset();
+                        if (point != null) {
+                            addToBatch(point);
+                        }
+                    }
+                    continue;
+                }
+                series.idleTicks = 0;
+                addToBatch(point);
+            }
+
+            // 缓冲区,只取本次开始时已有的数据,避免持续写入时无法结束
+            int remaining = BUFFER.size();
+            while (remaining > 0) {
+                int drained = BUFFER.drainTo(BATCH, Math.min(remaining, BATCH_SIZE - BATCH.size()));
+                if (drained == 0) {
+                    break;
+                }
+                remaining -= drained;
+                if (BATCH.size() >= BATCH_SIZE) {
+                    report();
+                }
+            }
+
+            // 自身的监控数据
+            writeSelfPoint();
+            report();
+        } catch (Exception e) {
+            logger.warn("--- 输出监控数据异常", e);
+        } finally {
+            BATCH.clear();
+            FLUSH_LOCK.unlock();
+        }
+    }
+
+    private static void writeSelfPoint() {
+        long droppedPoints = DROPPED_POINTS.sum();
+        long droppedSeries = DROPPED_SERIES.sum();
+        long reportFailures = REPORT_FAILURES.sum();
+
+        // 没有发生变化的话,没必要输出
+        if (droppedPoints == previousDroppedPoints
+                && droppedSeries == previousDroppedSeries
+                && reportFailures == previousReportFailures) {
+            return;
+        }
+        addToBatch(MetricPoint
+                .monitorKey(SELF_MEASUREMENT)
+                .addTag("app", AppNameUtil.getAppName())
+                .addTag("ip", NetUtil.getLocalHostAddress())
+                .addField("droppedPoints", droppedPoints - previousDroppedPoints)
+                .addField("droppedSeries", droppedSeries - previousDroppedSeries)
+                .addField("reportFailures", reportFailures - previousReportFailures)
+                .addField("series", SERIES_REGISTRY.size())
+                .build());
+
+        previousDroppedPoints = droppedPoints;
+        previousDroppedSeries = droppedSeries;
+        previousReportFailures = reportFailures;
+    }
+
+    private static void addToBatch(MetricPoint point) {
+        BATCH.add(point);
+        if (BATCH.size() >= BATCH_SIZE) {
+            report();
+        }
+    }
+
+    private static void report() {
+        if (BATCH.isEmpty()) {
+            return;
+        }
+        for (MetricsReporter reporter : REPORTERS) {
+            try {
+                reporter.report(BATCH);
+            } catch (Exception e) {
+                REPORT_FAILURES.increment();
+                logger.warn("--- MetricsReporter输出异常 reporter={}", reporter.getClass().getName(), e);
+            }
+        }
+        BATCH.clear();
+    }
+
+    /**
+     * 加载reporter: 系统属性指定的内置reporter + ServiceLoader声明的reporter
+     */
+    private static void loadReporters() {
+        String names = System.getProperty("isharpever.metrics.reporters", "logging");
+        for (String name : StringUtils.split(names, ',')) {
+            name = name.trim();
+            if ("logging".equalsIgnoreCase(name)) {
+                REPORTERS.add(new LoggingMetricsReporter());
+            } else if ("prometheus".equalsIgnoreCase(name)) {
+                REPORTERS.add(new PrometheusMetricsReporter());
+            } else if (StringUtils.isNotBlank(name)) {
+                logger.warn("--- 未知的MetricsReporter: {}", name);
+            }
+        }
+        try {
+            for (MetricsReporter reporter : ServiceLoader.load(MetricsReporter.class)) {
+                REPORTERS.add(reporter);
+            }
+        } catch (Throwable e) {
+            logger.warn("--- 加载MetricsReporter异常", e);
+        }
+    }
+}
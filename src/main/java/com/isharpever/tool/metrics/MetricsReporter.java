@@ -0,0 +1,19 @@
+package com.isharpever.tool.metrics;
+
+import java.util.List;
+
+/**
+ * 监控数据输出端(SPI)
+ * <br>实现类可通过{@link MetricsRegistry#addReporter}注册,
+ * 或在META-INF/services/com.isharpever.tool.metrics.MetricsReporter中声明,由{@link java.util.ServiceLoader}加载
+ * <br>在监控调度线程中被调用,不应长时间阻塞
+ */
+public interface MetricsReporter {
+
+    /**
+     * 输出一批监控数据,批次对象会被复用,实现类不应在方法返回后继续持有
+     *
+     * @param points 监控数据
+     */
+    void report(List<MetricPoint> points);
+}
@@ -0,0 +1,150 @@
+package com.isharpever.tool.metrics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以Prometheus文本格式暴露监控数据,由{@link #scrape()}输出
+ * <br>指标名为measurement_field(非法字符替换为_),tags作为label:
+ * <li>{@link MetricSeries}每个统计周期输出的field_count、field_sum累加为counter,指标名加_total,可用rate()/increase()计算
+ * <li>其他字段(field_max及poolSize、queueSize等当前值)为gauge,保存最新值
+ * <br>样本数有上限,超出的新样本被丢弃并计数;超过5分钟未更新的样本被移除
+ *
+ * @see MetricsController
+ */
+public class PrometheusMetricsReporter implements MetricsReporter {
+
+    private static final long EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final int maxSamples;
+    /** key为样本标识 name{label="v",...} */
+    private final ConcurrentHashMap<String, Sample> samples = new ConcurrentHashMap<>(256);
+    private final LongAdder droppedSamples = new LongAdder();
+
+    public PrometheusMetricsReporter() {
+        this(Integer.getInteger("isharpever.metrics.prometheus.samples.max", 20000));
+    }
+
+    public PrometheusMetricsReporter(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    @Override
+    public void report(List<MetricPoint> points) {
+        long now = System.currentTimeMillis();
+        StringBuilder labels = new StringBuilder(128);
+        for (MetricPoint point : points) {
+            labels.setLength(0);
+            for (int i = 0; i < point.getTagCount(); i++) {
+                labels.append(i == 0 ? '{' : ',').append(sanitize(point.getTagName(i))).append("=\"");
+                escape(labels, point.getTagValue(i));
+                labels.append('"');
+            }
+            if (labels.length() > 0) {
+                labels.append('}');
+            }
+
+            String measurement = sanitize(point.getMeasurement());
+            for (int i = 0; i < point.getFieldCount(); i++) {
+                String field = point.getFieldName(i);
+                boolean counter = field.endsWith("_count") || field.endsWith("_sum");
+                String name = measurement + '_' + sanitize(field) + (counter ? "_total" : "");
+                String id = name + labels;
+                Sample sample = samples.get(id);
+                if (sample == null) {
+                    if (samples.size() >= maxSamples) {
+                        droppedSamples.increment();
+                        continue;
+                    }
+                    sample = samples.computeIfAbsent(id, k -> new Sample(name, counter));
+                }
+                double value = point.getFieldValue(i).doubleValue();
+                if (sample.counter) {
+                    // 只在上报线程上更新
+                    sample.value += value;
+                } else {
+                    sample.value = value;
+                }
+                sample.updateTime = now;
+            }
+        }
+
+        // 移除长时间未更新的样本
+        Iterator<Map.Entry<String, Sample>> iterator = samples.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue().updateTime > EXPIRE_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 返回Prometheus文本格式的全部样本
+     */
+    public String scrape() {
+        List<Map.Entry<String, Sample>> entries = new ArrayList<>(samples.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+
+        StringBuilder result = new StringBuilder(entries.size() * 64);
+        String previousName = null;
+        for (Map.Entry<String, Sample> entry : entries) {
+            Sample sample = entry.getValue();
+            if (!sample.name.equals(previousName)) {
+                result.append("# TYPE ").append(sample.name).append(sample.counter ? " counter\n" : " gauge\n");
+                previousName = sample.name;
+            }
+            result.append(entry.getKey()).append(' ').append(sample.value).append('\n');
+        }
+        result.append("# TYPE isharpever_metrics_prometheus_dropped_samples_total counter\n")
+                .append("isharpever_metrics_prometheus_dropped_samples_total ").append(droppedSamples.sum())
+                .append('\n');
+        return result.toString();
+    }
+
+    private static String sanitize(String name) {
+        StringBuilder sb = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            if (!valid && sb == null) {
+                sb = new StringBuilder(name);
+            }
+            if (!valid) {
+                sb.setCharAt(i, '_');
+            }
+        }
+        return sb == null ? name : sb.toString();
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static class Sample {
+        private final String name;
+        /** 为true时value为累计值 */
+        private final boolean counter;
+        private volatile double value;
+        private volatile long updateTime;
+
+        private Sample(String name, boolean counter) {
+            this.name = name;
+            this.counter = counter;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.isharpever.tool.redis;
 
 import com.alibaba.fastjson.JSON;
-import com.google.common.collect.Lists;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
@@ -29,9 +28,20 @@ public abstract class AbstractCacheManager<VT> {
      */
     private static final String SHADOW_PREFIX = "__test_";
 
+    /**
+     * 重新读取key前缀属性的间隔
+     */
+    private static final long PREFIX_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     @Autowired
     private Environment environment;
 
+    /**
+     * 按当前key前缀属性生成key,每隔1秒重新读取属性,属性变化时替换
+     */
+    private volatile RedisKeyBuilder keyBuilder;
+    private volatile long prefixRefreshNanos;
+
     /**
      * 写入redis
      *
@@ -74,12 +84,13 @@ public abstract class AbstractCacheManager<VT> {
         }
     }
 
+    /**
+     * key不存在时写入并设置过期时间,一条SET NX PX命令
+     */
     public boolean putAbsentWithExpire(String key, VT value, long expire, TimeUnit timeUnit) {
         try {
-            if (getRedisTemplate().opsForValue().setIfAbsent(key, value)) {
-                getRedisTemplate().expire(key, expire, timeUnit);
-                return true;
-            }
+            return Boolean.TRUE.equals(getRedisTemplate().opsForValue()
+                    .setIfAbsent(this.buildRedisKey(key), value, expire, timeUnit));
         } catch (Exception e) {
             log.error("--- CacheManager.putAbsentWithExpire异常 key={} value={} expire={} timeUnit={}",
                     key, JSON.toJSONString(value), expire, timeUnit);
@@ -93,19 +104,36 @@ public abstract class AbstractCacheManager<VT> {
     protected abstract RedisTemplate<String, VT> getRedisTemplate();
 
     public String buildRedisKey(String key) {
-        String realKey = key;
-        String keyPrefix = environment.getProperty(KEY_PREFIX_PROPERTY_NAME);
-        if (StringUtils.isNotBlank(keyPrefix)) {
-            realKey = String.format("%s:%s", keyPrefix, key);
-        }
-        return realKey;
+        return this.getKeyBuilder().build(key);
+    }
+
+    /**
+     * 生成key并编码为UTF-8字节,见{@link RedisKeyBuilder#buildBytes}
+     */
+    public byte[] buildRedisKeyBytes(String key) {
+        return this.getKeyBuilder().buildBytes(key);
     }
 
     private List<String> buildRedisKey(List<String> keys) {
-        List<String> results = Lists.newArrayListWithCapacity(keys.size());
-        for (String key : keys) {
-            results.add(buildRedisKey(key));
+        return this.getKeyBuilder().build(keys);
+    }
+
+    /**
+     * 返回按key前缀属性(redis.key.prefix)生成key的RedisKeyBuilder,属性值变化后最迟1秒生效
+     */
+    private RedisKeyBuilder getKeyBuilder() {
+        RedisKeyBuilder builder = this.keyBuilder;
+        long now = System.nanoTime();
+        if (builder != null && now - prefixRefreshNanos < 0) {
+            return builder;
+        }
+        String keyPrefix = environment.getProperty(KEY_PREFIX_PROPERTY_NAME);
+        keyPrefix = StringUtils.isNotBlank(keyPrefix) ? keyPrefix : null;
+        if (builder == null || !StringUtils.equals(keyPrefix, builder.getPrefix())) {
+            builder = new RedisKeyBuilder(keyPrefix, ':');
+            this.keyBuilder = builder;
         }
-        return results;
+        this.prefixRefreshNanos = now + PREFIX_REFRESH_INTERVAL_NANOS;
+        return builder;
     }
 }
@@ -0,0 +1,26 @@
+package com.isharpever.tool.redis;
+
+/**
+ * 缓存值编解码器,由{@link CodecRedisSerializer}使用
+ * <br>内置jdk、fastjson两种;其他实现(如Kryo/Protostuff)可通过ServiceLoader
+ * (META-INF/services/com.isharpever.tool.redis.CacheCodec)声明,id不能与内置的重复
+ */
+public interface CacheCodec {
+
+    /**
+     * 编号,写入值的头部,读取时据此选择编解码器;1~15保留给内置实现
+     */
+    byte getId();
+
+    /**
+     * 名称,用于配置(redis.value.codec)
+     */
+    String getName();
+
+    byte[] encode(Object value) throws Exception;
+
+    /**
+     * @param bytes 编码后的数据,从offset开始的length个字节
+     */
+    Object decode(byte[] bytes, int offset, int length) throws Exception;
+}
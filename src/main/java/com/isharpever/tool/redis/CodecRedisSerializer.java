@@ -0,0 +1,184 @@
+package com.isharpever.tool.redis;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ServiceLoader;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 可切换编解码器的RedisSerializer,写入的值带3字节头部: 魔数0xCE、编解码器id、标志位(是否压缩)
+ * <li>读取时按头部中的id选择编解码器,不同编解码器写入的值可以共存
+ * <li>没有头部的值(JDK序列化的旧值,以0xAC开头)仍按JDK序列化读取
+ * <li>编码后超过compressThreshold字节时用Deflater(BEST_SPEED)压缩,压缩后变小才保存压缩结果,
+ * 压缩时头部之后为4字节的原始长度
+ * <br>迁移步骤: 先在所有节点使用不指定codec的实例(写入旧格式、可读新格式),再切换为指定codec的实例
+ *
+ * @see CacheCodec
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+    private static final Logger logger = LoggerFactory.getLogger(CodecRedisSerializer.class);
+
+    static final byte MAGIC = (byte) 0xCE;
+    private static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_LENGTH = 3;
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    /** 写入用的编解码器,为null时按旧格式(JDK序列化,无头部)写入 */
+    private final CacheCodec codec;
+    /** 超过此字节数时压缩,不大于0表示不压缩 */
+    private final int compressThreshold;
+    /** 按id索引的编解码器 */
+    private final CacheCodec[] codecs = new CacheCodec[256];
+    private final JdkSerializationRedisSerializer legacySerializer = new JdkSerializationRedisSerializer();
+
+    /**
+     * 按旧格式写入,可读取任意格式
+     * <br>默认登记的fastjson编解码器不允许按@type反序列化业务类(解析为JSONObject),
+     * 需通过{@link #register}登记带acceptPackages的实例,见{@link RedisTemplateConfiguration#valueSerializer}
+     */
+    public CodecRedisSerializer() {
+        this(null, 0);
+    }
+
+    /**
+     * @param codec 写入用的编解码器,同时用于读取
+     * @param compressThreshold 超过此字节数时压缩,不大于0表示不压缩
+     */
+    public CodecRedisSerializer(CacheCodec codec, int compressThreshold) {
+        this.codec = codec;
+        this.compressThreshold = compressThreshold;
+        register(new JdkCacheCodec());
+        register(new FastjsonCacheCodec());
+        try {
+            for (CacheCodec loaded : ServiceLoader.load(CacheCodec.class)) {
+                register(loaded);
+            }
+        } catch (Throwable e) {
+            logger.warn("--- 加载CacheCodec异常", e);
+        }
+        if (codec != null) {
+            register(codec);
+        }
+    }
+
+    /**
+     * 登记用于读取的编解码器,同id的以后登记的为准
+     */
+    public CodecRedisSerializer register(CacheCodec codec) {
+        codecs[codec.getId() & 0xFF] = codec;
+        return this;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        if (codec == null) {
+            return legacySerializer.serialize(value);
+        }
+        byte[] data;
+        try {
+            data = codec.encode(value);
+        } catch (Exception e) {
+            throw new SerializationException("Cannot serialize with " + codec.getName(), e);
+        }
+        if (compressThreshold > 0 && data.length > compressThreshold) {
+            byte[] compressed = deflate(data);
+            if (compressed.length + 4 < data.length) {
+                byte[] result = new byte[HEADER_LENGTH + 4 + compressed.length];
+                writeHeader(result, FLAG_DEFLATE);
+                writeInt(result, HEADER_LENGTH, data.length);
+                System.arraycopy(compressed, 0, result, HEADER_LENGTH + 4, compressed.length);
+                return result;
+            }
+        }
+        byte[] result = new byte[HEADER_LENGTH + data.length];
+        writeHeader(result, (byte) 0);
+        System.arraycopy(data, 0, result, HEADER_LENGTH, data.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC || bytes.length < HEADER_LENGTH) {
+            return legacySerializer.deserialize(bytes);
+        }
+        CacheCodec reader = codecs[bytes[1] & 0xFF];
+        if (reader == null) {
+            throw new SerializationException("Unknown codec id " + (bytes[1] & 0xFF));
+        }
+        try {
+            if ((bytes[2] & FLAG_DEFLATE) != 0) {
+                byte[] data = inflate(bytes, HEADER_LENGTH + 4, readInt(bytes, HEADER_LENGTH));
+                return reader.decode(data, 0, data.length);
+            }
+            return reader.decode(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        } catch (Exception e) {
+            throw new SerializationException("Cannot deserialize with " + reader.getName(), e);
+        }
+    }
+
+    private void writeHeader(byte[] result, byte flags) {
+        result[0] = MAGIC;
+        result[1] = codec.getId();
+        result[2] = flags;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int originalLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] data = new byte[originalLength];
+            int length = 0;
+            while (length < originalLength) {
+                int count = inflater.inflate(data, length, originalLength - length);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("Truncated data, expected " + originalLength + " got " + length);
+                }
+                length += count;
+            }
+            return data;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.isharpever.tool.redis;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * fastjson编码,带类名(@type),比JDK序列化体积小、速度快,值无需实现Serializable,需有getter/setter
+ * <br>出于安全考虑,只有acceptPackages中的类可以按@type反序列化,其他类解析为JSONObject
+ * <br>顶层为数值时解析结果的类型可能与写入时不同(如Long解析为Integer),适合对象类型的值
+ */
+public class FastjsonCacheCodec implements CacheCodec {
+
+    public static final byte ID = 2;
+
+    private final ParserConfig parserConfig = new ParserConfig();
+
+    /**
+     * @param acceptPackages 允许按@type反序列化的包名前缀,如com.isharpever.
+     */
+    public FastjsonCacheCodec(String... acceptPackages) {
+        // CacheManager提前刷新时缓存值的包装类
+        parserConfig.addAccept("com.isharpever.tool.cache.EarlyRefreshValue");
+        for (String acceptPackage : acceptPackages) {
+            parserConfig.addAccept(acceptPackage);
+        }
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "fastjson";
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value, SerializerFeature.WriteClassName);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        return JSON.parseObject(new String(bytes, offset, length, StandardCharsets.UTF_8), Object.class,
+                parserConfig);
+    }
+}
@@ -0,0 +1,40 @@
+package com.isharpever.tool.redis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * JDK序列化,值需实现Serializable
+ */
+public class JdkCacheCodec implements CacheCodec {
+
+    public static final byte ID = 1;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "jdk";
+    }
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(value);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws Exception {
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return objectIn.readObject();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.isharpever.tool.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带前缀的redis key生成,前缀及分隔符预先拼接好,生成key时只有一次拼接,不使用String.format
+ * <li>{@link #build(String)} 返回 前缀+分隔符+key,前缀为null时返回key本身
+ * <li>{@link #buildBytes(String)} 直接编码为UTF-8字节(与StringRedisSerializer一致),不生成中间的String,
+ * 用于直接操作RedisConnection的场景
+ * <br>实例不可变,可在线程间共享;前缀变化时创建新实例
+ */
+public final class RedisKeyBuilder {
+
+    private final String prefix;
+    /** 前缀+分隔符,无前缀时为空串 */
+    private final String head;
+    private final byte[] headBytes;
+
+    /**
+     * @param prefix 前缀,为null时不加前缀
+     * @param separator 前缀与key之间的分隔符
+     */
+    public RedisKeyBuilder(String prefix, char separator) {
+        this.prefix = prefix;
+        this.head = prefix == null ? "" : prefix + separator;
+        this.headBytes = head.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String build(String key) {
+        // key为null时与String.format一致,拼接为"null"
+        return head.isEmpty() ? key : head.concat(String.valueOf(key));
+    }
+
+    public List<String> build(List<String> keys) {
+        List<String> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            results.add(this.build(key));
+        }
+        return results;
+    }
+
+    /**
+     * 生成key并编码为UTF-8字节,key为null时与{@link #build(String)}一致
+     */
+    public byte[] buildBytes(String key) {
+        if (key == null) {
+            String built = this.build((String) null);
+            return built == null ? null : built.getBytes(StandardCharsets.UTF_8);
+        }
+        int length = key.length();
+        byte[] bytes = new byte[headBytes.length + length];
+        System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) {
+                // 含非ASCII字符,按UTF-8编码后拼接
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                byte[] result = new byte[headBytes.length + keyBytes.length];
+                System.arraycopy(headBytes, 0, result, 0, headBytes.length);
+                System.arraycopy(keyBytes, 0, result, headBytes.length, keyBytes.length);
+                return result;
+            }
+            bytes[headBytes.length + i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+}
@@ -1,16 +1,23 @@
 package com.isharpever.tool.redis;
 
 import java.io.Serializable;
+import java.util.ServiceLoader;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
  * 配置RedisTemplate bean
+ * <br>值的编解码由以下属性配置,见{@link CodecRedisSerializer}:
+ * <li>redis.value.codec 写入用的编解码器: jdk/fastjson/ServiceLoader声明的编解码器名称,
+ * 不配置时按旧格式(JDK序列化)写入,可读取任意格式
+ * <li>redis.value.compress.threshold 编码后超过此字节数时压缩,默认0(不压缩)
+ * <li>redis.value.fastjson.accept fastjson允许按@type反序列化的包名前缀,逗号分隔,不论写入用哪种编解码器都用于读取
  *
  * @author yinxiaolin
  * @date 2020/03/13
@@ -20,11 +27,47 @@ public class RedisTemplateConfiguration {
 
     @Bean
     @ConditionalOnMissingBean(name = "redisTemplate")
-    public RedisTemplate<String, Serializable> redisTemplate(RedisConnectionFactory factory) {
+    public RedisTemplate<String, Serializable> redisTemplate(RedisConnectionFactory factory, Environment environment) {
         RedisTemplate<String, Serializable> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new JdkSerializationRedisSerializer());
+        template.setValueSerializer(valueSerializer(environment));
         return template;
     }
+
+    /**
+     * 按配置创建值的RedisSerializer
+     * <br>不论写入用哪种编解码器,读取fastjson格式的值时都按redis.value.fastjson.accept反序列化,
+     * 使各节点可以先后切换编解码器
+     */
+    public static CodecRedisSerializer valueSerializer(Environment environment) {
+        String[] acceptPackages = StringUtils.split(environment.getProperty("redis.value.fastjson.accept", ""), ',');
+        FastjsonCacheCodec fastjsonCodec = new FastjsonCacheCodec(StringUtils.stripAll(acceptPackages));
+        String codecName = environment.getProperty("redis.value.codec");
+        if (StringUtils.isBlank(codecName)) {
+            return new CodecRedisSerializer().register(fastjsonCodec);
+        }
+        int compressThreshold = environment.getProperty("redis.value.compress.threshold", Integer.class, 0);
+        CacheCodec codec;
+        if ("jdk".equalsIgnoreCase(codecName)) {
+            codec = new JdkCacheCodec();
+        } else if ("fastjson".equalsIgnoreCase(codecName)) {
+            codec = fastjsonCodec;
+        } else {
+            codec = null;
+            for (CacheCodec loaded : ServiceLoader.load(CacheCodec.class)) {
+                if (codecName.equalsIgnoreCase(loaded.getName())) {
+                    codec = loaded;
+                }
+            }
+            if (codec == null) {
+                throw new IllegalArgumentException("未知的redis.value.codec: " + codecName);
+            }
+        }
+        CodecRedisSerializer serializer = new CodecRedisSerializer(codec, compressThreshold);
+        if (codec.getId() != FastjsonCacheCodec.ID) {
+            serializer.register(fastjsonCodec);
+        }
+        return serializer;
+    }
 }
@@ -0,0 +1,19 @@
+-- 读锁: KEYS[1]=锁的key(hash), ARGV[1]=持有者uuid, ARGV[2]=租约(毫秒)
+-- hash中 w=写锁持有者, ww=等待中的写锁截止时间, r:{uuid}=读锁持有者的过期时间
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[2])
+if redis.call('HEXISTS', KEYS[1], 'w') == 1 then
+    return 'FAIL'
+end
+-- 有写锁在等待时不再加读锁,避免写锁饿死
+local waiting = redis.call('HGET', KEYS[1], 'ww')
+if waiting and tonumber(waiting) > now then
+    return 'FAIL'
+end
+redis.call('HSET', KEYS[1], 'r:' .. ARGV[1], now + lease)
+if redis.call('PTTL', KEYS[1]) < lease then
+    redis.call('PEXPIRE', KEYS[1], lease)
+end
+return 'OK'
@@ -0,0 +1,2 @@
+-- 释放读锁: KEYS[1]=锁的key(hash), ARGV[1]=持有者uuid
+return redis.call('HDEL', KEYS[1], 'r:' .. ARGV[1])
@@ -0,0 +1,31 @@
+-- 写锁: KEYS[1]=锁的key(hash), ARGV[1]=持有者uuid, ARGV[2]=租约(毫秒)
+-- 先清除已过期的读锁,仍有读锁时记录等待中的写锁(ww),阻止新的读锁
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[2])
+if redis.call('HEXISTS', KEYS[1], 'w') == 1 then
+    return 'FAIL'
+end
+local readers = 0
+local fields = redis.call('HGETALL', KEYS[1])
+for i = 1, #fields, 2 do
+    if string.sub(fields[i], 1, 2) == 'r:' then
+        if tonumber(fields[i + 1]) <= now then
+            redis.call('HDEL', KEYS[1], fields[i])
+        else
+            readers = readers + 1
+        end
+    end
+end
+if readers > 0 then
+    redis.call('HSET', KEYS[1], 'ww', now + lease)
+    if redis.call('PTTL', KEYS[1]) < lease then
+        redis.call('PEXPIRE', KEYS[1], lease)
+    end
+    return 'FAIL'
+end
+redis.call('HDEL', KEYS[1], 'ww')
+redis.call('HSET', KEYS[1], 'w', ARGV[1])
+redis.call('PEXPIRE', KEYS[1], lease)
+return 'OK'
@@ -0,0 +1,5 @@
+-- 释放写锁: KEYS[1]=锁的key(hash), ARGV[1]=持有者uuid
+if redis.call('HGET', KEYS[1], 'w') == ARGV[1] then
+    return redis.call('HDEL', KEYS[1], 'w')
+end
+return 0
@@ -0,0 +1,15 @@
+-- 获取一个许可: KEYS[1]=信号量的key(zset), ARGV[1]=持有者uuid, ARGV[2]=租约(毫秒), ARGV[3]=许可总数
+-- zset中 member=持有者uuid, score=许可的过期时间,先清除已过期的许可
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[2])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+    return 'FAIL'
+end
+redis.call('ZADD', KEYS[1], now + lease, ARGV[1])
+if redis.call('PTTL', KEYS[1]) < lease then
+    redis.call('PEXPIRE', KEYS[1], lease)
+end
+return 'OK'
@@ -0,0 +1,2 @@
+-- 释放许可: KEYS[1]=信号量的key(zset), ARGV[1]=持有者uuid
+return redis.call('ZREM', KEYS[1], ARGV[1])
@@ -0,0 +1,90 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.CacheService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * N个key的读取: 逐个同步读取与异步并发读取后组合的耗时(us/op)
+ * <br>每次读取固定耗时rtt微秒,模拟一次网络往返(不需要redis);运行main方法执行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheAsyncBenchmark {
+
+    /** 一次读取的key数 */
+    @Param({"1", "5", "20"})
+    private int n;
+
+    /** 模拟的往返耗时(微秒) */
+    @Param({"200", "1000"})
+    private int rtt;
+
+    private CacheService cacheService;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        long rttNanos = TimeUnit.MICROSECONDS.toNanos(rtt);
+        RedisTemplate<String, Object> template = RedisTestSupport.redisTemplate((proxy, method, args) -> {
+            LockSupport.parkNanos(rttNanos);
+            return args[0];
+        });
+        cacheService = new CacheService();
+        RedisTestSupport.setField(cacheService, "redisTemplate", template);
+
+        keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = "key_" + i;
+        }
+    }
+
+    @Benchmark
+    public List<Object> serial() {
+        List<Object> values = new ArrayList<>(n);
+        for (String key : keys) {
+            values.add(cacheService.getCache(key));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public List<Object> parallel() {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(n);
+        for (String key : keys) {
+            futures.add(cacheService.getCacheAsync(key));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        List<Object> values = new ArrayList<>(n);
+        for (CompletableFuture<Object> future : futures) {
+            values.add(future.join());
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CacheAsyncBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,179 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.CacheManager;
+import com.isharpever.tool.cache.CacheService;
+import com.isharpever.tool.redis.AbstractCacheManager;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * putAbsentWithExpire、带过期时间的increment: 一次往返,写入与过期时间原子生效
+ * <br>以内存中的{@link FakeRedis}代替redis: 每条命令(含lua脚本)在同一把锁内执行并计数,与redis单线程执行命令的语义一致
+ */
+public class CacheAtomicWriteTest {
+
+    private FakeRedis redis;
+    private CacheService cacheService;
+
+    @Before
+    public void setUp() throws Exception {
+        redis = new FakeRedis();
+        cacheService = new CacheService();
+        RedisTestSupport.setField(cacheService, "redisTemplate", redis.redisTemplate());
+        RedisTestSupport.setField(cacheService, "stringRedisTemplate", redis.stringRedisTemplate());
+    }
+
+    @Test
+    public void testPutAbsentWithExpire() {
+        Assert.assertTrue(cacheService.putAbsentWithExpire("k", "v", 10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, redis.commands.get());
+        Assert.assertTrue(redis.hasTtl("k"));
+
+        Assert.assertFalse(cacheService.putAbsentWithExpire("k", "v2", 10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, redis.commands.get());
+        Assert.assertEquals("v", redis.data.get("k"));
+    }
+
+    @Test
+    public void testAbstractCacheManagerPutAbsentWithExpire() throws Exception {
+        AbstractCacheManager<Object> cacheManager = new AbstractCacheManager<Object>() {
+            @Override
+            protected RedisTemplate<String, Object> getRedisTemplate() {
+                return redis.redisTemplate();
+            }
+        };
+        Environment environment = (Environment) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Environment.class}, (proxy, method, args) -> "redis.key.prefix".equals(args[0]) ? "app" : null);
+        RedisTestSupport.setField(cacheManager, "environment", environment);
+
+        Assert.assertTrue(cacheManager.putAbsentWithExpire("lock", "1", 5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, redis.commands.get());
+        // 使用加了前缀的key
+        Assert.assertTrue(redis.hasTtl("app:lock"));
+        Assert.assertFalse(redis.data.containsKey("lock"));
+    }
+
+    @Test
+    public void testIncrementWithTimeout() throws Exception {
+        CacheManager cacheManager = new CacheManager();
+        cacheManager.setKeyPrefix("order");
+        RedisTestSupport.setField(cacheManager, "cacheService", cacheService);
+
+        Assert.assertEquals(Long.valueOf(2), cacheManager.increment("count", 2, 60));
+        Assert.assertEquals(1, redis.commands.get());
+        Assert.assertTrue(redis.hasTtl("order_count"));
+
+        Assert.assertEquals(Long.valueOf(3), cacheManager.increment("hash", "field", 3, 60));
+        Assert.assertEquals(2, redis.commands.get());
+        Assert.assertTrue(redis.hasTtl("order_hash"));
+
+        // 并发增加: 结果不丢失,每次一条命令
+        int threads = 8;
+        int times = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < times; j++) {
+                    cacheManager.increment("count", 1, 60);
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        Assert.assertEquals(2L + threads * times, redis.data.get("order_count"));
+        Assert.assertEquals(2 + threads * times, redis.commands.get());
+    }
+
+    /**
+     * redis替身: 只实现本测试用到的命令
+     */
+    private static class FakeRedis {
+        private final Map<String, Object> data = new HashMap<>();
+        private final Map<String, Long> expireAt = new HashMap<>();
+        /** 执行的命令数,即往返次数 */
+        private final AtomicInteger commands = new AtomicInteger();
+
+        synchronized boolean hasTtl(String key) {
+            return data.containsKey(key) && expireAt.containsKey(key);
+        }
+
+        synchronized boolean setIfAbsent(Object key, Object value, long timeout, TimeUnit unit) {
+            commands.incrementAndGet();
+            if (data.containsKey(key)) {
+                return false;
+            }
+            data.put((String) key, value);
+            expireAt.put((String) key, System.currentTimeMillis() + unit.toMillis(timeout));
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Long eval(String script, List<?> keys, Object[] args) {
+            commands.incrementAndGet();
+            String key = (String) keys.get(0);
+            Long result;
+            long timeoutSeconds;
+            if (script.contains("HINCRBY")) {
+                // ARGV[1]=过期时间, ARGV[2..]=field, 增加值...
+                Map<String, Long> hash = (Map<String, Long>) data.computeIfAbsent(key, k -> new HashMap<String, Long>());
+                result = null;
+                for (int i = 1; i < args.length; i += 2) {
+                    result = hash.merge((String) args[i], Long.parseLong((String) args[i + 1]), Long::sum);
+                }
+                timeoutSeconds = Long.parseLong((String) args[0]);
+            } else if (script.contains("INCRBY")) {
+                // ARGV[1]=增加值, ARGV[2]=过期时间
+                result = (Long) data.merge(key, Long.parseLong((String) args[0]), (a, b) -> (Long) a + (Long) b);
+                timeoutSeconds = Long.parseLong((String) args[1]);
+            } else {
+                throw new UnsupportedOperationException(script);
+            }
+            expireAt.put(key, System.currentTimeMillis() + timeoutSeconds * 1000);
+            return result;
+        }
+
+        private Object invoke(Object proxy, Method method, Object[] args) {
+            if ("setIfAbsent".equals(method.getName()) && args.length == 4) {
+                return setIfAbsent(args[0], args[1], (Long) args[2], (TimeUnit) args[3]);
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }
+
+        RedisTemplate<String, Object> redisTemplate() {
+            return RedisTestSupport.redisTemplate(this::invoke);
+        }
+
+        StringRedisTemplate stringRedisTemplate() {
+            return new StringRedisTemplate() {
+                @Override
+                public ValueOperations<String, String> opsForValue() {
+                    return RedisTestSupport.valueOperations(FakeRedis.this::invoke);
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+                    return (T) eval(script.getScriptAsString(), keys, args);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.redis.CacheCodec;
+import com.isharpever.tool.redis.CodecRedisSerializer;
+import com.isharpever.tool.redis.FastjsonCacheCodec;
+import com.isharpever.tool.redis.JdkCacheCodec;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 缓存值编解码器对比: 编码/解码耗时(ns/op)
+ * <br>运行main方法执行,执行前先输出各编解码器编码后的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    @Param({"jdk", "fastjson"})
+    private String codec;
+
+    /** 压缩阈值(字节),0表示不压缩 */
+    @Param({"0", "512"})
+    private int compressThreshold;
+
+    private CodecRedisSerializer serializer;
+    private Order value;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = new CodecRedisSerializer(newCodec(codec), compressThreshold);
+        value = Order.sample();
+        bytes = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(bytes);
+    }
+
+    private static CacheCodec newCodec(String name) {
+        return "jdk".equals(name) ? new JdkCacheCodec() : new FastjsonCacheCodec("com.isharpever.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Order sample = Order.sample();
+        for (String name : new String[]{"jdk", "fastjson"}) {
+            for (int threshold : new int[]{0, 512}) {
+                int size = new CodecRedisSerializer(newCodec(name), threshold).serialize(sample).length;
+                System.out.println(String.format("codec=%s compressThreshold=%d bytes=%d", name, threshold, size));
+            }
+        }
+        new Runner(new OptionsBuilder().include(CacheCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 典型的业务缓存对象
+     */
+    public static class Order implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long id;
+        private String orderNo;
+        private int status;
+        private long createTime;
+        private List<Item> items;
+
+        static Order sample() {
+            Order order = new Order();
+            order.setId(20261018000001L);
+            order.setOrderNo("SO20261018000001");
+            order.setStatus(3);
+            order.setCreateTime(1792300000000L);
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Item item = new Item();
+                item.setSkuId(100000L + i);
+                item.setName("商品名称-" + i);
+                item.setQuantity(i % 3 + 1);
+                item.setPrice(1999L + i);
+                items.add(item);
+            }
+            order.setItems(items);
+            return order;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(long createTime) {
+            this.createTime = createTime;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long skuId;
+        private String name;
+        private int quantity;
+        private long price;
+
+        public long getSkuId() {
+            return skuId;
+        }
+
+        public void setSkuId(long skuId) {
+            this.skuId = skuId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public long getPrice() {
+            return price;
+        }
+
+        public void setPrice(long price) {
+            this.price = price;
+        }
+    }
+}
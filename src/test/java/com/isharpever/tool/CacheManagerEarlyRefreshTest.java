@@ -0,0 +1,84 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.CacheManager;
+import com.isharpever.tool.cache.CacheService;
+import com.isharpever.tool.cache.EarlyRefreshValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 通过getOrLoad(..., earlyRefresh=true)写入的值以包装值保存在redis中,各读取方法都应返回其中的原值
+ */
+public class CacheManagerEarlyRefreshTest {
+
+    /** redis key -> value */
+    private final Map<Object, Object> redis = new ConcurrentHashMap<>();
+    private CacheManager cacheManager;
+
+    @Before
+    public void setUp() throws Exception {
+        RedisTemplate<String, Object> template = RedisTestSupport.redisTemplate((proxy, method, args) -> {
+            switch (method.getName()) {
+                case "get":
+                    return redis.get(args[0]);
+                case "set":
+                    redis.put(args[0], args[1]);
+                    return null;
+                case "multiGet":
+                    List<Object> values = new ArrayList<>();
+                    for (Object key : (List<?>) args[0]) {
+                        values.add(redis.get(key));
+                    }
+                    return values;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+        CacheService cacheService = new CacheService();
+        RedisTestSupport.setField(cacheService, "redisTemplate", template);
+        cacheManager = new CacheManager();
+        cacheManager.setKeyPrefix("test");
+        RedisTestSupport.setField(cacheManager, "cacheService", cacheService);
+
+        Assert.assertEquals("v1", cacheManager.getOrLoad("k1", () -> "v1", 60, true));
+        cacheManager.put("k2", "v2", 60);
+        // 保存的是包装值
+        Assert.assertTrue(redis.get("test_k1") instanceof EarlyRefreshValue);
+    }
+
+    @Test
+    public void testMget() {
+        Assert.assertEquals(Arrays.asList("v1", "v2", null), cacheManager.mget(Arrays.asList("k1", "k2", "k3")));
+    }
+
+    @Test
+    public void testBatchQueryKeys() {
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("test_k1", "v1");
+        expected.put("test_k2", "v2");
+        expected.put("test_k3", null);
+        Assert.assertEquals(expected, cacheManager.batchQueryKeys(Arrays.asList("k1", "k2", "k3")));
+
+        Map<String, Object> consumed = new HashMap<>();
+        cacheManager.batchQueryKeys(Arrays.asList("k1", "k2", "k3"), consumed::put);
+        Assert.assertEquals(expected, consumed);
+    }
+
+    @Test
+    public void testAsync() {
+        Assert.assertEquals("v1", cacheManager.getAsync("k1").join());
+        Assert.assertEquals("v2", cacheManager.getAsync("k2").join());
+
+        Map<String, Object> values = cacheManager.batchQueryKeysAsync(Arrays.asList("k1", "k2")).join();
+        Assert.assertEquals("v1", values.get("test_k1"));
+        Assert.assertEquals("v2", values.get("test_k2"));
+    }
+}
@@ -0,0 +1,212 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.CacheManager;
+import com.isharpever.tool.cache.CacheService;
+import com.isharpever.tool.cache.CachedResult;
+import com.isharpever.tool.cache.CachedResultAspect;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+public class CachedResultAspectTest {
+
+    /** redis key -> value */
+    private final Map<Object, Object> redis = new ConcurrentHashMap<>();
+    /** redis key -> 过期时间(秒) */
+    private final Map<Object, Long> ttls = new ConcurrentHashMap<>();
+    private final AtomicInteger invocations = new AtomicInteger();
+    private CachedResultAspect aspect;
+
+    @Before
+    public void setUp() throws Exception {
+        RedisTemplate<String, Object> template = RedisTestSupport.redisTemplate((proxy, method, args) -> {
+            if ("get".equals(method.getName())) {
+                return redis.get(args[0]);
+            }
+            if ("set".equals(method.getName()) && args.length == 4) {
+                redis.put(args[0], args[1]);
+                ttls.put(args[0], ((TimeUnit) args[3]).toSeconds((Long) args[2]));
+                return null;
+            }
+            throw new UnsupportedOperationException(method.toString());
+        });
+        CacheService cacheService = new CacheService();
+        RedisTestSupport.setField(cacheService, "redisTemplate", template);
+        CacheManager cacheManager = new CacheManager();
+        cacheManager.setKeyPrefix("test");
+        RedisTestSupport.setField(cacheManager, "cacheService", cacheService);
+
+        aspect = new CachedResultAspect();
+        RedisTestSupport.setField(aspect, "applicationContext", Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ApplicationContext.class}, (proxy, method, args) -> cacheManager));
+    }
+
+    @CachedResult(prefix = "user", key = "#0", ttl = 100, jitter = 20)
+    public String getUser(long userId) {
+        invocations.incrementAndGet();
+        return userId == 0 ? null : "user" + userId;
+    }
+
+    @CachedResult(prefix = "order", key = {"#0.id", "#1"}, ttl = 60)
+    public String getOrder(Order order, String status) {
+        invocations.incrementAndGet();
+        return "order" + order.getId() + status;
+    }
+
+    @CachedResult(ttl = 60)
+    public String slow(String name) throws InterruptedException {
+        invocations.incrementAndGet();
+        Thread.sleep(200);
+        return name;
+    }
+
+    @CachedResult(ttl = 60)
+    public String fail(String name) throws Exception {
+        invocations.incrementAndGet();
+        throw new Exception("fail " + name);
+    }
+
+    @CachedResult(ttl = 60)
+    public String reentrant(String name) throws Throwable {
+        // 第一次调用时再经过切面读取同一key
+        return invocations.incrementAndGet() == 1 ? invoke("reentrant", name) + "!" : name;
+    }
+
+    @Test
+    public void testHitAndTtlJitter() throws Throwable {
+        Assert.assertEquals("user7", invoke("getUser", 7L));
+        Assert.assertEquals("user7", invoke("getUser", 7L));
+        Assert.assertEquals(1, invocations.get());
+        long ttl = ttls.get("test_user:7");
+        Assert.assertTrue("ttl=" + ttl, ttl >= 100 && ttl <= 120);
+    }
+
+    @Test
+    public void testNegativeCache() throws Throwable {
+        Assert.assertNull(invoke("getUser", 0L));
+        Assert.assertNull(invoke("getUser", 0L));
+        Assert.assertEquals(1, invocations.get());
+        Assert.assertEquals(Long.valueOf(10), ttls.get("test_user:0"));
+    }
+
+    @Test
+    public void testPropertyKey() throws Throwable {
+        Assert.assertEquals("order5paid", invoke("getOrder", new Order(5), "paid"));
+        Assert.assertTrue(redis.containsKey("test_order:5:paid"));
+    }
+
+    @Test
+    public void testConcurrentMissLoadsOnce() throws Throwable {
+        int threads = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicInteger correct = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    if ("a".equals(invoke("slow", "a"))) {
+                        correct.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        Assert.assertEquals(threads, correct.get());
+        Assert.assertEquals(1, invocations.get());
+        Assert.assertTrue(redis.containsKey("test_CachedResultAspectTest.slow:a"));
+    }
+
+    @Test
+    public void testReentrantLoad() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 同一线程等待自己的加载结果会死锁
+            Future<Object> future = executor.submit(() -> {
+                try {
+                    return invoke("reentrant", "a");
+                } catch (Throwable e) {
+                    throw new Exception(e);
+                }
+            });
+            Assert.assertEquals("a!", future.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void testExceptionNotCached() throws Throwable {
+        for (int i = 0; i < 2; i++) {
+            try {
+                invoke("fail", "x");
+                Assert.fail();
+            } catch (Exception e) {
+                Assert.assertEquals("fail x", e.getMessage());
+            }
+        }
+        Assert.assertEquals(2, invocations.get());
+        Assert.assertTrue(redis.isEmpty());
+    }
+
+    private Object invoke(String methodName, Object... args) throws Throwable {
+        Method method = null;
+        for (Method m : getClass().getMethods()) {
+            if (m.getName().equals(methodName)) {
+                method = m;
+            }
+        }
+        Method target = method;
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{MethodSignature.class}, (proxy, m, a) -> target);
+        ProceedingJoinPoint joinPoint = (ProceedingJoinPoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ProceedingJoinPoint.class}, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "getSignature":
+                            return signature;
+                        case "getArgs":
+                            return args;
+                        case "proceed":
+                            try {
+                                return target.invoke(this, args);
+                            } catch (java.lang.reflect.InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        default:
+                            throw new UnsupportedOperationException(m.toString());
+                    }
+                });
+        return aspect.around(joinPoint, target.getAnnotation(CachedResult.class));
+    }
+
+    public static class Order {
+        private final long id;
+
+        Order(long id) {
+            this.id = id;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.redis.CodecRedisSerializer;
+import com.isharpever.tool.redis.RedisTemplateConfiguration;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * 切换编解码器期间各节点配置不同: 指定fastjson写入的值,由未指定codec(默认)的节点读取
+ */
+public class CodecRedisSerializerTest {
+
+    @Test
+    public void testFastjsonWriteDefaultRead() {
+        CodecRedisSerializer writer = RedisTemplateConfiguration.valueSerializer(
+                environment("fastjson", "com.isharpever.tool."));
+        CodecRedisSerializer reader = RedisTemplateConfiguration.valueSerializer(
+                environment(null, "com.isharpever.tool."));
+
+        Item item = new Item();
+        item.setId(7L);
+        item.setName("apple");
+        Object value = reader.deserialize(writer.serialize(item));
+        Assert.assertTrue(String.valueOf(value), value instanceof Item);
+        Assert.assertEquals("apple", ((Item) value).getName());
+        Assert.assertEquals(Long.valueOf(7L), ((Item) value).getId());
+    }
+
+    private static StandardEnvironment environment(String codec, String accept) {
+        Map<String, Object> properties = new HashMap<>();
+        if (codec != null) {
+            properties.put("redis.value.codec", codec);
+        }
+        properties.put("redis.value.fastjson.accept", accept);
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        return environment;
+    }
+
+    public static class Item {
+        private Long id;
+        private String name;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.executor.ExecutorServiceUtil;
+import com.isharpever.tool.mdc.LogUniqueKeyUtil;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 带监控线程池:子类实现与原反射代理实现的对比
+ * <br>运行main方法执行
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ExecutorServiceBenchmark {
+
+    private ExecutorService instrumented;
+    private ExecutorService proxy;
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LogUniqueKeyUtil.generateKeyToLog();
+        // 有界队列+CallerRunsPolicy,避免提交速度超过消费速度时队列无限增长
+        instrumented = ExecutorServiceUtil.buildExecutorService(newExecutor(), "bench-instrumented-");
+        proxy = LegacyProxyHandler.newProxy(newExecutor(), "bench-proxy-");
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        return new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        instrumented.shutdownNow();
+        proxy.shutdownNow();
+    }
+
+    @Benchmark
+    public void executeInstrumented() {
+        instrumented.execute(NOOP);
+    }
+
+    @Benchmark
+    public void executeProxy() {
+        proxy.execute(NOOP);
+    }
+
+    @Benchmark
+    public boolean isShutdownInstrumented() {
+        return instrumented.isShutdown();
+    }
+
+    @Benchmark
+    public boolean isShutdownProxy() {
+        return proxy.isShutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ExecutorServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 原ExecutorServiceUtil中反射代理实现的等价复现,仅作为对比基准
+     */
+    private static class LegacyProxyHandler implements InvocationHandler {
+        private static final ConcurrentHashMap<String, AtomicInteger> POOL_STAT_REGISTRY = new ConcurrentHashMap<>();
+        private static final List<String> METHOD_NAME_SUBMIT = Arrays.asList("submit", "execute",
+                "schedule", "scheduleAtFixedRate", "scheduleWithFixedDelay");
+
+        private final ThreadPoolExecutor executor;
+        private final String poolName;
+
+        private LegacyProxyHandler(ThreadPoolExecutor executor, String poolName) {
+            this.executor = executor;
+            this.poolName = poolName;
+        }
+
+        static ExecutorService newProxy(ThreadPoolExecutor executor, String poolName) {
+            return (ExecutorService) Proxy.newProxyInstance(
+                    Thread.currentThread().getContextClassLoader(), new Class[]{ExecutorService.class},
+                    new LegacyProxyHandler(executor, poolName));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            recordPoolStat();
+            if (METHOD_NAME_SUBMIT.contains(method.getName()) && args[0] instanceof Runnable) {
+                final String logKey = LogUniqueKeyUtil.getKeyFromLog();
+                final Runnable task = (Runnable) args[0];
+                args[0] = (Runnable) () -> {
+                    LogUniqueKeyUtil.generateKeyToLog(logKey);
+                    try {
+                        task.run();
+                    } finally {
+                        recordPoolStat();
+                    }
+                };
+            }
+            return method.invoke(executor, args);
+        }
+
+        private void recordPoolStat() {
+            AtomicInteger stat = POOL_STAT_REGISTRY.computeIfAbsent(poolName, k -> new AtomicInteger());
+            stat.set(executor.getCorePoolSize() + executor.getMaximumPoolSize() + executor.getPoolSize()
+                    + executor.getLargestPoolSize() + executor.getActiveCount()
+                    + (int) executor.getCompletedTaskCount() + (int) executor.getTaskCount()
+                    + executor.getQueue().size());
+        }
+    }
+}
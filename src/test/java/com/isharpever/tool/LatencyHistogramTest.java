@@ -0,0 +1,37 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.metrics.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testQuantile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        Assert.assertEquals(100000, snapshot.getCount());
+        // 相对误差约3%
+        Assert.assertEquals(50000, snapshot.getP50(), 50000 * 0.03);
+        Assert.assertEquals(99000, snapshot.getP99(), 99000 * 0.03);
+        Assert.assertEquals(99900, snapshot.getP999(), 99900 * 0.03);
+
+        // 取快照后清零
+        Assert.assertEquals(0, histogram.snapshotAndReset().getCount());
+    }
+
+    @Test
+    public void testSmallAndHugeValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        Assert.assertEquals(3, snapshot.getCount());
+        Assert.assertEquals(3, snapshot.getP50());
+        Assert.assertTrue(snapshot.getMax() > 0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.distributionlock.LockMonitor;
+import com.isharpever.tool.distributionlock.SimpleRedisLock;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LockMonitorTest {
+
+    @Test
+    public void testHeldLocks() throws Exception {
+        List<SimpleRedisLock> locks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SimpleRedisLock lock = new MemoryLock("monitor:order:" + i + ":pay");
+            Assert.assertEquals(SimpleRedisLock.LOCK_SUCCESS, lock.tryLock());
+            locks.add(lock);
+        }
+        List<LockMonitor.HeldLock> held = heldOf("monitor:order:*:pay");
+        // 默认按1/10抽样
+        Assert.assertFalse(held.isEmpty());
+        Assert.assertTrue(held.size() < 100);
+        Assert.assertEquals(Thread.currentThread().getName(), held.get(0).getThread());
+
+        for (SimpleRedisLock lock : locks) {
+            lock.unlock();
+        }
+        Assert.assertTrue(heldOf("monitor:order:*:pay").isEmpty());
+    }
+
+    @Test
+    public void testNoAllocation() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        SimpleRedisLock lock = new MemoryLock("monitor:user:1");
+        for (int i = 0; i < 20000; i++) {
+            lock.tryLock();
+            lock.unlock();
+        }
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            lock.tryLock();
+            lock.unlock();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertTrue("allocated=" + allocated, allocated < 1024);
+    }
+
+    private static List<LockMonitor.HeldLock> heldOf(String pattern) {
+        List<LockMonitor.HeldLock> result = new ArrayList<>();
+        for (LockMonitor.HeldLock heldLock : LockMonitor.getHeldLocks()) {
+            if (pattern.equals(heldLock.getPattern())) {
+                result.add(heldLock);
+            }
+        }
+        return result;
+    }
+
+    private static class MemoryLock extends SimpleRedisLock {
+        private boolean locked;
+
+        MemoryLock(String lockKey) {
+            super(lockKey, 0L, 3000L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected String doTryLock(long leaseTimeInMillSeconds) {
+            if (locked) {
+                return LOCK_FAIL;
+            }
+            locked = true;
+            return LOCK_SUCCESS;
+        }
+
+        @Override
+        protected long doUnlock() {
+            locked = false;
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.NearCache;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NearCacheTest {
+
+    @Test
+    public void testScanResistance() {
+        NearCache nearCache = new NearCache("test-scan", 1600, 1, TimeUnit.MINUTES);
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    load(nearCache, "hot_" + i);
+                }
+            }
+            // 大量只访问一次的key不应挤掉热点key
+            for (int i = 0; i < 20000; i++) {
+                load(nearCache, "scan_" + i);
+            }
+            int hit = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (nearCache.get("hot", "hot_" + i) != null) {
+                    hit++;
+                }
+            }
+            Assert.assertTrue("hit=" + hit, hit > 900);
+            Assert.assertTrue(nearCache.size() <= 1600);
+        } finally {
+            nearCache.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() {
+        NearCache nearCache = new NearCache("test-invalidate", 100, 1, TimeUnit.MINUTES);
+        try {
+            // 读redis期间key被修改,读到的旧值不应写入本地副本
+            long stamp = nearCache.stamp("k");
+            nearCache.invalidate("k");
+            nearCache.put("k", "old", stamp);
+            Assert.assertNull(nearCache.get("p", "k"));
+
+            nearCache.put("k", "new", nearCache.stamp("k"));
+            Assert.assertEquals("new", nearCache.get("p", "k"));
+            Assert.assertEquals(0.5, nearCache.getPrefixStats().get("p").getHitRatio(), 0.001);
+        } finally {
+            nearCache.close();
+        }
+    }
+
+    private static void load(NearCache nearCache, String key) {
+        if (nearCache.get("p", key) == null) {
+            nearCache.put(key, key, nearCache.stamp(key));
+        }
+    }
+}
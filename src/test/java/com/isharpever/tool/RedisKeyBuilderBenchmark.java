@@ -0,0 +1,90 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.cache.CacheManager;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * CacheManager生成redis key: 原String.format实现与预拼接前缀的RedisKeyBuilder的对比,单个key及批量(100个)
+ * <br>运行main方法执行,附带GC profiler,gc.alloc.rate.norm为每次操作分配的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisKeyBuilderBenchmark {
+
+    private CacheManager cacheManager;
+    private String key;
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cacheManager = new CacheManager();
+        cacheManager.setKeyPrefix("order");
+        key = "20261018000001";
+        keys = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            keys.add("2026101800" + (1000 + i));
+        }
+    }
+
+    @Benchmark
+    public String singleFormat() {
+        return String.format("%s_%s", "order", key);
+    }
+
+    @Benchmark
+    public String singleBuilder() {
+        return cacheManager.buildRedisKey(key);
+    }
+
+    @Benchmark
+    public byte[] singleBytesFormat() {
+        return String.format("%s_%s", "order", key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] singleBytesBuilder() {
+        return cacheManager.buildRedisKeyBytes(key);
+    }
+
+    @Benchmark
+    public List<String> batchFormat() {
+        List<String> results = new ArrayList<>(keys.size());
+        for (String k : keys) {
+            results.add(String.format("%s_%s", "order", k));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<String> batchBuilder() {
+        return cacheManager.batchBuildRedisKey(keys);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RedisKeyBuilderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.distributionlock.SimpleRedisLock;
+import com.isharpever.tool.distributionlock.SpringRedisLockV2;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 同一把锁的竞争: 固定间隔轮询与释放通知两种模式下,每秒获得锁次数、redis每秒处理命令数、
+ * 释放锁到下一个线程获得锁的平均延迟
+ * <br>需要redis,地址由-Dredis.host(默认localhost)、-Dredis.port(默认6379)指定;
+ * 线程数、持有锁时间(毫秒)、每轮时长(秒)由-Dthreads(默认50)、-Dhold(默认1)、-Dseconds(默认10)指定;运行main方法执行
+ */
+public class RedisLockBenchmark {
+
+    private static final String LOCK_KEY = "isharpever:benchmark:lock";
+
+    public static void main(String[] args) throws Exception {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+        connectionFactory.afterPropertiesSet();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        int threads = Integer.getInteger("threads", 50);
+        long holdNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("hold", 1L));
+        long seconds = Long.getLong("seconds", 10L);
+        try {
+            // 先各跑一轮预热
+            run(redisTemplate, false, threads, holdNanos, 2);
+            run(redisTemplate, true, threads, holdNanos, 2);
+            System.out.println("---");
+            print("polling", run(redisTemplate, false, threads, holdNanos, seconds), seconds);
+            print("notified", run(redisTemplate, true, threads, holdNanos, seconds), seconds);
+        } finally {
+            connectionFactory.destroy();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * @return {获得锁次数, redis命令数, 释放锁到获得锁的总延迟(纳秒), 延迟样本数}
+     */
+    private static long[] run(StringRedisTemplate redisTemplate, boolean notifyOnRelease, int threads,
+            long holdNanos, long seconds) throws Exception {
+        AtomicLong acquired = new AtomicLong();
+        AtomicLong handOffNanos = new AtomicLong();
+        AtomicLong handOffCount = new AtomicLong();
+        // 最近一次释放锁的时间,0表示锁未被释放过或已被计入延迟
+        AtomicLong lastReleased = new AtomicLong();
+        long commandsBefore = totalCommands(redisTemplate);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        SpringRedisLockV2 lock = SpringRedisLockV2.builder().lockKey(LOCK_KEY)
+                                .stringRedisTemplate(redisTemplate).waitTime(3000L).leaseTime(3000L)
+                                .timeUnit(TimeUnit.MILLISECONDS).notifyOnRelease(notifyOnRelease).build();
+                        if (!SimpleRedisLock.LOCK_SUCCESS.equals(lock.tryLock())) {
+                            continue;
+                        }
+                        long released = lastReleased.getAndSet(0);
+                        if (released != 0) {
+                            handOffNanos.addAndGet(System.nanoTime() - released);
+                            handOffCount.incrementAndGet();
+                        }
+                        acquired.incrementAndGet();
+                        LockSupport.parkNanos(holdNanos);
+                        lastReleased.set(System.nanoTime());
+                        lock.unlock();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    latch.countDown();
+                }
+            }, "lock-benchmark-" + i).start();
+        }
+        latch.await();
+        // INFO返回的计数不含其自身,减去第一次INFO
+        long commands = totalCommands(redisTemplate) - commandsBefore - 1;
+        return new long[]{acquired.get(), commands, handOffNanos.get(), handOffCount.get()};
+    }
+
+    private static long totalCommands(StringRedisTemplate redisTemplate) {
+        return redisTemplate.execute((RedisConnection connection) ->
+                Long.parseLong(connection.info("stats").getProperty("total_commands_processed")));
+    }
+
+    private static void print(String mode, long[] result, long seconds) {
+        System.out.printf("%-8s 获得锁/s=%d redis命令/s=%d 每次获得锁的命令数=%.1f 平均交接延迟=%dus%n", mode,
+                result[0] / seconds, result[1] / seconds, result[0] == 0 ? 0.0 : (double) result[1] / result[0],
+                result[3] == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(result[2] / result[3]));
+    }
+}
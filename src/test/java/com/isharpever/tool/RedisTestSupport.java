@@ -0,0 +1,80 @@
+package com.isharpever.tool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 测试用的redis替身: 由InvocationHandler实现ValueOperations,不需要redis
+ */
+final class RedisTestSupport {
+
+    private RedisTestSupport() {
+    }
+
+    /**
+     * 设置target的字段(含父类中声明的字段)
+     */
+    static void setField(Object target, String name, Object value) throws Exception {
+        Class<?> clazz = target.getClass();
+        while (clazz != null) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    /**
+     * 每次调用都交给handler处理的ValueOperations
+     */
+    @SuppressWarnings("unchecked")
+    static <V> ValueOperations<String, V> valueOperations(InvocationHandler handler) {
+        return (ValueOperations<String, V>) Proxy.newProxyInstance(RedisTestSupport.class.getClassLoader(),
+                new Class[]{ValueOperations.class}, handler);
+    }
+
+    /**
+     * opsForValue()返回{@link #valueOperations(InvocationHandler)}的RedisTemplate;
+     * executePipelined中的GET命令同样交给handler(按ValueOperations.get处理)
+     */
+    static RedisTemplate<String, Object> redisTemplate(InvocationHandler handler) {
+        ValueOperations<String, Object> operations = valueOperations(handler);
+        RedisTemplate<String, Object> template = new RedisTemplate<String, Object>() {
+            @Override
+            public ValueOperations<String, Object> opsForValue() {
+                return operations;
+            }
+
+            @Override
+            public List<Object> executePipelined(RedisCallback<?> action) {
+                List<Object> results = new ArrayList<>();
+                RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(
+                        RedisTestSupport.class.getClassLoader(), new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+                            if ("get".equals(method.getName()) && args.length == 1) {
+                                results.add(operations.get(new String((byte[]) args[0], StandardCharsets.UTF_8)));
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(method.toString());
+                        });
+                action.doInRedis(connection);
+                return results;
+            }
+        };
+        template.setKeySerializer(RedisSerializer.string());
+        return template;
+    }
+}
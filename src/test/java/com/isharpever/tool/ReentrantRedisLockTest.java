@@ -0,0 +1,123 @@
+package com.isharpever.tool;
+
+import com.isharpever.tool.distributionlock.ReentrantRedisLock;
+import com.isharpever.tool.distributionlock.SimpleRedisLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReentrantRedisLockTest {
+
+    /** redis key -> 持有者uuid */
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger tryLockCalls = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        redis.clear();
+        tryLockCalls.set(0);
+    }
+
+    @Test
+    public void testReentrant() throws Exception {
+        ReentrantRedisLock outer = new ReentrantRedisLock(new MemoryLock("a", 0L));
+        Assert.assertEquals(SimpleRedisLock.LOCK_SUCCESS, outer.tryLock());
+        ReentrantRedisLock inner = new ReentrantRedisLock(new MemoryLock("a", 0L));
+        Assert.assertEquals(SimpleRedisLock.LOCK_SUCCESS, inner.tryLock());
+        Assert.assertEquals(2, outer.getHoldCount());
+        Assert.assertEquals(1, tryLockCalls.get());
+
+        Assert.assertEquals(1, inner.unlock());
+        Assert.assertEquals(0, inner.unlock());
+        Assert.assertTrue(redis.containsKey("a"));
+        Assert.assertEquals(1, outer.unlock());
+        Assert.assertFalse(redis.containsKey("a"));
+        Assert.assertEquals(0, outer.getHoldCount());
+    }
+
+    @Test
+    public void testOtherThreadWaitsLocally() throws Exception {
+        ReentrantRedisLock lock = new ReentrantRedisLock(new MemoryLock("b", 0L));
+        Assert.assertEquals(SimpleRedisLock.LOCK_SUCCESS, lock.tryLock());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        String result = executor.submit(() -> new ReentrantRedisLock(new MemoryLock("b", 50L)).tryLock()).get();
+        executor.shutdown();
+        Assert.assertEquals(SimpleRedisLock.LOCK_FAIL, result);
+        // 另一线程只在本地锁上等待,没有访问redis
+        Assert.assertEquals(1, tryLockCalls.get());
+        lock.unlock();
+    }
+
+    @Test
+    public void testSameInstanceOtherThreadTimesOut() throws Exception {
+        ReentrantRedisLock lock = new ReentrantRedisLock(new MemoryLock("d", 50L));
+        Assert.assertEquals(SimpleRedisLock.LOCK_SUCCESS, lock.tryLock());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // 其他线程使用同一实例不是重入,等待超时后失败而不是一直阻塞
+        String result = executor.submit(lock::tryLock).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(SimpleRedisLock.LOCK_FAIL, result);
+        Assert.assertEquals(0L, (long) executor.submit(lock::unlock).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(1, lock.getHoldCount());
+        Assert.assertEquals(1, lock.unlock());
+        Assert.assertFalse(redis.containsKey("d"));
+    }
+
+    @Test
+    public void testRedisCallsPerAcquire() throws Exception {
+        int threads = 20;
+        int rounds = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger inside = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int j = 0; j < rounds; j++) {
+                        new ReentrantRedisLock(new MemoryLock("c", 5000L)).doWithLock(context -> {
+                            if (context.isSuccess()) {
+                                Assert.assertEquals(1, inside.incrementAndGet());
+                                acquired.incrementAndGet();
+                                inside.decrementAndGet();
+                            }
+                            return null;
+                        });
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(threads * rounds, acquired.get());
+        // 本地已串行,每次获得锁只访问一次redis,不会轮询
+        Assert.assertEquals(threads * rounds, tryLockCalls.get());
+    }
+
+    private class MemoryLock extends SimpleRedisLock {
+
+        MemoryLock(String lockKey, long waitTime) {
+            super(lockKey, waitTime, 3000L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected String doTryLock(long leaseTimeInMillSeconds) {
+            tryLockCalls.incrementAndGet();
+            return redis.putIfAbsent(lockKeys.get(0), lockUUID.toString()) == null ? LOCK_SUCCESS : LOCK_FAIL;
+        }
+
+        @Override
+        protected long doUnlock() {
+            return redis.remove(lockKeys.get(0), lockUUID.toString()) ? 1 : 0;
+        }
+    }
+}
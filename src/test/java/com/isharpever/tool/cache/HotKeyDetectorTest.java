@@ -0,0 +1,49 @@
+package com.isharpever.tool.cache;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HotKeyDetectorTest {
+
+    @Test
+    public void testPromoteHotKey() {
+        // 全部计数,且由测试结束窗口,结果与采样及调度时间无关
+        HotKeyDetector detector = new HotKeyDetector("test-hot", 1, 5, 200, 1, TimeUnit.MINUTES, false);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Object> loader = key -> {
+            loads.incrementAndGet();
+            return key;
+        };
+        try {
+            for (int i = 0; i < 2000; i++) {
+                detector.get("hot", loader);
+                detector.get("cold_" + i, loader);
+            }
+            Assert.assertFalse(detector.isHot("hot"));
+            // 窗口不超过10秒时估计qps不低于阈值200
+            detector.rollWindow();
+            Assert.assertTrue(detector.isHot("hot"));
+            List<HotKeyDetector.HotKey> hotKeys = detector.getHotKeys();
+            Assert.assertEquals(1, hotKeys.size());
+            Assert.assertEquals("hot", hotKeys.get(0).getKey());
+
+            // 热点key只在首次读取时访问redis,其后读取本地副本
+            loads.set(0);
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("hot", detector.get("hot", loader));
+            }
+            Assert.assertEquals(1, loads.get());
+
+            // 修改后重新读取
+            detector.invalidate("hot");
+            detector.get("hot", loader);
+            Assert.assertEquals(2, loads.get());
+        } finally {
+            detector.close();
+        }
+    }
+}